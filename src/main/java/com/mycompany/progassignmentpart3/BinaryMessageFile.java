@@ -0,0 +1,297 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary alternative to the JSON stored-messages file, read through a
+ * memory mapping.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic "QCMB", int version, int count, long indexOffset
+ *   records  count x (int idLen, id, int recipientLen, recipient, int contentLen, content,
+ *                     long issuedAt)
+ *   index    count x long recordOffset, sorted by the UTF-8 bytes of the id
+ * </pre>
+ * Strings are UTF-8; a length of -1 stands for null. Version 1 files, whose records end
+ * at the content, are still read, with an issuedAt of 0. Looking a message up by ID
+ * binary-searches the index and compares raw id bytes in the mapping, so only the
+ * matching record is ever decoded.
+ */
+public class BinaryMessageFile implements Closeable {
+
+    private static final int MAGIC = 0x51434D42; // "QCMB"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    private static final Gson gson = new Gson();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final int version;
+    private final int count;
+    private final int indexOffset;
+
+    private BinaryMessageFile(FileChannel channel, MappedByteBuffer data) throws IOException {
+        this.channel = channel;
+        this.data = data;
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary message file");
+        }
+        this.version = data.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported binary message file version " + version);
+        }
+        this.count = data.getInt(8);
+        long index = data.getLong(12);
+        if (index < HEADER_SIZE || index + 8L * count != data.limit()) {
+            throw new IOException("Corrupt binary message file index");
+        }
+        this.indexOffset = (int) index;
+    }
+
+    // Maps an existing binary file for reading
+    public static BinaryMessageFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Binary message file larger than 2 GB: " + file);
+            }
+            return new BinaryMessageFile(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Returns the first message with this id, or null; decodes only that record
+    public Message findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = count;
+        // lower bound, so duplicate ids resolve to the first in index order
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareId(recordOffset(mid), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo < count && compareId(recordOffset(lo), key) == 0) {
+            return readRecord(recordOffset(lo));
+        }
+        return null;
+    }
+
+    // Decodes every message in the order they were written
+    public void forEach(Consumer<Message> sink) {
+        int pos = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            sink.accept(readRecord(pos));
+            pos = skipRecord(pos);
+        }
+    }
+
+    public List<Message> readAll() {
+        List<Message> messages = new ArrayList<>(count);
+        forEach(messages::add);
+        return messages;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int recordOffset(int i) {
+        return (int) data.getLong(indexOffset + 8 * i);
+    }
+
+    // Compares the id stored at a record with key as unsigned bytes
+    private int compareId(int recordOffset, byte[] key) {
+        int len = data.getInt(recordOffset);
+        if (len < 0) {
+            return -1;
+        }
+        int start = recordOffset + 4;
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(data.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    private Message readRecord(int pos) {
+        String id = readString(pos);
+        pos = skipString(pos);
+        String recipient = readString(pos);
+        pos = skipString(pos);
+        String content = readString(pos);
+        long issuedAt = version == 1 ? 0 : data.getLong(skipString(pos));
+        return new Message(id, content, recipient, issuedAt);
+    }
+
+    private int skipRecord(int pos) {
+        return skipString(skipString(skipString(pos))) + (version == 1 ? 0 : 8);
+    }
+
+    private String readString(int pos) {
+        int len = data.getInt(pos);
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        data.get(pos + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipString(int pos) {
+        int len = data.getInt(pos);
+        return pos + 4 + Math.max(len, 0);
+    }
+
+    // Writes messages in the binary format; returns how many were written
+    public static int write(Path file, Iterable<Message> messages) throws IOException {
+        try (RecordWriter writer = new RecordWriter(file)) {
+            for (Message m : messages) {
+                writer.add(m);
+            }
+            return writer.finish();
+        }
+    }
+
+    // Converts a JSON stored-messages file to the binary format, streaming the JSON
+    public static int fromJson(Path json, Path binary) throws IOException {
+        try (StoredMessageReader reader = new StoredMessageReader(
+                     Files.newBufferedReader(json, StandardCharsets.UTF_8));
+             RecordWriter writer = new RecordWriter(binary)) {
+            Message m;
+            while ((m = reader.next()) != null) {
+                writer.add(m);
+            }
+            return writer.finish();
+        }
+    }
+
+    // Converts a binary file back to a JSON array of messages. The binary format keeps no
+    // snapshot generation, so the array has no header and StoredMessageLog reads it as
+    // generation 0: a log next to it is replayed after it, which is right for a file made by
+    // fromJson, since that reads the snapshot and not the log.
+    public static int toJson(Path binary, Path json) throws IOException {
+        try (BinaryMessageFile file = open(binary);
+             JsonWriter out = new JsonWriter(Files.newBufferedWriter(json, StandardCharsets.UTF_8))) {
+            out.beginArray();
+            file.forEach(m -> gson.toJson(m, Message.class, out));
+            out.endArray();
+            return file.size();
+        }
+    }
+
+    // Streams records to disk; the index is sorted and appended by finish()
+    private static final class RecordWriter implements Closeable {
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final List<IndexEntry> index = new ArrayList<>();
+        private long position = HEADER_SIZE;
+
+        RecordWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        }
+
+        void add(Message m) throws IOException {
+            byte[] id = bytes(m.getId());
+            index.add(new IndexEntry(id, position));
+            position += writeString(id) + writeString(bytes(m.getRecipient())) + writeString(bytes(m.getContent())) + 8;
+            out.writeLong(m.getIssuedAt());
+        }
+
+        int finish() throws IOException {
+            IndexEntry[] sorted = index.toArray(new IndexEntry[0]);
+            // stable sort keeps duplicate ids in write order
+            Arrays.sort(sorted, (a, b) -> compareBytes(a.id, b.id));
+            for (IndexEntry e : sorted) {
+                out.writeLong(e.offset);
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(sorted.length).putLong(position).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            return sorted.length;
+        }
+
+        private int writeString(byte[] bytes) throws IOException {
+            if (bytes == null) {
+                out.writeInt(-1);
+                return 4;
+            }
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return 4 + bytes.length;
+        }
+
+        private static byte[] bytes(String s) {
+            return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class IndexEntry {
+        final byte[] id;
+        final long offset;
+
+        IndexEntry(byte[] id, long offset) {
+            this.id = id;
+            this.offset = offset;
+        }
+    }
+
+    // Null ids sort first, matching compareId
+    private static int compareBytes(byte[] a, byte[] b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? -1 : 1);
+        }
+        return Arrays.compareUnsigned(a, b);
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import io.github.st10159464.InvertedIndex;
+import io.github.st10159464.MessageStatistics;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+/**
+ * Headless QuickChat session for one sender: sends, disregards or stores messages
+ * and answers the menu's queries, with no Swing.
+ * <p>
+ * {@link ProgAssignmentPart3#main} is a thin dialog client of this class, and load
+ * generators can drive the same code paths directly. Invalid input is reported with
+ * exceptions carrying the message the menu shows. A session is used by one thread;
+ * only the stored messages fill in concurrently, from a background load.
+ * <p>
+ * Sent messages live in a {@link TieredMessageStore}: only the newest
+ * {@code -Dchatapp.sent.memory} of them (default 10,000) stay on the heap, along with
+ * their hash, statistics, search and ID indexes. Older ones spill to disk and are faulted
+ * back in by the same queries and reports. Disregarded messages, which the message limit
+ * does not cap, are tiered the same way. Close the session to delete the spilled files.
+ */
+public class ChatSession implements Closeable {
+
+    public static final int MAX_MESSAGE_LENGTH = 250;
+
+    private final String cellphoneNumber;
+    private final int maxMessages;
+    private final StoredMessageLog storedLog;
+    private final MessageIdGenerator ids = MessageIdGenerator.shared();
+
+    // Sent messages in send order; the oldest are evicted to disk
+    private final TieredMessageStore sentMessages;
+    // hash -> sent messages with that hash, in send order, so delete-by-hash needs no scan
+    private final Map<String, List<Message>> sentByHash = new HashMap<>();
+    // Kept in step with sentMessages so the longest message needs no scan
+    private final MessageStatistics<Message> sentStats = new MessageStatistics<>(Message::getRecipient, Message::getContent);
+    // Keyword search over sent message content
+    private final InvertedIndex<Message> sentIndex = new InvertedIndex<>(Message::getContent);
+    // Disregarded messages are not capped by maxMessages, so they are tiered the same way
+    private final TieredMessageStore disregardedMessages;
+    // Stored messages load in the background so a session is usable straight away
+    private final List<Message> storedMessages = Collections.synchronizedList(new ArrayList<>());
+    // How many stored messages the load has delivered; pages go in before any stored since
+    private int storedLoadedCount;
+    private final CompletableFuture<Integer> storedLoaded;
+    // ID lookups and time-ordered queries across sent, stored and disregarded messages
+    private final MessageIndex index = new MessageIndex();
+
+    public ChatSession(String cellphoneNumber, int maxMessages, StoredMessageLog storedLog, int storedPageSize) {
+        this(cellphoneNumber, maxMessages, storedLog, storedPageSize,
+                Integer.getInteger("chatapp.sent.memory", TieredMessageStore.DEFAULT_MEMORY_LIMIT));
+    }
+
+    // sentMemoryLimit is how many sent messages, and how many disregarded ones, stay on the
+    // heap before older ones spill to disk
+    public ChatSession(String cellphoneNumber, int maxMessages, StoredMessageLog storedLog, int storedPageSize,
+            int sentMemoryLimit) {
+        this.cellphoneNumber = cellphoneNumber;
+        int segmentSize = Math.min(TieredMessageStore.DEFAULT_SEGMENT_SIZE, sentMemoryLimit);
+        this.sentMessages = new TieredMessageStore(sentMemoryLimit, segmentSize, this::evicted);
+        this.disregardedMessages = new TieredMessageStore(sentMemoryLimit, segmentSize,
+                messages -> messages.forEach(index::remove));
+        this.maxMessages = maxMessages;
+        this.storedLog = storedLog;
+        this.storedLoaded = storedLog.loadInBackground(storedPageSize, page -> {
+            synchronized (storedMessages) {
+                storedMessages.addAll(storedLoadedCount, page);
+                storedLoadedCount += page.size();
+            }
+            index.addAll(page, MessageIndex.Status.STORED);
+        });
+    }
+
+    public String getCellphoneNumber() {
+        return cellphoneNumber;
+    }
+
+    // Not empty, not blank and no more than 250 characters
+    public static boolean isValidContent(String content) {
+        return content != null && content.length() <= MAX_MESSAGE_LENGTH && !content.trim().isEmpty();
+    }
+
+    // False once maxMessages messages have been sent
+    public boolean canSend() {
+        return sentMessages.size() < maxMessages;
+    }
+
+    public Message send(String content) {
+        Message msg = newMessage(content);
+        addSent(msg);
+        return msg;
+    }
+
+    /**
+     * Outcome of a bulk send: the messages sent, in input order, and the reason each other
+     * record was not sent, keyed by its 1-based position in the input.
+     */
+    public static final class BulkResult {
+        private final List<Message> sent = new ArrayList<>();
+        private final Map<Integer, String> rejected = new LinkedHashMap<>();
+
+        public List<Message> getSent() {
+            return Collections.unmodifiableList(sent);
+        }
+
+        public Map<Integer, String> getRejected() {
+            return Collections.unmodifiableMap(rejected);
+        }
+    }
+
+    // Sends many (recipient, content) pairs at once; recipients and contents must be the same
+    // length. Every record is checked with checkRecipientCell, checkMessageID and
+    // isValidContent, and hashed, in parallel; the valid ones are then added in input order.
+    // A recipient may also be in the login format ("+27..."), like the session's own number.
+    // Records past the message limit are rejected rather than sent.
+    public BulkResult sendAll(List<String> recipients, List<String> contents) {
+        if (recipients.size() != contents.size()) {
+            throw new IllegalArgumentException("recipients and contents differ in length");
+        }
+        // IDs are issued in input order first, so ID order stays send order
+        List<Message> candidates = new ArrayList<>(recipients.size());
+        for (int i = 0; i < recipients.size(); i++) {
+            candidates.add(Message.issued(newId(), contents.get(i), recipients.get(i)));
+        }
+        String[] reasons = new String[candidates.size()];
+        IntStream.range(0, candidates.size()).parallel()
+                .forEach(i -> reasons[i] = reasonToReject(candidates.get(i)));
+
+        BulkResult result = new BulkResult();
+        for (int i = 0; i < candidates.size(); i++) {
+            String reason = reasons[i] == null && !canSend() ? "Message limit reached." : reasons[i];
+            if (reason == null) {
+                addSent(candidates.get(i));
+                result.sent.add(candidates.get(i));
+            } else {
+                result.rejected.put(i + 1, reason);
+            }
+        }
+        return result;
+    }
+
+    // Sends every "recipient,content" line of a UTF-8 file; the content is everything after
+    // the first comma. Blank lines are skipped but counted, so rejections are keyed by line.
+    public BulkResult sendAllFromFile(Path file) throws IOException {
+        List<String> recipients = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                recipients.add(comma < 0 ? line : line.substring(0, comma));
+                contents.add(comma < 0 ? null : line.substring(comma + 1));
+                lines.add(lineNumber);
+            }
+        }
+        BulkResult byRecord = sendAll(recipients, contents);
+        BulkResult byLine = new BulkResult();
+        byLine.sent.addAll(byRecord.sent);
+        byRecord.rejected.forEach((record, reason) -> byLine.rejected.put(lines.get(record - 1), reason));
+        return byLine;
+    }
+
+    // Why a bulk record may not be sent, or null if it may; computes its hash as a side effect
+    private static String reasonToReject(Message msg) {
+        int cell = msg.checkRecipientCell();
+        if (cell == -1) {
+            return "Missing recipient.";
+        }
+        if (cell == 0 && !LoginClass.checkCellphoneNumber(msg.getRecipient())) {
+            return "Recipient must start with 07 and be no more than 10 characters, or be + and 11 digits.";
+        }
+        if (!isValidContent(msg.getContent())) {
+            return "Invalid message.";
+        }
+        if (!msg.checkMessageID()) {
+            return "Message ID is more than 10 characters.";
+        }
+        msg.createMessageHash();
+        return null;
+    }
+
+    private void addSent(Message msg) {
+        sentMessages.add(msg);
+        sentByHash.computeIfAbsent(msg.createMessageHash(), k -> new ArrayList<>(1)).add(msg);
+        sentStats.add(msg);
+        sentIndex.add(msg);
+        index.add(msg, MessageIndex.Status.SENT);
+    }
+
+    // Drops messages the sent tier moved to disk from every in-memory index
+    private void evicted(List<Message> messages) {
+        for (Message m : messages) {
+            removeFromHashIndex(m);
+            sentStats.remove(m);
+            sentIndex.remove(m);
+            index.remove(m);
+        }
+    }
+
+    private void removeFromHashIndex(Message m) {
+        List<Message> withHash = sentByHash.get(m.createMessageHash());
+        if (withHash != null) {
+            withHash.remove(m);
+            if (withHash.isEmpty()) sentByHash.remove(m.createMessageHash());
+        }
+    }
+
+    public Message disregard(String content) {
+        Message msg = newMessage(content);
+        disregardedMessages.add(msg);
+        index.add(msg, MessageIndex.Status.DISREGARDED);
+        return msg;
+    }
+
+    // Appends the message to the stored-messages log and waits for its group commit
+    public Message store(String content) throws IOException {
+        Message msg = newMessage(content);
+        try {
+            storedLog.appendAsync(msg).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        storedMessages.add(msg);
+        index.add(msg, MessageIndex.Status.STORED);
+        return msg;
+    }
+
+    private Message newMessage(String content) {
+        if (!canSend()) {
+            throw new IllegalStateException("Message limit reached.");
+        }
+        if (!isValidContent(content)) {
+            throw new IllegalArgumentException("Invalid message.");
+        }
+        return Message.issued(newId(), content, cellphoneNumber);
+    }
+
+    private String newId() {
+        return ids.nextId();
+    }
+
+    public List<Message> getSentMessages() {
+        return Collections.unmodifiableList(sentMessages);
+    }
+
+    public List<Message> getDisregardedMessages() {
+        return Collections.unmodifiableList(disregardedMessages);
+    }
+
+    // Copy of the stored messages loaded or stored so far
+    public List<Message> getStoredMessages() {
+        synchronized (storedMessages) {
+            return new ArrayList<>(storedMessages);
+        }
+    }
+
+    public boolean isStoredLoaded() {
+        return storedLoaded.isDone();
+    }
+
+    public CompletableFuture<Integer> getStoredLoaded() {
+        return storedLoaded;
+    }
+
+    // Sent, stored or disregarded message with this ID, or null
+    public Message findById(String id) {
+        MessageIndex.Entry entry = find(id);
+        return entry == null ? null : entry.getMessage();
+    }
+
+    // Like findById, but also says which list the message is in
+    public MessageIndex.Entry find(String id) {
+        MessageIndex.Entry entry = index.findById(id);
+        if (entry == null) {
+            Message evicted = sentMessages.findEvicted(id);
+            entry = evicted == null ? null : new MessageIndex.Entry(evicted, MessageIndex.Status.SENT);
+        }
+        if (entry == null) {
+            Message evicted = disregardedMessages.findEvicted(id);
+            entry = evicted == null ? null : new MessageIndex.Entry(evicted, MessageIndex.Status.DISREGARDED);
+        }
+        return entry;
+    }
+
+    // The n most recent messages across all three lists, newest first
+    public List<MessageIndex.Entry> latest(int n) {
+        return newestFirst(index.latest(n), newestFirst(
+                entries(sentMessages.newestEvicted(n), MessageIndex.Status.SENT),
+                entries(disregardedMessages.newestEvicted(n), MessageIndex.Status.DISREGARDED), n), n);
+    }
+
+    // Messages from all three lists whose ID was issued in [fromMillis, toMillis), newest
+    // first; stored messages with legacy IDs have no issue time and are left out
+    public List<MessageIndex.Entry> between(long fromMillis, long toMillis) {
+        return newestFirst(index.between(fromMillis, toMillis), newestFirst(
+                entries(sentMessages.evictedBetween(fromMillis, toMillis), MessageIndex.Status.SENT),
+                entries(disregardedMessages.evictedBetween(fromMillis, toMillis), MessageIndex.Status.DISREGARDED),
+                Integer.MAX_VALUE), Integer.MAX_VALUE);
+    }
+
+    private static List<MessageIndex.Entry> entries(List<Message> messages, MessageIndex.Status status) {
+        List<MessageIndex.Entry> entries = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            entries.add(new MessageIndex.Entry(m, status));
+        }
+        return entries;
+    }
+
+    // Merges two lists of entries, both newest first, keeping up to limit
+    private static List<MessageIndex.Entry> newestFirst(List<MessageIndex.Entry> a, List<MessageIndex.Entry> b,
+            int limit) {
+        if (b.isEmpty()) {
+            return a;
+        }
+        if (a.isEmpty()) {
+            return b.size() > limit ? b.subList(0, limit) : b;
+        }
+        List<MessageIndex.Entry> merged = new ArrayList<>(Math.min(limit, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < a.size() || j < b.size())) {
+            if (j == b.size() || (i < a.size() && idOf(a.get(i)).compareTo(idOf(b.get(j))) >= 0)) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private static String idOf(MessageIndex.Entry entry) {
+        return Objects.toString(entry.getMessage().getId(), "");
+    }
+
+    public List<Message> findByRecipient(String recipient) {
+        List<Message> found = new ArrayList<>();
+        for (Message m : sentMessages) {
+            if (m.getRecipient().equals(recipient)) {
+                found.add(m);
+            }
+        }
+        return found;
+    }
+
+    // Keyword search over sent messages, evicted ones first; see InvertedIndex.search for the query syntax
+    public List<Message> search(String query) {
+        List<Message> found = sentMessages.searchEvicted(query);
+        found.addAll(sentIndex.search(query));
+        return found;
+    }
+
+    // Evicted messages are older, so they win ties as the earlier message
+    public Message longest() {
+        Message inMemory = sentStats.longest();
+        Message evicted = sentMessages.longestEvicted();
+        if (evicted == null || (inMemory != null && inMemory.getContent().length() > evicted.getContent().length())) {
+            return inMemory;
+        }
+        return evicted;
+    }
+
+    // Deletes the earliest sent message with this hash; returns false if there is none
+    public boolean deleteByHash(String hash) {
+        List<Message> withHash = sentByHash.get(hash);
+        if (withHash == null) {
+            return deleteEvictedByHash(hash);
+        }
+        Message m = withHash.remove(0);
+        if (withHash.isEmpty()) sentByHash.remove(hash);
+        sentMessages.remove(m);
+        sentStats.remove(m);
+        sentIndex.remove(m);
+        index.remove(m);
+        return true;
+    }
+
+    // The hash starts with the message ID, which finds an evicted message without a scan
+    private boolean deleteEvictedByHash(String hash) {
+        int colon = hash.indexOf(':');
+        if (colon < 0) {
+            return false;
+        }
+        Message m = sentMessages.findEvicted(hash.substring(0, colon));
+        return m != null && m.createMessageHash().equals(hash) && sentMessages.removeEvicted(m.getId());
+    }
+
+    // One page of the sent-messages report
+    public String reportPage(int offset, int limit) {
+        return Message.printMessages(sentMessages, offset, limit);
+    }
+
+    // Streams the whole sent-messages report to out
+    public void writeReport(Writer out) throws IOException {
+        Message.writeMessages(sentMessages, out);
+    }
+
+    // Deletes the sent and disregarded messages spilled to disk; stored messages are unaffected
+    @Override
+    public void close() throws IOException {
+        try {
+            sentMessages.close();
+        } finally {
+            disregardedMessages.close();
+        }
+    }
+}
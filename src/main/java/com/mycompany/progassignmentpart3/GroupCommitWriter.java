@@ -0,0 +1,177 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches stored messages into group commits on a {@link StoredMessageLog}.
+ * <p>
+ * Callers hand messages to {@link #submit} and get a future that completes once
+ * the message is on disk. A background thread collects submissions until either
+ * {@code maxBatch} messages are waiting or {@code maxDelayMillis} have passed since
+ * the first one arrived, then writes the whole batch with a single fsync.
+ */
+public class GroupCommitWriter implements Closeable {
+
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5;
+
+    // Queued by close() to stop the writer thread
+    private static final Pending STOP = new Pending(null);
+
+    private final StoredMessageLog log;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public GroupCommitWriter(StoredMessageLog log) {
+        this(log, DEFAULT_MAX_BATCH, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public GroupCommitWriter(StoredMessageLog log, int maxBatch, long maxDelayMillis) {
+        if (maxBatch < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxBatch must be >= 1 and maxDelayMillis >= 0");
+        }
+        this.log = log;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writer = new Thread(this::run, "stored-message-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Queues a message; the future completes once it has been written and fsynced
+    public CompletableFuture<Void> submit(Message message) {
+        Pending pending = new Pending(message);
+        if (closed) {
+            pending.done.completeExceptionally(new IOException("Group commit writer is closed"));
+            return pending.done;
+        }
+        queue.add(pending);
+        // queued after close() drained the queue: the writer has stopped and nobody will take it
+        if (closed && queue.remove(pending)) {
+            pending.done.completeExceptionally(new IOException("Group commit writer is closed"));
+        }
+        return pending.done;
+    }
+
+    // Queues every message; the future completes once all of them are on disk
+    public CompletableFuture<Void> submitAll(List<Message> messages) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            futures.add(submit(m));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    // Stops accepting messages, writes whatever is queued and waits for the writer thread.
+    // The writer is stopped with a marker rather than an interrupt, because interrupting
+    // a thread inside FileChannel I/O closes the channel.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // a submit that raced with close() may have queued after the marker; submit checks
+        // again after queueing, for one that queues after this drain
+        Pending late;
+        while ((late = queue.poll()) != null) {
+            late.done.completeExceptionally(new IOException("Group commit writer is closed"));
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch + 1);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                stopping = collect(batch);
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Waits for a first message, then keeps collecting until the batch is full or the window
+    // closes; returns true once the stop marker has been collected
+    private boolean collect(List<Pending> batch) throws InterruptedException {
+        Pending first = queue.take();
+        batch.add(first);
+        if (first == STOP) {
+            return true;
+        }
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatch) {
+            int before = batch.size();
+            if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                if (batch.subList(before, batch.size()).contains(STOP)) {
+                    return true;
+                }
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            if (next == STOP) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commit(List<Pending> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            messages.add(p.message);
+        }
+        try {
+            log.appendAll(messages);
+            for (Pending p : batch) {
+                p.done.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Pending p : batch) {
+                p.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+}
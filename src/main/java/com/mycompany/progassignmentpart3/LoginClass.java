@@ -4,6 +4,8 @@
  */
 package com.mycompany.progassignmentpart3;
 
+import io.github.st10159464.CredentialValidator;
+
 /**
  *
  * @author lab_services_student
@@ -13,16 +15,14 @@ public class LoginClass {
         return username.contains("_") && username.length() <= 5;
     }
 
+    // At least 8 characters with a capital letter, a symbol and a digit
     public static boolean checkPasswordComplexity(String password) {
-        return password.length() >= 8
-            && password.matches(".*[A-Z].*")
-            && password.matches(".*[^a-zA-Z0-9].*")
-            && password.matches(".*\\d.*");
+        return CredentialValidator.hasUpperSymbolAndDigit(password);
     }
 
     public static boolean checkCellphoneNumber(String cellphoneNumber) {
        
-        return cellphoneNumber.matches("\\+[0-9]{11}$");
+        return CredentialValidator.isPlusElevenDigits(cellphoneNumber);
     }
 
     public static boolean verifyUsernameandPassword(String loginUsername, String loginPassword,
@@ -4,31 +4,43 @@
  */
 package com.mycompany.progassignmentpart3;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import io.github.st10159464.RegexWhitespace;
 import javax.swing.JOptionPane;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Message {
 
     private static final String STORED_MESSAGES_FILE = "storedMessages.json";
-    private static final Gson gson = new Gson();
+    private static final StoredMessageLog storedMessageLog = StoredMessageLog.forFile(STORED_MESSAGES_FILE);
 
     private final String id;
     private final String content;
     private final String recipient;
+    // Epoch milliseconds MessageIdGenerator issued the ID at; 0 for any other ID, such as a
+    // legacy decimal one, and for stored JSON written before the field existed
+    private final long issuedAt;
+    // Computed on first use; transient so it is neither saved nor expected in stored JSON
+    private transient String messageHash;
 
     public Message(String id, String content, String recipient) {
+        this(id, content, recipient, 0);
+    }
+
+    public Message(String id, String content, String recipient, long issuedAt) {
         this.id = id;
         this.content = content;
         this.recipient = recipient;
+        this.issuedAt = issuedAt;
+    }
+
+    // A message whose ID was just issued by MessageIdGenerator
+    static Message issued(String id, String content, String recipient) {
+        return new Message(id, content, recipient, MessageIdGenerator.timestampOf(id));
     }
 
     
@@ -44,6 +56,16 @@ public class Message {
         return recipient;
     }
 
+    // When the ID was issued, or 0 if it did not come from MessageIdGenerator
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    // True if the ID came from MessageIdGenerator, so its order is time order
+    public boolean hasIssuedAt() {
+        return issuedAt != 0;
+    }
+
     // Check message id length 
     public boolean checkMessageID() {
         return id != null && id.length() <= 10;
@@ -59,35 +81,93 @@ public class Message {
         }
     }
 
-    // Create message hash
+    // Create message hash: id, first and last word in upper case, and content length.
+    // Worked out once per message and cached.
     public String createMessageHash() {
+        String hash = messageHash;
+        if (hash == null) {
+            hash = computeMessageHash();
+            messageHash = hash;
+        }
+        return hash;
+    }
+
+    // Same words as content.trim().split("\\s+"), found by scanning in from both ends
+    private String computeMessageHash() {
         if (content == null || id == null) return "";
-        String[] words = content.trim().split("\\s+");
-        String firstWord = words.length > 0 ? words[0] : "";
-        String lastWord = words.length > 1 ? words[words.length - 1] : "";
-        return id + ":" + (firstWord + lastWord).toUpperCase() + ":" + content.length();
+        int start = 0;
+        int end = content.length();
+        while (start < end && content.charAt(start) <= ' ') start++;
+        while (end > start && content.charAt(end - 1) <= ' ') end--;
+
+        int firstEnd = start;
+        while (firstEnd < end && !isSplitWhitespace(content.charAt(firstEnd))) firstEnd++;
+        // A single word has no last word
+        int lastStart = end;
+        while (lastStart > firstEnd && !isSplitWhitespace(content.charAt(lastStart - 1))) lastStart--;
+
+        StringBuilder words = new StringBuilder((firstEnd - start) + (end - lastStart));
+        words.append(content, start, firstEnd).append(content, lastStart, end);
+        return id + ":" + words.toString().toUpperCase() + ":" + content.length();
     }
 
-    // Print messages from a list
+    // The characters matched by the regex class \s, as split("\\s+") uses
+    static boolean isSplitWhitespace(char c) {
+        return RegexWhitespace.matches(c);
+    }
+
+    // Print messages from a list. Builds the whole text in memory; the menu shows
+    // printMessages(messages, offset, limit) a page at a time instead.
     public static String printMessages(List<Message> messages) {
         if (messages.isEmpty()) {
             return "No messages sent yet.";
         }
-        StringBuilder sb = new StringBuilder();
+        return printMessages(messages, 0, messages.size());
+    }
+
+    // Print one page of messages: up to limit messages starting at offset
+    public static String printMessages(List<Message> messages, int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), messages.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), messages.size());
+        StringWriter out = new StringWriter();
+        try {
+            writeMessages(messages.subList(from, to), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    // Streams messages to out one at a time, so memory use does not grow with the
+    // number of messages. out is flushed but not closed.
+    public static void writeMessages(Iterable<Message> messages, Writer out) throws IOException {
         for (Message msg : messages) {
-            sb.append("ID: ").append(msg.getId())
-              .append("\nRecipient: ").append(msg.getRecipient())
-              .append("\nContent: ").append(msg.getContent())
-              .append("\nHash: ").append(msg.createMessageHash())
-              .append("\n\n");
+            out.write("ID: ");
+            out.write(String.valueOf(msg.getId()));
+            out.write("\nRecipient: ");
+            out.write(String.valueOf(msg.getRecipient()));
+            out.write("\nContent: ");
+            out.write(String.valueOf(msg.getContent()));
+            out.write("\nHash: ");
+            out.write(msg.createMessageHash());
+            out.write("\n\n");
         }
-        return sb.toString();
+        out.flush();
     }
 
-    // Save messages in JSON file
+    // Save messages in JSON file, replacing whatever was stored before
     public static void storeMessagesToJson(List<Message> messages) {
-        try (Writer writer = new FileWriter(STORED_MESSAGES_FILE)) {
-            gson.toJson(messages, writer);
+        try {
+            storedMessageLog.rewrite(messages);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error saving messages: " + e.getMessage());
+        }
+    }
+
+    // Append one message to the stored messages
+    public static void storeMessageToJson(Message message) {
+        try {
+            storedMessageLog.append(message);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null, "Error saving messages: " + e.getMessage());
         }
@@ -95,12 +175,8 @@ public class Message {
 
     // Load stored messages from JSON file
     public static List<Message> loadMessagesFromJson() {
-        try (Reader reader = new FileReader(STORED_MESSAGES_FILE)) {
-            Type listType = new TypeToken<List<Message>>(){}.getType();
-            List<Message> messages = gson.fromJson(reader, listType);
-            if (messages != null) {
-                return messages;
-            }
+        try {
+            return storedMessageLog.load();
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null, "Error loading messages: " + e.getMessage());
         }
@@ -0,0 +1,104 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, monotonic, Snowflake-style message IDs that still pass
+ * {@link Message#checkMessageID}: exactly 10 characters.
+ * <p>
+ * An ID is a 51-bit number written as 10 upper-case base-36 digits (0-9, A-Z),
+ * zero-padded, so IDs sort as strings in the order they were issued:
+ * <pre>
+ *   41 bits  milliseconds since 2024-01-01 UTC (good until 2093)
+ *    4 bits  node, 0-15, from -Dchatapp.node so several processes never collide
+ *    6 bits  sequence within the millisecond
+ * </pre>
+ * Every ID a generator issues is greater than the one before, whatever the thread.
+ * When 64 IDs have been issued in one millisecond, or the clock steps back, the
+ * generator runs ahead of the clock rather than repeat itself, and the clock catches
+ * up once the burst is over. Issuing an ID is one compare-and-set on a single
+ * {@code AtomicLong}, with no lock and no {@code String.format}.
+ */
+public class MessageIdGenerator {
+
+    public static final int ID_LENGTH = 10;
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    static final int NODE_BITS = 4;
+    static final int SEQUENCE_BITS = 6;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final MessageIdGenerator SHARED = new MessageIdGenerator(Integer.getInteger("chatapp.node", 0));
+
+    private final int node;
+    private final LongSupplier clock;
+    // Last issued (milliseconds << SEQUENCE_BITS | sequence)
+    private final AtomicLong last = new AtomicLong();
+
+    public MessageIdGenerator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    MessageIdGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("node must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    // The generator shared by every session in this process
+    public static MessageIdGenerator shared() {
+        return SHARED;
+    }
+
+    public String nextId() {
+        long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long stamp = last.updateAndGet(prev -> Math.max(prev + 1, now));
+        long millis = stamp >>> SEQUENCE_BITS;
+        long sequence = stamp & ((1 << SEQUENCE_BITS) - 1);
+        return encode((millis << (NODE_BITS + SEQUENCE_BITS)) | ((long) node << SEQUENCE_BITS) | sequence);
+    }
+
+    // Epoch milliseconds an ID was issued at (or run ahead to), or -1 if it is not one of ours
+    public static long timestampOf(String id) {
+        long value = decode(id);
+        return value < 0 ? -1 : (value >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeOf(String id) {
+        long value = decode(id);
+        return value < 0 ? -1 : (int) (value >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+
+    static String encode(long value) {
+        char[] id = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            id[i] = DIGITS[(int) (value % 36)];
+            value /= 36;
+        }
+        return new String(id);
+    }
+
+    // The number a 10-character base-36 ID stands for, or -1
+    static long decode(String id) {
+        if (id == null || id.length() != ID_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit = c >= '0' && c <= '9' ? c - '0' : c >= 'A' && c <= 'Z' ? c - 'A' + 10 : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 36 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One index over a session's sent, stored and disregarded messages.
+ * <p>
+ * Two indexes are kept in step:
+ * <ul>
+ *   <li>an ID hash map, so {@link #findById} is O(1) whichever list the message is in;</li>
+ *   <li>a skip list sorted by ID, newest first, so {@link #latest}, {@link #range} and
+ *       {@link #between} cost O(log n + k) for k results.</li>
+ * </ul>
+ * Every query returns messages newest first. The skip list is kept in that order because
+ * walking a {@code ConcurrentSkipListMap} backwards searches again from the head for each
+ * step, which made "last 20" about 30 times slower than a forward walk.
+ * IDs from {@link MessageIdGenerator} sort in the order they were issued, so ID order is
+ * time order. Older decimal IDs in a stored-messages file still sort and look up correctly,
+ * but their position says nothing about when they were written: they fall among IDs issued
+ * in early 2024. {@link #between} therefore only returns messages that carry an issue time
+ * ({@link Message#hasIssuedAt}), and skips the legacy ones in its ID range.
+ * <p>
+ * Safe to use from several threads: stored messages are added by the background load
+ * while the session sends.
+ */
+public class MessageIndex {
+
+    public enum Status { SENT, STORED, DISREGARDED }
+
+    // Highest ID first; legacy duplicate IDs keep their own entries, in insertion order
+    private static final Comparator<Key> KEY_ORDER =
+            Comparator.comparing((Key k) -> k.id).reversed().thenComparingLong(k -> k.sequence);
+
+    // Last epoch millisecond a generated ID can carry
+    private static final long LAST_MILLIS = MessageIdGenerator.EPOCH_MILLIS + (1L << 41) - 1;
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Map<String, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Key, Entry> byOrder = new ConcurrentSkipListMap<>(KEY_ORDER);
+    // Messages per status, indexed by ordinal
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(Status.values().length);
+
+    // A message together with the list it belongs to
+    public static final class Entry {
+        private final Key key;
+        private final Message message;
+        private final Status status;
+
+        private Entry(Key key, Message message, Status status) {
+            this.key = key;
+            this.message = message;
+            this.status = status;
+        }
+
+        // An entry for a message that is not in the index, such as one faulted in from disk
+        Entry(Message message, Status status) {
+            this(null, message, status);
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+
+    private static final class Key {
+        final String id;
+        final long sequence;
+
+        Key(String id, long sequence) {
+            this.id = id;
+            this.sequence = sequence;
+        }
+    }
+
+    public void add(Message message, Status status) {
+        String id = message.getId() == null ? "" : message.getId();
+        Key key = new Key(id, nextSequence.getAndIncrement());
+        Entry entry = new Entry(key, message, status);
+        byOrder.put(key, entry);
+        counts.incrementAndGet(status.ordinal());
+        if (message.getId() != null) {
+            // the first message with an ID answers lookups, as the old scan did
+            byId.putIfAbsent(id, entry);
+        }
+    }
+
+    public void addAll(Collection<Message> messages, Status status) {
+        for (Message m : messages) {
+            add(m, status);
+        }
+    }
+
+    // Removes this exact message; returns false if it was not indexed
+    public boolean remove(Message message) {
+        String id = message.getId() == null ? "" : message.getId();
+        for (Entry e : sameId(id).values()) {
+            if (e.message == message && byOrder.remove(e.key, e)) {
+                counts.decrementAndGet(e.status.ordinal());
+                if (message.getId() != null && byId.remove(id, e)) {
+                    // a legacy duplicate takes over the ID, if there is one
+                    Map.Entry<Key, Entry> next = sameId(id).firstEntry();
+                    if (next != null) {
+                        byId.putIfAbsent(id, next.getValue());
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // O(1): the first indexed message with this ID, or null
+    public Entry findById(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    // The n messages with the highest IDs, newest first
+    public List<Entry> latest(int n) {
+        return take(byOrder, n);
+    }
+
+    // The newest limit messages with fromId <= id < toId, newest first; null leaves an end open.
+    // Passing the oldest ID of one page as toId gives the page before it.
+    public List<Entry> range(String fromId, String toId, int limit) {
+        NavigableMap<Key, Entry> view;
+        if (fromId != null && toId != null) {
+            if (fromId.compareTo(toId) >= 0) {
+                return new ArrayList<>();
+            }
+            view = byOrder.subMap(new Key(toId, Long.MAX_VALUE), false, new Key(fromId, Long.MAX_VALUE), true);
+        } else if (toId != null) {
+            view = byOrder.tailMap(new Key(toId, Long.MAX_VALUE), false);
+        } else if (fromId != null) {
+            view = byOrder.headMap(new Key(fromId, Long.MAX_VALUE), true);
+        } else {
+            view = byOrder;
+        }
+        return take(view, limit);
+    }
+
+    // Messages whose ID was issued in [fromMillis, toMillis), newest first; legacy IDs are
+    // never included
+    public List<Entry> between(long fromMillis, long toMillis) {
+        List<Entry> result = new ArrayList<>();
+        if (fromMillis >= toMillis || fromMillis > LAST_MILLIS) {
+            return result;
+        }
+        String fromId = lowestIdAt(fromMillis);
+        String toId = toMillis > LAST_MILLIS ? null : lowestIdAt(toMillis);
+        NavigableMap<Key, Entry> view = toId == null
+                ? byOrder.headMap(new Key(fromId, Long.MAX_VALUE), true)
+                : byOrder.subMap(new Key(toId, Long.MAX_VALUE), false, new Key(fromId, Long.MAX_VALUE), true);
+        for (Entry e : view.values()) {
+            long issued = e.message.getIssuedAt();
+            if (e.message.hasIssuedAt() && issued >= fromMillis && issued < toMillis) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        int n = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    public int size(Status status) {
+        return counts.get(status.ordinal());
+    }
+
+    // Smallest generated ID that could be issued at this epoch millisecond
+    private static String lowestIdAt(long epochMillis) {
+        long millis = epochMillis <= MessageIdGenerator.EPOCH_MILLIS ? 0 : epochMillis - MessageIdGenerator.EPOCH_MILLIS;
+        return MessageIdGenerator.encode(millis << (MessageIdGenerator.NODE_BITS + MessageIdGenerator.SEQUENCE_BITS));
+    }
+
+    private NavigableMap<Key, Entry> sameId(String id) {
+        return byOrder.subMap(new Key(id, Long.MIN_VALUE), true, new Key(id, Long.MAX_VALUE), true);
+    }
+
+    private static List<Entry> take(NavigableMap<Key, Entry> view, int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        for (Entry e : view.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(e);
+        }
+        return result;
+    }
+}
@@ -4,20 +4,13 @@
 
 package com.mycompany.progassignmentpart3;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
-import java.io.FileReader;
-import java.io.FileWriter;
+import javax.swing.JOptionPane;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
-import javax.swing.JOptionPane;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  *
@@ -26,26 +19,55 @@ import javax.swing.JOptionPane;
 public class ProgAssignmentPart3 {
 
  private static final String STORED_MESSAGES_FILE = "storedMessages.json";
-    private static final Gson gson = new Gson();
+    private static final int STORED_PAGE_SIZE = 100;
+    private static final int REPORT_PAGE_SIZE = 50;
+    private static final StoredMessageLog storedMessageLog = StoredMessageLog.forFile(STORED_MESSAGES_FILE);
 
+    // Shows messages a page at a time, with a Next button while more remain
+    private static void showMessagePages(String heading, List<Message> messages) {
+        for (int offset = 0; offset < messages.size(); offset += REPORT_PAGE_SIZE) {
+            String page = heading + Message.printMessages(messages, offset, REPORT_PAGE_SIZE);
+            boolean more = offset + REPORT_PAGE_SIZE < messages.size();
+            String[] buttons = more ? new String[] {"Next", "Close"} : new String[] {"Close"};
+            int choice = JOptionPane.showOptionDialog(null, page, "Messages (page " + (offset / REPORT_PAGE_SIZE + 1) + ")",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, buttons, buttons[0]);
+            if (!more || choice != 0) {
+                return;
+            }
+        }
+    }
+
+    // Rewrites the whole stored-messages file; use storeMessage to add a single message
     public static void saveStoredMessagesToFile(List<Message> storedMessages) {
-        try (Writer writer = new FileWriter(STORED_MESSAGES_FILE)) {
-            gson.toJson(storedMessages, writer);
+        try {
+            storedMessageLog.rewrite(storedMessages);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null, "Error saving stored messages: " + e.getMessage());
         }
     }
 
+    // Appends one message to the stored-messages log and waits for its group commit
+    public static void storeMessage(Message message) {
+        try {
+            storedMessageLog.appendAsync(message).join();
+        } catch (CompletionException e) {
+            JOptionPane.showMessageDialog(null, "Error saving stored messages: " + e.getCause().getMessage());
+        }
+    }
+
     public static List<Message> loadStoredMessagesFromFile() {
-        try (Reader reader = new FileReader(STORED_MESSAGES_FILE)) {
-            Type listType = new TypeToken<List<Message>>(){}.getType();
-            List<Message> messages = gson.fromJson(reader, listType);
-            return messages != null ? messages : new ArrayList<>();
+        try {
+            return storedMessageLog.load();
         } catch (IOException e) {
             return new ArrayList<>();
         }
     }
 
+    // Streams stored messages into the list page by page on a background thread
+    public static CompletableFuture<Integer> loadStoredMessagesInBackground(List<Message> storedMessages) {
+        return storedMessageLog.loadInBackground(STORED_PAGE_SIZE, storedMessages::addAll);
+    }
+
     public static void main(String[] args) {
         String correctUsername = "nate_";
         String correctPassword = "Nathan1!";
@@ -74,11 +96,7 @@ public class ProgAssignmentPart3 {
             }
         }
 
-        List<Message> sentMessages = new ArrayList<>();
-        List<Message> disregardedMessages = new ArrayList<>();
-        List<Message> storedMessages = loadStoredMessagesFromFile();
-
-        Random random = new Random();
+        ChatSession session = new ChatSession(cellphoneNumber, maxMessages, storedMessageLog, STORED_PAGE_SIZE);
 
         boolean exit = false;
         while (!exit) {
@@ -86,16 +104,16 @@ public class ProgAssignmentPart3 {
                 "Send Message", "Show Sent Messages", "Show Stored Messages",
                 "Display Sender/Recipient", "Display Longest Message",
                 "Search by Message ID", "Search by Recipient",
-                "Delete by Hash", "Show Report", "Quit"
+                "Delete by Hash", "Show Report", "Search Content", "Import Messages", "Quit"
             };
             int choice = JOptionPane.showOptionDialog(null, "Choose an option:", "Menu",
                     JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
 
             switch (choice) {
                 case 0: //Send message
-                    if (sentMessages.size() < maxMessages) {
+                    if (session.canSend()) {
                         String newMessage = JOptionPane.showInputDialog("Enter message (max 250 chars):");
-                        if (newMessage == null || newMessage.length() > 250 || newMessage.trim().isEmpty()) {
+                        if (!ChatSession.isValidContent(newMessage)) {
                             JOptionPane.showMessageDialog(null, "Invalid message.");
                             break;
                         }
@@ -104,24 +122,21 @@ public class ProgAssignmentPart3 {
                         int action = JOptionPane.showOptionDialog(null, "Choose action:", "Message Action",
                                 JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, actionOptions, actionOptions[0]);
 
-                        //id for messages
-                        String id = String.format("%010d", random.nextInt(1_000_000_000));
-
                         if (action == 0) { //Send
-                            Message msg = new Message(id, newMessage, cellphoneNumber);
-                            sentMessages.add(msg);
-                            JOptionPane.showMessageDialog(null, "Message sent!\nID: " + id + "\nHash: " + msg.createMessageHash());
+                            Message msg = session.send(newMessage);
+                            JOptionPane.showMessageDialog(null, "Message sent!\nID: " + msg.getId() + "\nHash: " + msg.createMessageHash());
 
                         } else if (action == 1) { // Disregard
-                            Message msg = new Message(id, newMessage, cellphoneNumber);
-                            disregardedMessages.add(msg);
+                            session.disregard(newMessage);
                             JOptionPane.showMessageDialog(null, "Message disregarded.");
 
                         } else if (action == 2) { // Store
-                            Message msg = new Message(id, newMessage, cellphoneNumber);
-                            storedMessages.add(msg);
-                            saveStoredMessagesToFile(storedMessages);
-                            JOptionPane.showMessageDialog(null, "Message stored.");
+                            try {
+                                session.store(newMessage);
+                                JOptionPane.showMessageDialog(null, "Message stored.");
+                            } catch (IOException e) {
+                                JOptionPane.showMessageDialog(null, "Error saving stored messages: " + e.getMessage());
+                            }
                         }
                     } else {
                         JOptionPane.showMessageDialog(null, "Message limit reached.");
@@ -129,27 +144,31 @@ public class ProgAssignmentPart3 {
                     break;
 
                 case 1: 
-                    if (sentMessages.isEmpty()) JOptionPane.showMessageDialog(null, "No sent messages.");
-                    else JOptionPane.showMessageDialog(null, Message.printMessages(sentMessages));
+                    if (session.getSentMessages().isEmpty()) JOptionPane.showMessageDialog(null, "No sent messages.");
+                    else showMessagePages("", session.getSentMessages());
                     break;
 
                 case 2: //Show wstored
-                    if (storedMessages.isEmpty()) JOptionPane.showMessageDialog(null, "No stored messages.");
+                    List<Message> stored = session.getStoredMessages();
+                    if (stored.isEmpty() && session.isStoredLoaded()) JOptionPane.showMessageDialog(null, "No stored messages.");
                     else {
                         StringBuilder sb = new StringBuilder();
-                        for (Message m : storedMessages) {
+                        for (Message m : stored) {
                             sb.append(m.getContent()).append("\n");
                         }
+                        if (!session.isStoredLoaded()) {
+                            sb.append("(Still loading stored messages...)\n");
+                        }
                         JOptionPane.showMessageDialog(null, sb.toString());
                     }
                     break;
 
                 case 3: 
-                    if (sentMessages.isEmpty()) {
+                    if (session.getSentMessages().isEmpty()) {
                         JOptionPane.showMessageDialog(null, "No sent messages.");
                     } else {
                         StringBuilder info = new StringBuilder();
-                        for (Message m : sentMessages) {
+                        for (Message m : session.getSentMessages()) {
                             info.append("Sender: You\nRecipient: ").append(m.getRecipient()).append("\n\n");
                         }
                         JOptionPane.showMessageDialog(null, info.toString());
@@ -157,14 +176,8 @@ public class ProgAssignmentPart3 {
                     break;
 
                 case 4: //longest
-                    if (sentMessages.isEmpty()) {
-                        JOptionPane.showMessageDialog(null, "No messages.");
-                    } else {
-                        Message longest = sentMessages.stream()
-                                .max(Comparator.comparingInt(m -> m.getContent().length()))
-                                .orElse(null);
-                        JOptionPane.showMessageDialog(null, longest != null ? longest.getContent() : "No messages.");
-                    }
+                    Message longest = session.longest();
+                    JOptionPane.showMessageDialog(null, longest != null ? longest.getContent() : "No messages.");
                     break;
 
                 case 5: //Search 
@@ -173,9 +186,11 @@ public class ProgAssignmentPart3 {
                         JOptionPane.showMessageDialog(null, "Invalid ID.");
                         break;
                     }
-                    Message foundId = sentMessages.stream().filter(m -> m.getId().equals(searchId)).findFirst().orElse(null);
+                    MessageIndex.Entry foundId = session.find(searchId.trim());
                     if (foundId != null)
-                        JOptionPane.showMessageDialog(null, "Recipient: " + foundId.getRecipient() + "\nMessage: " + foundId.getContent());
+                        JOptionPane.showMessageDialog(null, "Recipient: " + foundId.getMessage().getRecipient()
+                                + "\nMessage: " + foundId.getMessage().getContent()
+                                + "\nStatus: " + foundId.getStatus());
                     else JOptionPane.showMessageDialog(null, "Not found.");
                     break;
 
@@ -186,10 +201,8 @@ public class ProgAssignmentPart3 {
                         break;
                     }
                     StringBuilder found = new StringBuilder();
-                    for (Message m : sentMessages) {
-                        if (m.getRecipient().equals(searchRec)) {
-                            found.append(m.getContent()).append("\n");
-                        }
+                    for (Message m : session.findByRecipient(searchRec)) {
+                        found.append(m.getContent()).append("\n");
                     }
                     JOptionPane.showMessageDialog(null, found.length() > 0 ? found.toString() : "No messages.");
                     break;
@@ -200,42 +213,58 @@ public class ProgAssignmentPart3 {
                         JOptionPane.showMessageDialog(null, "Invalid hash.");
                         break;
                     }
-                    Iterator<Message> iterator = sentMessages.iterator();
-                    boolean deleted = false;
-                    while (iterator.hasNext()) {
-                        Message m = iterator.next();
-                        if (m.createMessageHash().equals(delHash)) {
-                            iterator.remove();
-                            deleted = true;
-                            JOptionPane.showMessageDialog(null, "Deleted.");
-                            break;
-                        }
-                    }
-                    if (!deleted) JOptionPane.showMessageDialog(null, "Hash not found.");
+                    if (session.deleteByHash(delHash)) JOptionPane.showMessageDialog(null, "Deleted.");
+                    else JOptionPane.showMessageDialog(null, "Hash not found.");
                     break;
 
                 case 8: //Show report
-                    if (sentMessages.isEmpty()) {
+                    if (session.getSentMessages().isEmpty()) {
                         JOptionPane.showMessageDialog(null, "No messages.");
                     } else {
-                        StringBuilder report = new StringBuilder("Report of Sent Messages:\n\n");
-                        for (Message m : sentMessages) {
-                            report.append("ID: ").append(m.getId())
-                                    .append("\nRecipient: ").append(m.getRecipient())
-                                    .append("\nContent: ").append(m.getContent())
-                                    .append("\nHash: ").append(m.createMessageHash())
-                                    .append("\n\n");
-                        }
-                        JOptionPane.showMessageDialog(null, report.toString());
+                        showMessagePages("Report of Sent Messages:\n\n", session.getSentMessages());
+                    }
+                    break;
+
+                case 9: //Search content
+                    String query = JOptionPane.showInputDialog("Enter words (use OR for alternatives, * for prefixes):");
+                    if (query == null || query.trim().isEmpty()) {
+                        JOptionPane.showMessageDialog(null, "Invalid search.");
+                        break;
+                    }
+                    List<Message> matches = session.search(query);
+                    if (matches.isEmpty()) JOptionPane.showMessageDialog(null, "No messages.");
+                    else showMessagePages("Messages matching \"" + query + "\":\n\n", matches);
+                    break;
+
+                case 10: //Import "recipient,content" lines
+                    String path = JOptionPane.showInputDialog("Enter file of recipient,content lines:");
+                    if (path == null || path.trim().isEmpty()) {
+                        JOptionPane.showMessageDialog(null, "Invalid file.");
+                        break;
+                    }
+                    try {
+                        ChatSession.BulkResult result = session.sendAllFromFile(Paths.get(path.trim()));
+                        StringBuilder summary = new StringBuilder("Sent " + result.getSent().size() + " message(s), rejected "
+                                + result.getRejected().size() + ".");
+                        result.getRejected().entrySet().stream().limit(REPORT_PAGE_SIZE).forEach(r ->
+                                summary.append("\nLine ").append(r.getKey()).append(": ").append(r.getValue()));
+                        JOptionPane.showMessageDialog(null, summary.toString());
+                    } catch (IOException e) {
+                        JOptionPane.showMessageDialog(null, "Error reading file: " + e.getMessage());
                     }
                     break;
 
-                case 9: //Quit
+                case 11: //Quit
                 default:
                     exit = true;
                     JOptionPane.showMessageDialog(null, "Goodbye!");
                     break;
             }
         }
+        try {
+            session.close();
+        } catch (IOException e) {
+            // only temporary files of evicted messages are left behind
+        }
     }
 }
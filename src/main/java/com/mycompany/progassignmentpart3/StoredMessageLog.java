@@ -0,0 +1,543 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import io.github.st10159464.Metrics;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Append-only persistence for stored messages.
+ * <p>
+ * The JSON file is still one array of messages, read through {@link StoredMessageReader},
+ * and acts as a compacted snapshot. Its first element is a generation header (below), so
+ * reading it as a plain {@code List<Message>} yields an extra message with null fields. Every message stored after that goes to a write-ahead log
+ * next to it ({@code storedMessages.json.log}), one JSON record per line, so
+ * storing a message costs one small append no matter how many are stored.
+ * <p>
+ * When the log holds as many records as the snapshot, the two are compacted into a
+ * new snapshot. Each compaction rewrites at most twice the records appended since
+ * the last one, so the amortized cost per message stays constant.
+ * <p>
+ * Recovery streams the snapshot element by element and replays the log after it.
+ * A record cut short by a crash is dropped and the log truncated back to the last
+ * complete record.
+ * <p>
+ * Every snapshot write gets the next generation number, kept in a header element at the
+ * start of the array; a log starts with a header line naming the generation it follows.
+ * If a crash hits between replacing the snapshot and clearing the log, the log names an
+ * older generation than the snapshot, so it is already folded in and is dropped rather
+ * than replayed. Message IDs cannot tell this: legacy IDs are random, so different
+ * messages share them. A log naming a newer generation follows a snapshot that was put
+ * back from elsewhere and is replayed; the next snapshot is numbered past both, so the
+ * log still turns stale once compacted. Files from before generations have none and are
+ * treated as generation 0.
+ * <p>
+ * {@link #loadPages} and {@link #loadInBackground} read without this log's lock, so
+ * appends go ahead while pages are handed out. Each notes the log's end when it starts and
+ * replays only up to there; anything appended later is left to whoever appended it.
+ * Compaction and {@link #rewrite} replace the files being read, so they wait until such
+ * loads finish, and a log repaired meanwhile lowers their end to what survived.
+ */
+public class StoredMessageLog implements Closeable {
+
+    static final String LOG_SUFFIX = ".log";
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+    private static final Gson gson = new Gson();
+    private static final Map<Path, StoredMessageLog> openLogs = new HashMap<>();
+    // Timed when io.github.st10159464.Metrics is enabled
+    private static final Metrics.Timer LOAD = Metrics.timer("json.load");
+    private static final Metrics.Timer SAVE = Metrics.timer("json.save");
+    private static final Metrics.Timer APPEND = Metrics.timer("json.append");
+    private static final Metrics.Timer COMPACT = Metrics.timer("json.compact");
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private FileChannel log;
+    private int snapshotRecords;
+    // Generation of the snapshot on disk, as of the last load or snapshot write
+    private long snapshotGeneration;
+    private int logRecords;
+    private final Object groupCommitLock = new Object();
+    private GroupCommitWriter groupCommit;
+    // Log end of each unlocked load still running; guarded by this
+    private final List<AtomicLong> unlockedLoads = new ArrayList<>();
+
+    StoredMessageLog(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        this.logFile = Paths.get(snapshotFile + LOG_SUFFIX);
+    }
+
+    // One shared log per file, so Message and ProgAssignmentPart3 never append to the same file separately
+    public static synchronized StoredMessageLog forFile(String snapshotFile) {
+        return openLogs.computeIfAbsent(Paths.get(snapshotFile).toAbsolutePath(), StoredMessageLog::new);
+    }
+
+    // Recovers all stored messages: the snapshot followed by the log records
+    public List<Message> load() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        load(messages::add);
+        return messages;
+    }
+
+    // Streams every stored message to the sink in order without building a list; returns the
+    // count. The sink runs under this log's lock; loadPages does not hold it.
+    public synchronized int load(Consumer<Message> sink) throws IOException {
+        long start = LOAD.start();
+        try {
+            snapshotRecords = readSnapshot(sink, generation -> snapshotGeneration = generation);
+            logRecords = replayLog(sink);
+            return snapshotRecords + logRecords;
+        } finally {
+            LOAD.stop(start);
+        }
+    }
+
+    // Streams the messages stored so far in pages of pageSize, so a UI can show the first page
+    // right away. onPage runs without this log's lock and must not call rewrite or compact.
+    public int loadPages(int pageSize, Consumer<List<Message>> onPage) throws IOException {
+        AtomicLong logEnd = beginUnlockedLoad();
+        try {
+            return readPages(logEnd, pageSize, onPage);
+        } finally {
+            endUnlockedLoad(logEnd);
+        }
+    }
+
+    // Runs loadPages on a background thread; the future completes with the message count.
+    // The load covers what was stored when this was called, so a message appended after it
+    // returns is never delivered, however soon the thread starts.
+    public CompletableFuture<Integer> loadInBackground(int pageSize, Consumer<List<Message>> onPage) {
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        AtomicLong logEnd;
+        try {
+            logEnd = beginUnlockedLoad();
+        } catch (IOException e) {
+            done.completeExceptionally(e);
+            return done;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                int count;
+                try {
+                    count = readPages(logEnd, pageSize, onPage);
+                } finally {
+                    endUnlockedLoad(logEnd);
+                }
+                done.complete(count);
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }, "stored-message-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return done;
+    }
+
+    private int readPages(AtomicLong logEnd, int pageSize, Consumer<List<Message>> onPage) throws IOException {
+        List<Message> page = new ArrayList<>(pageSize);
+        int count = readUnlocked(logEnd, m -> {
+            page.add(m);
+            if (page.size() == pageSize) {
+                onPage.accept(new ArrayList<>(page));
+                page.clear();
+            }
+        });
+        if (!page.isEmpty()) {
+            onPage.accept(page);
+        }
+        return count;
+    }
+
+    // Notes where the log ends now; compaction waits until endUnlockedLoad
+    private synchronized AtomicLong beginUnlockedLoad() throws IOException {
+        AtomicLong logEnd = new AtomicLong(log != null ? log.size() : Files.exists(logFile) ? Files.size(logFile) : 0);
+        unlockedLoads.add(logEnd);
+        return logEnd;
+    }
+
+    private synchronized void endUnlockedLoad(AtomicLong logEnd) {
+        unlockedLoads.remove(logEnd);
+        notifyAll();
+    }
+
+    // Reads the snapshot and the log up to logEnd; repairs nothing, and leaves the counters alone
+    private int readUnlocked(AtomicLong logEnd, Consumer<Message> sink) throws IOException {
+        long start = LOAD.start();
+        try {
+            AtomicLong generation = new AtomicLong();
+            int count = readSnapshot(sink, generation::set);
+            if (logEnd.get() > 0) {
+                try {
+                    LogScan scan = scanLog(sink, generation.get(), logEnd::get);
+                    count += scan.stale ? 0 : scan.records;
+                } catch (NoSuchFileException e) {
+                    // a stale log was cleared meanwhile, which also set logEnd to 0
+                }
+            }
+            return count;
+        } finally {
+            LOAD.stop(start);
+        }
+    }
+
+    // A repair truncates the log; unlocked loads must not read past what survives
+    private void limitUnlockedLoads(long validLength) {
+        for (AtomicLong logEnd : unlockedLoads) {
+            logEnd.accumulateAndGet(validLength, Math::min);
+        }
+    }
+
+    // Compaction and rewrite replace the files unlocked loads are reading
+    private void awaitUnlockedLoads() throws IOException {
+        while (!unlockedLoads.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for stored messages to load");
+            }
+        }
+    }
+
+    // Appends one stored message and fsyncs it; cost does not depend on how many are already stored
+    public void append(Message message) throws IOException {
+        appendAll(Collections.singletonList(message));
+    }
+
+    // Appends a batch of messages with a single fsync
+    public synchronized void appendAll(List<Message> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long start = APPEND.start();
+        try {
+            openLog();
+            StringBuilder records = new StringBuilder(messages.size() * 128 + 32);
+            if (log.size() == 0) {
+                JsonObject header = new JsonObject();
+                header.addProperty(StoredMessageReader.GENERATION, snapshotGeneration);
+                records.append(header).append('\n');
+            }
+            for (Message m : messages) {
+                gson.toJson(m, Message.class, records);
+                records.append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+            logRecords += messages.size();
+        } finally {
+            APPEND.stop(start);
+        }
+        // deferred while a load reads the files; the first append after it compacts
+        if (unlockedLoads.isEmpty() && logRecords >= Math.max(MIN_COMPACTION_RECORDS, snapshotRecords)) {
+            compact();
+        }
+    }
+
+    // Replaces everything stored with exactly these messages
+    public synchronized void rewrite(List<Message> messages) throws IOException {
+        awaitUnlockedLoads();
+        long start = SAVE.start();
+        try {
+            writeSnapshot(messages);
+            clearLog();
+        } finally {
+            SAVE.stop(start);
+        }
+    }
+
+    // Folds the log into a new snapshot, streaming records from the old files into the new one
+    public synchronized void compact() throws IOException {
+        awaitUnlockedLoads();
+        if (!hasLogRecords()) {
+            return;
+        }
+        long start = COMPACT.start();
+        try {
+            writeSnapshot(json -> load(m -> gson.toJson(m, Message.class, json)));
+            clearLog();
+        } finally {
+            COMPACT.stop(start);
+        }
+    }
+
+    // Queues a message for the next group commit; the future completes once it is on disk
+    public CompletableFuture<Void> appendAsync(Message message) {
+        return groupCommit().submit(message);
+    }
+
+    private GroupCommitWriter groupCommit() {
+        synchronized (groupCommitLock) {
+            if (groupCommit == null) {
+                groupCommit = new GroupCommitWriter(this);
+            }
+            return groupCommit;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Not under this log's lock: the group commit thread needs it to finish its last batch
+        synchronized (groupCommitLock) {
+            if (groupCommit != null) {
+                groupCommit.close();
+                groupCommit = null;
+            }
+        }
+        synchronized (this) {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        }
+    }
+
+    private void openLog() throws IOException {
+        if (log == null) {
+            // The counters drive compaction, so recover them before the first append
+            load(m -> { });
+            log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            log.position(log.size());
+        }
+    }
+
+    private boolean hasLogRecords() throws IOException {
+        return Files.exists(logFile) && Files.size(logFile) > 0;
+    }
+
+    // Streams the snapshot into the sink, reports its generation and returns the count
+    private int readSnapshot(Consumer<Message> sink, LongConsumer onGeneration) throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            onGeneration.accept(0);
+            return 0;
+        }
+        int count = 0;
+        try (StoredMessageReader reader = new StoredMessageReader(
+                Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8))) {
+            Message m;
+            while ((m = reader.next()) != null) {
+                sink.accept(m);
+                count++;
+            }
+            onGeneration.accept(reader.getGeneration());
+        }
+        return count;
+    }
+
+    private void writeSnapshot(List<Message> messages) throws IOException {
+        writeSnapshot(json -> {
+            for (Message m : messages) {
+                gson.toJson(m, Message.class, json);
+            }
+            return messages.size();
+        });
+    }
+
+    // Writes to a temporary file first and swaps it in, so a crash leaves either the old or the new snapshot
+    private void writeSnapshot(SnapshotBody body) throws IOException {
+        Path tmp = Paths.get(snapshotFile + ".tmp");
+        // read from disk, since this log may not have loaded the snapshot yet; past the log's
+        // generation too, so a log left behind by a crash below is older than the new snapshot
+        long generation = Math.max(generationOnDisk(), logGenerationOnDisk()) + 1;
+        int count;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            JsonWriter json = new JsonWriter(new BufferedWriter(
+                    Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)));
+            json.beginArray();
+            json.beginObject().name(StoredMessageReader.GENERATION).value(generation).endObject();
+            count = body.write(json);
+            json.endArray();
+            json.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotRecords = count;
+        snapshotGeneration = generation;
+    }
+
+    private long generationOnDisk() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (StoredMessageReader reader = new StoredMessageReader(
+                Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8))) {
+            reader.next();
+            return reader.getGeneration();
+        }
+    }
+
+    // The generation named by the log's header line, or 0 if there is no log or no header
+    private long logGenerationOnDisk() throws IOException {
+        if (!hasLogRecords()) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            Long header = first != null ? parseHeader(first) : null;
+            return header != null ? header : 0;
+        } catch (MalformedInputException e) {
+            // a torn first record; load repairs it, and it names no generation
+            return 0;
+        }
+    }
+
+    // Writes the elements of the snapshot array and returns how many were written
+    private interface SnapshotBody {
+        int write(JsonWriter json) throws IOException;
+    }
+
+    private void clearLog() throws IOException {
+        if (log != null) {
+            log.truncate(0);
+            log.position(0);
+            log.force(true);
+        } else {
+            Files.deleteIfExists(logFile);
+        }
+        logRecords = 0;
+    }
+
+    // Replays complete log records into the sink and returns how many the log holds. A log
+    // that follows an older snapshot generation is already in the snapshot and is cleared;
+    // one that follows a newer generation is replayed.
+    private int replayLog(Consumer<Message> sink) throws IOException {
+        if (!hasLogRecords()) {
+            return 0;
+        }
+        LogScan scan = scanLog(sink, snapshotGeneration, () -> Long.MAX_VALUE);
+        if (scan.stale) {
+            limitUnlockedLoads(0);
+            clearLog();
+            return 0;
+        }
+        truncateTornTail(scan.validLength);
+        return scan.records;
+    }
+
+    // What scanLog found: complete records, where the last one ends, and whether the log
+    // follows an older snapshot generation
+    private static final class LogScan {
+        int records;
+        long validLength;
+        boolean stale;
+    }
+
+    // Reads complete log records into the sink, up to limit bytes; changes nothing on disk
+    private LogScan scanLog(Consumer<Message> sink, long generation, LongSupplier limit) throws IOException {
+        LogScan scan = new LogScan();
+        boolean firstLine = true;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long offset = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (offset > limit.getAsLong()) {
+                    break;
+                }
+                String record = line.toString(StandardCharsets.UTF_8);
+                line.reset();
+                if (firstLine) {
+                    firstLine = false;
+                    Long header = parseHeader(record);
+                    if (header != null) {
+                        if (header < generation) {
+                            scan.stale = true;
+                            break;
+                        }
+                        scan.validLength = offset;
+                        continue;
+                    }
+                    // a log from before generations: no header, records from the first line
+                }
+                Message m = parseRecord(record);
+                if (m == null) {
+                    break;
+                }
+                sink.accept(m);
+                scan.records++;
+                scan.validLength = offset;
+            }
+        }
+        return scan;
+    }
+
+    // The generation in a log header line, or null if the line is not a header
+    private static Long parseHeader(String json) {
+        try {
+            JsonObject header = gson.fromJson(json, JsonObject.class);
+            if (header != null && header.size() == 1 && header.has(StoredMessageReader.GENERATION)) {
+                return header.get(StoredMessageReader.GENERATION).getAsLong();
+            }
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            // not a header; parseRecord decides whether it is a record
+        }
+        return null;
+    }
+
+    private static Message parseRecord(String json) {
+        try {
+            return gson.fromJson(json, Message.class);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private void truncateTornTail(long validLength) throws IOException {
+        if (Files.size(logFile) == validLength) {
+            return;
+        }
+        limitUnlockedLoads(validLength);
+        if (log != null) {
+            log.truncate(validLength);
+            log.position(validLength);
+        } else {
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+        }
+    }
+}
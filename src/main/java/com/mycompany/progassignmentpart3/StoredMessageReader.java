@@ -0,0 +1,126 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a JSON array of messages one element at a time.
+ * <p>
+ * Unlike {@code gson.fromJson(reader, List<Message>)}, only the message being read
+ * is held in memory, so callers can feed a store or show a first page before the
+ * rest of the file has been parsed.
+ * <p>
+ * A {@link StoredMessageLog} snapshot starts its array with a header element,
+ * {@code {"snapshotGeneration": n}}; it is read into {@link #getGeneration} and is not
+ * returned as a message. Arrays without one have generation 0.
+ */
+public class StoredMessageReader implements Closeable {
+
+    // Member of the header element that starts a snapshot
+    static final String GENERATION = "snapshotGeneration";
+
+    private static final Gson gson = new Gson();
+
+    private final JsonReader json;
+    private boolean started;
+    private boolean finished;
+    private long generation;
+    // The first element, read early to check whether it is the header
+    private Message firstMessage;
+
+    public StoredMessageReader(Reader reader) {
+        this.json = new JsonReader(reader);
+    }
+
+    // Returns the next message, or null once the array has been read
+    public Message next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (!started) {
+            started = true;
+            JsonToken first;
+            try {
+                first = json.peek();
+            } catch (EOFException e) {
+                // empty file
+                finished = true;
+                return null;
+            }
+            if (first == JsonToken.NULL) {
+                // a null list is saved as "null"
+                json.nextNull();
+                finished = true;
+                return null;
+            }
+            json.beginArray();
+            firstMessage = readFirst();
+        }
+        if (firstMessage != null) {
+            Message m = firstMessage;
+            firstMessage = null;
+            return m;
+        }
+        if (!json.hasNext()) {
+            json.endArray();
+            finished = true;
+            return null;
+        }
+        try {
+            return gson.fromJson(json, Message.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed message at " + json.getPath(), e);
+        }
+    }
+
+    // Reads the header element if there is one; returns the first element if it is a message
+    private Message readFirst() throws IOException {
+        if (!json.hasNext() || json.peek() != JsonToken.BEGIN_OBJECT) {
+            return null;
+        }
+        try {
+            JsonObject element = gson.fromJson(json, JsonObject.class);
+            if (element.size() == 1 && element.has(GENERATION)) {
+                generation = element.get(GENERATION).getAsLong();
+                return null;
+            }
+            return gson.fromJson(element, Message.class);
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed message at " + json.getPath(), e);
+        }
+    }
+
+    // The snapshot generation in the header element, or 0 without one. Known once next()
+    // has been called.
+    public long getGeneration() {
+        return generation;
+    }
+
+    // Returns up to pageSize messages; an empty page means the array has been read
+    public List<Message> nextPage(int pageSize) throws IOException {
+        List<Message> page = new ArrayList<>(pageSize);
+        Message m;
+        while (page.size() < pageSize && (m = next()) != null) {
+            page.add(m);
+        }
+        return page;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+}
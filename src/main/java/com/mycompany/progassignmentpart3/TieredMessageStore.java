@@ -0,0 +1,458 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mycompany.progassignmentpart3;
+
+import io.github.st10159464.InvertedIndex;
+import io.github.st10159464.Metrics;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A list of messages in send order whose heap use stays bounded however many are added.
+ * <p>
+ * The newest {@code memoryLimit} messages are kept in memory. When that is exceeded the
+ * oldest {@code segmentSize} of them are written to a new {@link BinaryMessageFile}
+ * segment on disk and dropped from the heap; only a few fields per segment stay behind.
+ * The list keeps its order and indexes, so {@link #get}, iteration and {@code subList}
+ * (and therefore {@link Message#printMessages} and {@link Message#writeMessages}) read
+ * evicted messages transparently. Each read of an evicted message faults its whole segment
+ * back in; the last few decoded segments are cached, so a report walking the list reads
+ * each segment once.
+ * <p>
+ * Evicted messages are looked up by ID with the segment's on-disk index, searched with a
+ * per-segment {@link InvertedIndex} built when the segment is faulted in, and deleted with
+ * a tombstone; a segment whose messages are all deleted is removed from disk.
+ * Faulted-in messages are fresh copies, so evicted messages are told apart by ID.
+ * <p>
+ * Not thread-safe; like {@link ChatSession}, a store is used by one thread.
+ */
+public class TieredMessageStore extends AbstractList<Message> implements Closeable {
+
+    public static final int DEFAULT_MEMORY_LIMIT = 10_000;
+    public static final int DEFAULT_SEGMENT_SIZE = 1_000;
+    // Decoded segments kept in memory for reads
+    private static final int CACHED_SEGMENTS = 4;
+
+    // Timed when io.github.st10159464.Metrics is enabled
+    private static final Metrics.Timer SPILL = Metrics.timer("tier.spill");
+    private static final Metrics.Timer FAULT = Metrics.timer("tier.fault");
+    private static final Metrics.Counter SPILL_FAILED = Metrics.counter("tier.spill.failed");
+
+    private final Path configuredDirectory;
+    private final int memoryLimit;
+    private final int segmentSize;
+    private final Consumer<List<Message>> onEvict;
+
+    // Newest messages, oldest first
+    private final List<Message> hot = new ArrayList<>();
+    // Evicted messages, oldest segment first
+    private final List<Segment> segments = new ArrayList<>();
+    private int coldCount;
+    // Index of each segment's first message; rebuilt after evictions and deletes
+    private int[] segmentStarts;
+    private Path directory;
+    private int segmentsWritten;
+
+    private final Map<Segment, Loaded> cache = new LinkedHashMap<Segment, Loaded>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Segment, Loaded> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    // Spills to a temporary directory that close() deletes
+    public TieredMessageStore(int memoryLimit, int segmentSize, Consumer<List<Message>> onEvict) {
+        this(null, memoryLimit, segmentSize, onEvict);
+    }
+
+    // directory null spills to a temporary directory; onEvict is told which messages left the heap
+    public TieredMessageStore(Path directory, int memoryLimit, int segmentSize, Consumer<List<Message>> onEvict) {
+        if (segmentSize < 1 || memoryLimit < segmentSize) {
+            throw new IllegalArgumentException("segmentSize must be >= 1 and memoryLimit >= segmentSize");
+        }
+        this.configuredDirectory = directory;
+        this.memoryLimit = memoryLimit;
+        this.segmentSize = segmentSize;
+        this.onEvict = onEvict;
+    }
+
+    // Metadata of one segment file; the messages themselves stay on disk
+    private static final class Segment {
+        final Path file;
+        final String minId;
+        final String maxId;
+        // Issue-time range of the messages that have one; 0 when none does
+        final long minIssuedAt;
+        final long maxIssuedAt;
+        final Set<String> deleted = new HashSet<>();
+        int live;
+        // Longest live message, earliest on ties; null when it must be worked out again
+        String longestId;
+        int longestLength;
+
+        Segment(Path file, List<Message> messages) {
+            this.file = file;
+            this.live = messages.size();
+            String min = null;
+            String max = null;
+            long minIssued = 0;
+            long maxIssued = 0;
+            for (Message m : messages) {
+                String id = m.getId();
+                if (id != null) {
+                    min = min == null || id.compareTo(min) < 0 ? id : min;
+                    max = max == null || id.compareTo(max) > 0 ? id : max;
+                }
+                if (m.hasIssuedAt()) {
+                    minIssued = minIssued == 0 ? m.getIssuedAt() : Math.min(minIssued, m.getIssuedAt());
+                    maxIssued = Math.max(maxIssued, m.getIssuedAt());
+                }
+            }
+            this.minId = min;
+            this.maxId = max;
+            this.minIssuedAt = minIssued;
+            this.maxIssuedAt = maxIssued;
+            findLongest(messages);
+        }
+
+        boolean mayContain(String id) {
+            return minId != null && id.compareTo(minId) >= 0 && id.compareTo(maxId) <= 0 && !deleted.contains(id);
+        }
+
+        void findLongest(List<Message> messages) {
+            longestId = null;
+            longestLength = -1;
+            for (Message m : messages) {
+                if (lengthOf(m) > longestLength && !deleted.contains(m.getId())) {
+                    longestId = m.getId();
+                    longestLength = lengthOf(m);
+                }
+            }
+        }
+    }
+
+    // A segment faulted into memory
+    private static final class Loaded {
+        final List<Message> messages;
+        InvertedIndex<Message> index;
+
+        Loaded(List<Message> messages) {
+            this.messages = messages;
+        }
+
+        InvertedIndex<Message> index() {
+            if (index == null) {
+                index = new InvertedIndex<>(Message::getContent);
+                for (Message m : messages) {
+                    index.add(m);
+                }
+            }
+            return index;
+        }
+    }
+
+    @Override
+    public boolean add(Message message) {
+        hot.add(Objects.requireNonNull(message));
+        modCount++;
+        if (hot.size() > memoryLimit) {
+            spill();
+        }
+        return true;
+    }
+
+    @Override
+    public Message get(int index) {
+        Objects.checkIndex(index, size());
+        if (index >= coldCount) {
+            return hot.get(index - coldCount);
+        }
+        int[] starts = segmentStarts();
+        int s = Arrays.binarySearch(starts, index);
+        if (s < 0) {
+            s = -s - 2;
+        }
+        return load(segments.get(s)).messages.get(index - starts[s]);
+    }
+
+    @Override
+    public int size() {
+        return coldCount + hot.size();
+    }
+
+    // Removes a message: by identity while it is in memory, by ID once it has been evicted
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Message)) {
+            return false;
+        }
+        Iterator<Message> it = hot.iterator();
+        while (it.hasNext()) {
+            if (it.next() == o) {
+                it.remove();
+                modCount++;
+                return true;
+            }
+        }
+        return removeEvicted(((Message) o).getId());
+    }
+
+    public int getMemoryCount() {
+        return hot.size();
+    }
+
+    public int getEvictedCount() {
+        return coldCount;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // An evicted message with this ID, faulted in from disk, or null
+    public Message findEvicted(String id) {
+        if (id == null) {
+            return null;
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.mayContain(id)) {
+                Message m = findIn(segment, id);
+                if (m != null) {
+                    return m;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Deletes an evicted message by ID; returns false if no evicted message has it
+    public boolean removeEvicted(String id) {
+        if (id == null) {
+            return false;
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (!segment.mayContain(id) || findIn(segment, id) == null) {
+                continue;
+            }
+            segment.deleted.add(id);
+            segment.live--;
+            coldCount--;
+            segmentStarts = null;
+            modCount++;
+            Loaded loaded = cache.get(segment);
+            if (loaded != null) {
+                loaded.messages.removeIf(m -> {
+                    if (id.equals(m.getId())) {
+                        if (loaded.index != null) {
+                            loaded.index.remove(m);
+                        }
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            if (segment.live == 0) {
+                segments.remove(i);
+                cache.remove(segment);
+                delete(segment.file);
+            } else if (id.equals(segment.longestId)) {
+                segment.findLongest(load(segment).messages);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Evicted messages matching the query, in send order; see InvertedIndex.search for the syntax
+    public List<Message> searchEvicted(String query) {
+        List<Message> found = new ArrayList<>();
+        for (Segment segment : new ArrayList<>(segments)) {
+            found.addAll(load(segment).index().search(query));
+        }
+        return found;
+    }
+
+    // The longest evicted message, earliest on ties, or null
+    public Message longestEvicted() {
+        Segment best = null;
+        for (Segment segment : segments) {
+            if (best == null || segment.longestLength > best.longestLength) {
+                best = segment;
+            }
+        }
+        return best == null ? null : findIn(best, best.longestId);
+    }
+
+    // Up to n evicted messages, newest first
+    public List<Message> newestEvicted(int n) {
+        List<Message> found = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0 && found.size() < n; i--) {
+            List<Message> messages = load(segments.get(i)).messages;
+            for (int j = messages.size() - 1; j >= 0 && found.size() < n; j--) {
+                found.add(messages.get(j));
+            }
+        }
+        return found;
+    }
+
+    // Evicted messages whose ID was issued in [fromMillis, toMillis), newest first; messages
+    // without an issue time, such as legacy IDs, are never included
+    public List<Message> evictedBetween(long fromMillis, long toMillis) {
+        List<Message> found = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.maxIssuedAt == 0 || segment.maxIssuedAt < fromMillis || segment.minIssuedAt >= toMillis) {
+                continue;
+            }
+            List<Message> messages = load(segment).messages;
+            for (int j = messages.size() - 1; j >= 0; j--) {
+                Message m = messages.get(j);
+                if (m.hasIssuedAt() && m.getIssuedAt() >= fromMillis && m.getIssuedAt() < toMillis) {
+                    found.add(m);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Deletes every segment file, and the directory if it was a temporary one
+    @Override
+    public void close() throws IOException {
+        cache.clear();
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.file);
+        }
+        coldCount = 0;
+        segments.clear();
+        segmentStarts = null;
+        if (directory != null && configuredDirectory == null) {
+            // includes any empty segment whose delete failed earlier
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+            directory = null;
+        }
+    }
+
+    // Moves the oldest segmentSize messages to a new segment file. If the write fails they
+    // stay in memory and the next add tries again, so no message is ever lost.
+    private void spill() {
+        List<Message> batch = new ArrayList<>(hot.subList(0, segmentSize));
+        long start = SPILL.start();
+        Segment segment;
+        try {
+            if (directory == null) {
+                directory = configuredDirectory != null
+                        ? Files.createDirectories(configuredDirectory)
+                        : Files.createTempDirectory("sent-messages");
+            }
+            Path file = directory.resolve(String.format("segment-%08d.bin", segmentsWritten++));
+            BinaryMessageFile.write(file, batch);
+            segment = new Segment(file, batch);
+        } catch (IOException e) {
+            SPILL_FAILED.increment();
+            return;
+        } finally {
+            SPILL.stop(start);
+        }
+        hot.subList(0, segmentSize).clear();
+        segments.add(segment);
+        coldCount += batch.size();
+        segmentStarts = null;
+        if (onEvict != null) {
+            onEvict.accept(batch);
+        }
+    }
+
+    private int[] segmentStarts() {
+        int[] starts = segmentStarts;
+        if (starts == null) {
+            starts = new int[segments.size()];
+            int next = 0;
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = next;
+                next += segments.get(i).live;
+            }
+            segmentStarts = starts;
+        }
+        return starts;
+    }
+
+    private Loaded load(Segment segment) {
+        Loaded loaded = cache.get(segment);
+        if (loaded != null) {
+            return loaded;
+        }
+        long start = FAULT.start();
+        try (BinaryMessageFile file = BinaryMessageFile.open(segment.file)) {
+            List<Message> messages = new ArrayList<>(segment.live);
+            file.forEach(m -> {
+                if (!segment.deleted.contains(m.getId())) {
+                    messages.add(m);
+                }
+            });
+            loaded = new Loaded(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read evicted messages from " + segment.file, e);
+        } finally {
+            FAULT.stop(start);
+        }
+        cache.put(segment, loaded);
+        return loaded;
+    }
+
+    // Looks an ID up in the cached copy of a segment, or with its on-disk index
+    private Message findIn(Segment segment, String id) {
+        if (segment.deleted.contains(id)) {
+            return null;
+        }
+        Loaded loaded = cache.get(segment);
+        if (loaded != null) {
+            for (Message m : loaded.messages) {
+                if (id.equals(m.getId())) {
+                    return m;
+                }
+            }
+            return null;
+        }
+        try (BinaryMessageFile file = BinaryMessageFile.open(segment.file)) {
+            return file.findById(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read evicted messages from " + segment.file, e);
+        }
+    }
+
+    private static int lengthOf(Message m) {
+        return m.getContent() == null ? 0 : m.getContent().length();
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // an orphaned segment only costs disk space until close()
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package io.github.st10159464;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Small embedded HTTP/JSON front end for ChatService, on the JDK's built-in server.
+//
+//   POST   /messages                       {"recipient": "+27...", "content": "..."} -> 201 message
+//   GET    /messages/{hash}                -> message, or 404
+//   DELETE /messages/{hash}                -> {"deleted": hash}, or 404
+//   GET    /recipients/{cell}/messages     -> {"messages": [...]}
+//   GET    /search?q=dinner+tonight*       -> {"messages": [...]}
+//   GET    /report?cursor=0&limit=50       -> {"total": n, "messages": [...], "nextCursor": c, "hasMore": b}
+//   GET    /metrics                        -> Metrics.dump as text/plain
+//
+// Each request runs on its own virtual thread when the JDK has them (21+), so thousands of
+// concurrent clients cost little; older JDKs fall back to a cached pool of platform threads.
+public class ChatHttpServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final Metrics.Timer REQUEST = Metrics.timer("http.request");
+
+    private final ChatService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private ChatHttpServer(ChatService service, HttpServer server, ExecutorService executor) {
+        this.service = service;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    // Starts serving on port (0 picks a free one) of the loopback address only, so nothing
+    // outside this machine can reach the service unless it is bound wider on purpose.
+    public static ChatHttpServer start(ChatService service, int port) throws IOException {
+        return start(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    // Starts serving on the given address; a wildcard address (port only) accepts any client.
+    //
+    // Before the first server is created this sets two JDK server properties, unless they
+    // were given with -D. They are system properties, so they apply to the whole JVM, and the
+    // JDK reads them once, when its server classes load; setting them any later has no effect.
+    //   sun.net.httpserver.nodelay=true: without TCP_NODELAY the body, written after the
+    //     headers, waits on the client's delayed ACK and every response takes ~40 ms.
+    //   sun.net.httpserver.maxIdleConnections=10000: the default cap of 200 idle keep-alive
+    //     connections closes connections under clients that are about to reuse them.
+    public static ChatHttpServer start(ChatService service, InetSocketAddress address) throws IOException {
+        setDefault("sun.net.httpserver.nodelay", "true");
+        setDefault("sun.net.httpserver.maxIdleConnections", "10000");
+        HttpServer server = HttpServer.create(address, 1024);
+        ExecutorService executor = newRequestExecutor();
+        ChatHttpServer http = new ChatHttpServer(service, server, executor);
+        server.createContext("/messages", http::handleMessages);
+        server.createContext("/recipients/", http::handleRecipients);
+        server.createContext("/search", http::handleSearch);
+        server.createContext("/report", http::handleReport);
+        server.createContext("/metrics", ChatHttpServer::handleMetrics);
+        server.setExecutor(executor);
+        server.start();
+        return http;
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests, gives in-flight ones a second to finish, then stops the executor
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // Virtual thread per request where available, looked up reflectively so the code still
+    // builds and runs on JDK 17
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger n = new AtomicInteger();
+            ThreadFactory daemons = r -> {
+                Thread t = new Thread(r, "chat-http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            return Executors.newCachedThreadPool(daemons);
+        }
+    }
+
+    private void handleMessages(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/messages") || path.equals("/messages/")) {
+                if (!method.equals("POST")) {
+                    return Response.error(405, "Use POST to send a message");
+                }
+                JsonObject body = readJsonObject(exchange);
+                String recipient = stringField(body, "recipient");
+                String content = stringField(body, "content");
+                try {
+                    return new Response(201, toJson(service.send(recipient, content)));
+                } catch (IllegalArgumentException e) {
+                    return Response.error(400, e.getMessage());
+                }
+            }
+            String hash = path.substring("/messages/".length());
+            switch (method) {
+                case "GET": {
+                    Message m = service.findByHash(hash);
+                    return m == null ? Response.error(404, "No message with hash " + hash) : new Response(200, toJson(m));
+                }
+                case "DELETE": {
+                    if (!service.deleteByHash(hash)) {
+                        return Response.error(404, "No message with hash " + hash);
+                    }
+                    // 200 with a body rather than 204: the JDK 17 server resets the next
+                    // request on a kept-alive connection after a bodiless 204
+                    JsonObject json = new JsonObject();
+                    json.addProperty("deleted", hash);
+                    return new Response(200, json);
+                }
+                default:
+                    return Response.error(405, "Use GET or DELETE on a message");
+            }
+        });
+    }
+
+    private void handleRecipients(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            // the decoded path keeps '+' as is, so /recipients/+27838968976/messages works unescaped
+            String path = exchange.getRequestURI().getPath();
+            String prefix = "/recipients/";
+            String suffix = "/messages";
+            if (!exchange.getRequestMethod().equals("GET")) {
+                return Response.error(405, "Use GET");
+            }
+            if (!path.endsWith(suffix) || path.length() <= prefix.length() + suffix.length()) {
+                return Response.error(404, "Use /recipients/{cell}/messages");
+            }
+            String cell = path.substring(prefix.length(), path.length() - suffix.length());
+            return new Response(200, messagesJson(service.findByRecipient(cell)));
+        });
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            String query = queryParameters(exchange).get("q");
+            if (query == null || query.trim().isEmpty()) {
+                return Response.error(400, "Missing q parameter");
+            }
+            return new Response(200, messagesJson(service.search(query)));
+        });
+    }
+
+    private void handleReport(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            Map<String, String> params = queryParameters(exchange);
+            long cursor;
+            int limit;
+            try {
+                cursor = Long.parseLong(params.getOrDefault("cursor", "0"));
+                limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(Message.PAGE_SIZE)));
+            } catch (NumberFormatException e) {
+                return Response.error(400, "cursor and limit must be numbers");
+            }
+            if (cursor < 0 || limit < 1 || limit > 1000) {
+                return Response.error(400, "cursor must be >= 0 and limit between 1 and 1000");
+            }
+            MessagePage page = service.reportPage(cursor, limit);
+            JsonObject json = messagesJson(page.getMessages());
+            json.addProperty("total", service.messageCount());
+            json.addProperty("nextCursor", page.getNextCursor());
+            json.addProperty("hasMore", page.hasMore());
+            return new Response(200, json);
+        });
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            byte[] bytes = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private interface Handler {
+        Response run() throws IOException;
+    }
+
+    private static final class Response {
+        final int status;
+        final JsonElement body;
+
+        Response(int status, JsonElement body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response error(int status, String message) {
+            JsonObject json = new JsonObject();
+            json.addProperty("error", message);
+            return new Response(status, json);
+        }
+    }
+
+    // An IOException, such as a client that went away mid-body, gets no response, but the
+    // exchange is still closed and the request timed
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        long start = REQUEST.start();
+        try {
+            Response response;
+            try {
+                response = handler.run();
+            } catch (BadRequest e) {
+                response = Response.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                response = Response.error(500, String.valueOf(e));
+            }
+            byte[] bytes = response.body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+            REQUEST.stop(start);
+        }
+    }
+
+    private static final class BadRequest extends RuntimeException {
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    private static JsonObject readJsonObject(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (body.length > MAX_BODY_BYTES) {
+            throw new BadRequest("Request body too large");
+        }
+        try {
+            JsonElement json = JsonParser.parseString(new String(body, StandardCharsets.UTF_8));
+            if (!json.isJsonObject()) {
+                throw new BadRequest("Expected a JSON object");
+            }
+            return json.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new BadRequest("Malformed JSON");
+        }
+    }
+
+    private static String stringField(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString()) {
+            throw new BadRequest(name + " must be a string");
+        }
+        return value.getAsString();
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.putIfAbsent(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest("Malformed query string");
+            }
+        }
+        return params;
+    }
+
+    private static JsonObject messagesJson(List<Message> messages) {
+        JsonArray array = new JsonArray(messages.size());
+        for (Message m : messages) {
+            array.add(toJson(m));
+        }
+        JsonObject json = new JsonObject();
+        json.add("messages", array);
+        return json;
+    }
+
+    private static JsonObject toJson(Message m) {
+        JsonObject json = new JsonObject();
+        json.addProperty("hash", m.getMessageHash());
+        json.addProperty("recipient", m.getRecipientCell());
+        json.addProperty("content", m.getMessageContent());
+        json.addProperty("sequence", m.getSequence());
+        return json;
+    }
+}
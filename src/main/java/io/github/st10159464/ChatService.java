@@ -0,0 +1,233 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+
+// Headless QuickChat API: register, login, send, search, delete and report, with no Swing.
+// The Login and Message dialogs are thin clients of the shared instance, and the headless
+// console (MainApp --headless) and load generators drive the same code paths directly.
+//
+// Thread-safe: the user directory and message store it wraps are both concurrent.
+// Each message operation is timed under "chat.<operation>" when Metrics is enabled.
+public class ChatService {
+    public static final String REGISTERED = "User registered successfully.";
+
+    private static final Metrics.Timer SEND = Metrics.timer("chat.send");
+    private static final Metrics.Timer SEND_ALL = Metrics.timer("chat.sendAll");
+    private static final Metrics.Timer FIND_BY_HASH = Metrics.timer("chat.findByHash");
+    private static final Metrics.Timer FIND_BY_RECIPIENT = Metrics.timer("chat.findByRecipient");
+    private static final Metrics.Timer SEARCH = Metrics.timer("chat.search");
+    private static final Metrics.Timer DELETE = Metrics.timer("chat.deleteByHash");
+    private static final Metrics.Timer REPORT = Metrics.timer("chat.report");
+    private static final Metrics.Timer REPORT_PAGE = Metrics.timer("chat.reportPage");
+    private static final Metrics.Counter REJECTED = Metrics.counter("chat.send.rejected");
+
+    private static final ChatService SHARED = new ChatService(new UserDirectory(), sharedStore());
+
+    private final UserDirectory users;
+    private final MessageStore store;
+
+    public ChatService(UserDirectory users, MessageStore store) {
+        this.users = users;
+        this.store = store;
+    }
+
+    // The service behind the static Login and Message methods
+    public static ChatService shared() {
+        return SHARED;
+    }
+
+    // Keeps the newest -Dchatapp.sent.memory messages (default 10,000) in memory and spills
+    // older ones to a temporary directory, deleted at exit; -Dchatapp.store=offheap also
+    // moves content off-heap
+    private static MessageStore sharedStore() {
+        int memoryLimit = Integer.getInteger("chatapp.sent.memory", MessageStore.DEFAULT_MEMORY_LIMIT);
+        ContentArena arena = "offheap".equals(System.getProperty("chatapp.store")) ? new ContentArena() : null;
+        MessageStore store = new MessageStore(arena, memoryLimit,
+                Math.min(MessageStore.DEFAULT_SEGMENT_SIZE, memoryLimit), null);
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close, "sent-messages-cleanup"));
+        return store;
+    }
+
+    public UserDirectory getUsers() {
+        return users;
+    }
+
+    public MessageStore getStore() {
+        return store;
+    }
+
+    // Registers a user; returns REGISTERED or the reason registration failed
+    public String register(String username, String password, String cell) {
+        if (!isValidUsername(username)) return "Username is not correctly formatted...";
+        if (password == null || !CredentialValidator.isComplexPassword(password)) return "Password is not correctly formatted...";
+        if (!CredentialValidator.isSouthAfricanCell(cell)) return "Cell phone number incorrectly formatted...";
+        if (!users.register(username, password, cell)) return "Username is already taken.";
+        return REGISTERED;
+    }
+
+    public boolean login(String username, String password) {
+        return users.authenticate(username, password);
+    }
+
+    // Contains an underscore and is no more than 5 characters long
+    public static boolean isValidUsername(String username) {
+        return username != null && username.contains("_") && username.length() <= 5;
+    }
+
+    // Sends a message; throws IllegalArgumentException with the reason if it is invalid
+    public Message send(String recipientCell, String content) {
+        long start = SEND.start();
+        try {
+            Message message = validMessage(recipientCell, content);
+            store.add(message);
+            return message;
+        } finally {
+            SEND.stop(start);
+        }
+    }
+
+    // Message.send(): stores a message its caller has already checked, timed as "chat.send"
+    void send(Message message) {
+        long start = SEND.start();
+        try {
+            store.add(message);
+        } finally {
+            SEND.stop(start);
+        }
+    }
+
+    // A message that may be sent, or IllegalArgumentException with the reason it may not,
+    // counted under "chat.send.rejected". Every single-message send path validates here.
+    static Message validMessage(String recipientCell, String content) {
+        if (recipientCell == null || content == null) {
+            REJECTED.increment();
+            throw new IllegalArgumentException(recipientCell == null ? "Missing recipient" : "Missing message content");
+        }
+        Message message = new Message(recipientCell, content);
+        String reason = MessageIngest.reasonToReject(message);
+        if (reason != null) {
+            REJECTED.increment();
+            throw new IllegalArgumentException(reason);
+        }
+        return message;
+    }
+
+    // Asynchronous sends into this service's store, delivered through channel first; close the
+    // pipeline when done with it
+    public SendPipeline newSendPipeline(DeliveryChannel channel) {
+        return new SendPipeline(store, channel);
+    }
+
+    public MessageIngest.Result sendAll(List<MessageIngest.Record> records) {
+        long start = SEND_ALL.start();
+        try {
+            MessageIngest.Result result = new MessageIngest(store).ingest(records);
+            REJECTED.add(result.getRejected().size());
+            return result;
+        } finally {
+            SEND_ALL.stop(start);
+        }
+    }
+
+    public MessageIngest.Result sendAllFromFile(Path file) throws IOException {
+        long start = SEND_ALL.start();
+        try {
+            MessageIngest.Result result = new MessageIngest(store).ingestFile(file);
+            REJECTED.add(result.getRejected().size());
+            return result;
+        } finally {
+            SEND_ALL.stop(start);
+        }
+    }
+
+    public Message findByHash(String hash) {
+        long start = FIND_BY_HASH.start();
+        try {
+            return store.findByHash(hash);
+        } finally {
+            FIND_BY_HASH.stop(start);
+        }
+    }
+
+    public List<Message> findByRecipient(String recipientCell) {
+        long start = FIND_BY_RECIPIENT.start();
+        try {
+            return store.findByRecipient(recipientCell);
+        } finally {
+            FIND_BY_RECIPIENT.stop(start);
+        }
+    }
+
+    // Keyword search; see InvertedIndex.search for the query syntax
+    public List<Message> search(String query) {
+        long start = SEARCH.start();
+        try {
+            return store.searchContent(query);
+        } finally {
+            SEARCH.stop(start);
+        }
+    }
+
+    public boolean deleteByHash(String hash) {
+        long start = DELETE.start();
+        try {
+            return store.removeByHash(hash);
+        } finally {
+            DELETE.stop(start);
+        }
+    }
+
+    public Message longest() {
+        return store.getStatistics().longest();
+    }
+
+    public MessageStatistics<Message> statistics() {
+        return store.getStatistics();
+    }
+
+    public int messageCount() {
+        return store.size();
+    }
+
+    // Up to limit messages sent after cursor (0 for the first page)
+    public MessagePage reportPage(long cursor, int limit) {
+        long start = REPORT_PAGE.start();
+        try {
+            return store.pageAfter(cursor, limit);
+        } finally {
+            REPORT_PAGE.stop(start);
+        }
+    }
+
+    // Streams the report to out one message at a time, so memory use does not grow
+    // with the number of messages. out is flushed but not closed.
+    public void writeReport(Writer out) throws IOException {
+        long start = REPORT.start();
+        try {
+            writeReportHeader(out);
+            for (Message m : store.all()) {
+                writeReportLine(m, out);
+            }
+            out.flush();
+        } finally {
+            REPORT.stop(start);
+        }
+    }
+
+    void writeReportHeader(Writer out) throws IOException {
+        out.write("Total messages sent: " + store.size() + "\n");
+    }
+
+    static void writeReportLine(Message m, Writer out) throws IOException {
+        out.write("To: ");
+        out.write(String.valueOf(m.getRecipientCell()));
+        out.write(" | Content: ");
+        out.write(String.valueOf(m.getMessageContent()));
+        out.write(" | Hash: ");
+        out.write(m.getMessageHash());
+        out.write("\n");
+    }
+}
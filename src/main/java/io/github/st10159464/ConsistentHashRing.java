@@ -0,0 +1,68 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Consistent hash ring: maps keys to nodes so that adding or removing one of n nodes moves
+// only about 1/n of the keys. Each node is placed at VIRTUAL_NODES points on a 64-bit ring
+// (Murmur3 of "name#i"), which evens out the share each node gets; a key belongs to the
+// first point at or after its own hash, wrapping round at the end.
+//
+// ownerOf is O(log(nodes * VIRTUAL_NODES)). Not thread-safe; ShardRouter guards it.
+public class ConsistentHashRing<N> {
+    public static final int VIRTUAL_NODES = 128;
+    private static final Murmur3MessageHasher hasher = new Murmur3MessageHasher(0x5eed_c0de_2024L);
+
+    private final TreeMap<Long, N> ring = new TreeMap<>();
+    private final Map<String, N> nodes = new LinkedHashMap<>();
+
+    // Adds a node under a unique name; throws IllegalArgumentException if the name is taken
+    public void add(String name, N node) {
+        if (nodes.putIfAbsent(name, node) != null) {
+            throw new IllegalArgumentException("A node named " + name + " is already on the ring");
+        }
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            // on the rare collision of two points the first node keeps it
+            ring.putIfAbsent(hash(name + "#" + i), node);
+        }
+    }
+
+    public boolean remove(String name) {
+        N node = nodes.remove(name);
+        if (node == null) {
+            return false;
+        }
+        ring.values().removeIf(n -> n == node);
+        return true;
+    }
+
+    // The node that owns key, or null if the ring is empty
+    public N ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, N> owner = ring.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    // Nodes in the order they were added
+    public List<N> nodes() {
+        return new ArrayList<>(nodes.values());
+    }
+
+    public Collection<String> names() {
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    static long hash(String key) {
+        return hasher.hash64(key, "");
+    }
+}
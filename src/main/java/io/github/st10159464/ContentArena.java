@@ -0,0 +1,98 @@
+package io.github.st10159464;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Off-heap storage for message content. Strings are copied in as UTF-8 into direct
+// ByteBuffer slabs and addressed by a long (slab << shift | offset); get decodes one
+// on demand. Millions of messages then cost the collector no String or byte[] objects,
+// only a few hundred slabs.
+//
+// Append-only: space from deleted messages is not reused, so a reader that still holds a
+// deleted message can always decode it. The memory goes back when the arena itself is
+// dropped (MessageStore.clear starts a new one). Slabs count against
+// -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+//
+// put takes a lock; get never does.
+public final class ContentArena {
+    public static final int DEFAULT_SLAB_BYTES = 1 << 20;
+    // Returned by put when the content cannot go off-heap
+    public static final long NONE = -1;
+
+    private final int slabShift;
+    private final int slabBytes;
+    // Replaced, never modified, when a slab is added
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private ByteBuffer current;
+    private int position;
+    private long usedBytes;
+
+    public ContentArena() {
+        this(DEFAULT_SLAB_BYTES);
+    }
+
+    // slabBytes must be a power of two of at least 1 KB
+    public ContentArena(int slabBytes) {
+        if (slabBytes < 1024 || Integer.bitCount(slabBytes) != 1) {
+            throw new IllegalArgumentException("slabBytes must be a power of two >= 1024");
+        }
+        this.slabBytes = slabBytes;
+        this.slabShift = Integer.numberOfTrailingZeros(slabBytes);
+    }
+
+    // Copies content into the arena and returns its address, or NONE if it is null or
+    // too big for a slab (the caller keeps it on the heap)
+    public synchronized long put(String content) {
+        if (content == null) {
+            return NONE;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        int size = 4 + bytes.length;
+        if (size > slabBytes) {
+            return NONE;
+        }
+        if (current == null || position + size > slabBytes) {
+            addSlab();
+        }
+        current.putInt(position, bytes.length);
+        current.put(position + 4, bytes);
+        long address = ((long) (slabs.length - 1) << slabShift) | position;
+        position += size;
+        usedBytes += size;
+        return address;
+    }
+
+    // Decodes the content stored at address
+    public String get(long address) {
+        ByteBuffer slab = slabs[(int) (address >>> slabShift)];
+        int offset = (int) address & (slabBytes - 1);
+        byte[] bytes = new byte[slab.getInt(offset)];
+        slab.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void addSlab() {
+        ByteBuffer[] old = slabs;
+        ByteBuffer[] grown = new ByteBuffer[old.length + 1];
+        System.arraycopy(old, 0, grown, 0, old.length);
+        current = ByteBuffer.allocateDirect(slabBytes);
+        grown[old.length] = current;
+        position = 0;
+        // published after the slab is in place, so any address handed out can be read
+        slabs = grown;
+    }
+
+    // Bytes written so far, including the 4-byte length of each entry
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getSlabBytes() {
+        return slabBytes;
+    }
+
+    // Off-heap memory reserved, used or not
+    public long getReservedBytes() {
+        return (long) slabs.length * slabBytes;
+    }
+}
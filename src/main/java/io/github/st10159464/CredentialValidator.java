@@ -0,0 +1,130 @@
+package io.github.st10159464;
+
+// Single-pass, regex-free credential checks shared by Login and LoginClass.
+// Each method gives exactly the same answer as the regular expression it replaces
+// (noted above it) but walks the characters once and allocates nothing.
+public final class CredentialValidator {
+
+    // Special characters accepted by Login, as one bit per ASCII code split over two masks
+    private static final String SPECIALS = "!@#$%^&*()_+-=[]{};':\"\\|,.<>/?";
+    private static final long SPECIAL_LOW = mask(SPECIALS, 0);
+    private static final long SPECIAL_HIGH = mask(SPECIALS, 64);
+
+    private CredentialValidator() {
+    }
+
+    private static long mask(String chars, int base) {
+        long m = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            int bit = chars.charAt(i) - base;
+            if (bit >= 0 && bit < 64) {
+                m |= 1L << bit;
+            }
+        }
+        return m;
+    }
+
+    private static boolean isSpecial(char c) {
+        if (c < 64) {
+            return (SPECIAL_LOW & (1L << c)) != 0;
+        }
+        if (c < 128) {
+            return (SPECIAL_HIGH & (1L << (c - 64))) != 0;
+        }
+        return false;
+    }
+
+    // The characters '.' refuses to match when the pattern is not in DOTALL mode
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    // Same as password.matches("^(?=.*[A-Z])(?=.*\\d)(?=.*[!@#$%^&*()_+\\-=\\[\\]{};':\"\\\\|,.<>/?]).{8,}$").
+    // '.' counts code points, so a surrogate pair counts once toward the minimum of 8.
+    public static boolean isComplexPassword(String password) {
+        boolean upper = false;
+        boolean digit = false;
+        boolean special = false;
+        int codePoints = 0;
+        int n = password.length();
+        for (int i = 0; i < n; i++) {
+            char c = password.charAt(i);
+            if (isLineTerminator(c)) {
+                return false;
+            }
+            if (Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(password.charAt(i - 1))) {
+                continue;
+            }
+            codePoints++;
+            if (isAsciiUpper(c)) {
+                upper = true;
+            } else if (isAsciiDigit(c)) {
+                digit = true;
+            } else if (isSpecial(c)) {
+                special = true;
+            }
+        }
+        return upper && digit && special && codePoints >= 8;
+    }
+
+    // Same as cell != null && cell.matches("^\\+27\\d{9}$")
+    public static boolean isSouthAfricanCell(String cell) {
+        if (cell == null || cell.length() != 12
+                || cell.charAt(0) != '+' || cell.charAt(1) != '2' || cell.charAt(2) != '7') {
+            return false;
+        }
+        for (int i = 3; i < 12; i++) {
+            if (!isAsciiDigit(cell.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same as password.length() >= 8 && password.matches(".*[A-Z].*")
+    //     && password.matches(".*[^a-zA-Z0-9].*") && password.matches(".*\\d.*")
+    public static boolean hasUpperSymbolAndDigit(String password) {
+        if (password.length() < 8) {
+            return false;
+        }
+        boolean upper = false;
+        boolean digit = false;
+        boolean symbol = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (isLineTerminator(c)) {
+                // ".*[A-Z].*" can never span a line terminator
+                return false;
+            }
+            if (isAsciiUpper(c)) {
+                upper = true;
+            } else if (isAsciiDigit(c)) {
+                digit = true;
+            } else if (c < 'a' || c > 'z') {
+                symbol = true;
+            }
+        }
+        return upper && digit && symbol;
+    }
+
+    // Same as cellphoneNumber.matches("\\+[0-9]{11}$")
+    public static boolean isPlusElevenDigits(String cellphoneNumber) {
+        if (cellphoneNumber.length() != 12 || cellphoneNumber.charAt(0) != '+') {
+            return false;
+        }
+        for (int i = 1; i < 12; i++) {
+            if (!isAsciiDigit(cellphoneNumber.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
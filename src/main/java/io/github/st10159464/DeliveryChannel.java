@@ -0,0 +1,15 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.util.List;
+
+// Where SendPipeline hands messages for delivery: an SMS gateway, a push service, a socket.
+// Each call carries one recipient's messages in the order they were submitted; a call that
+// throws fails every message in that batch, and none of them is stored as sent.
+//
+// Called from the pipeline's worker threads, at most one call at a time per worker.
+@FunctionalInterface
+public interface DeliveryChannel {
+
+    void deliver(String recipientCell, List<Message> batch) throws IOException;
+}
@@ -0,0 +1,59 @@
+package io.github.st10159464;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+// Concurrent map from small non-negative int keys, such as RecipientTable ids, to values.
+// Values live in fixed chunks of 256 slots found by shifting the key, so a lookup is two
+// array reads: no hashing, no boxing and no lock. Entries are never removed one by one,
+// which suits keys drawn from a small, long-lived set.
+final class DenseIntMap<V> {
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    // Replaced, never modified, when a chunk is added; chunks themselves are shared
+    private volatile Object[] chunks = new Object[0];
+
+    V get(int key) {
+        AtomicReferenceArray<V> chunk = chunk(chunks, key >>> CHUNK_BITS);
+        return chunk == null ? null : chunk.get(key & CHUNK_MASK);
+    }
+
+    // The value for key, created with factory if there is none; racing callers get the same value
+    V computeIfAbsent(int key, IntFunction<V> factory) {
+        AtomicReferenceArray<V> chunk = chunk(chunks, key >>> CHUNK_BITS);
+        if (chunk == null) {
+            chunk = addChunk(key >>> CHUNK_BITS);
+        }
+        int slot = key & CHUNK_MASK;
+        V value = chunk.get(slot);
+        if (value != null) {
+            return value;
+        }
+        V created = factory.apply(key);
+        return chunk.compareAndSet(slot, null, created) ? created : chunk.get(slot);
+    }
+
+    synchronized void clear() {
+        chunks = new Object[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> AtomicReferenceArray<V> chunk(Object[] chunks, int index) {
+        return index < chunks.length ? (AtomicReferenceArray<V>) chunks[index] : null;
+    }
+
+    private synchronized AtomicReferenceArray<V> addChunk(int index) {
+        Object[] current = chunks;
+        AtomicReferenceArray<V> chunk = chunk(current, index);
+        if (chunk != null) {
+            return chunk;
+        }
+        Object[] grown = new Object[Math.max(current.length, index + 1)];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        chunk = new AtomicReferenceArray<>(1 << CHUNK_BITS);
+        grown[index] = chunk;
+        chunks = grown;
+        return chunk;
+    }
+}
@@ -0,0 +1,662 @@
+package io.github.st10159464;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// The disk tier of a bounded MessageStore: messages spilled out of memory, oldest first, in
+// segment files written once and never changed. Per segment only a few fields stay on the
+// heap: its file, sequence range, live count, longest live message, tombstones, and a Bloom
+// filter over hashes, recipients and content terms, so a lookup or search skips the segments
+// that cannot hold a match. The last few decoded segments are cached, with an InvertedIndex
+// built on first search.
+//
+// Next to each segment an index file holds every record's offset and, per recipient and per
+// content term, the records that have it. Searches and lookups by recipient read that index
+// and then only the matching records, so they do not decode whole segments; the last few
+// indexes are cached too.
+//
+// The directory is deleted by clear(), which MessageStore.close() calls.
+//
+// The store holds its tier lock around every call: exclusively for publish, removeByHash
+// and clear, shared for reads. write runs outside the lock, so a spill's disk I/O does not
+// block senders. Faulted-in messages are fresh copies, told apart by sequence.
+final class EvictedMessages {
+    // Decoded segments kept in memory for reads
+    private static final int CACHED_SEGMENTS = 4;
+    // Segment indexes kept in memory for searches and lookups by recipient
+    private static final int CACHED_INDEXES = 16;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int[] NONE = new int[0];
+
+    private static final Metrics.Timer FAULT = Metrics.timer("store.fault");
+    private static final Metrics.Timer INDEX = Metrics.timer("store.index");
+
+    private final Path configuredDirectory;
+    private Path directory;
+    private int segmentsWritten;
+    // Oldest first; replaced rather than changed, so readers walk it without a lock
+    private volatile List<Segment> segments = Collections.emptyList();
+    private volatile int live;
+
+    private final Map<Segment, Loaded> cache = new LinkedHashMap<Segment, Loaded>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Segment, Loaded> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+    private final Map<Segment, SegmentIndex> indexCache = new LinkedHashMap<Segment, SegmentIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Segment, SegmentIndex> eldest) {
+            return size() > CACHED_INDEXES;
+        }
+    };
+
+    // directory null spills to a temporary directory that clear() deletes
+    EvictedMessages(Path directory) {
+        this.configuredDirectory = directory;
+    }
+
+    // Metadata of one segment file; the messages themselves stay on disk
+    static final class Segment {
+        final Path file;
+        final Path indexFile;
+        final long firstSequence;
+        final long lastSequence;
+        private final long[] bloom;
+        final Set<Long> deleted = ConcurrentHashMap.newKeySet();
+        volatile int live;
+        // Longest live message, earliest on ties; null once none is left
+        volatile Message longest;
+
+        private Segment(Path file, Path indexFile, List<Message> messages, Set<String> terms) {
+            this.file = file;
+            this.indexFile = indexFile;
+            this.firstSequence = messages.get(0).getSequence();
+            this.lastSequence = messages.get(messages.size() - 1).getSequence();
+            this.live = messages.size();
+            int keys = messages.size() * 2 + terms.size();
+            this.bloom = new long[Math.max(1, (keys * BLOOM_BITS_PER_KEY + 63) / 64)];
+            for (Message m : messages) {
+                addToBloom(m.getMessageHash(), 0);
+                addToBloom(String.valueOf(m.getRecipientCell()), 1);
+            }
+            for (String term : terms) {
+                addToBloom(term, 2);
+            }
+            findLongest(messages);
+        }
+
+        boolean mayHoldHash(String hash) {
+            return live > 0 && bloomContains(hash, 0);
+        }
+
+        boolean mayHoldRecipient(String recipientCell) {
+            return live > 0 && bloomContains(String.valueOf(recipientCell), 1);
+        }
+
+        // False if no alternative of a parsed query can match here; prefix words always may
+        boolean mayMatch(List<List<String>> query) {
+            if (live == 0) {
+                return false;
+            }
+            alternatives:
+            for (List<String> words : query) {
+                if (words.isEmpty()) {
+                    continue;
+                }
+                for (String word : words) {
+                    if (!InvertedIndex.isPrefix(word) && !bloomContains(word, 2)) {
+                        continue alternatives;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        // A message the spill could not move because it was deleted while the file was written
+        void tombstone(long sequence) {
+            if (deleted.add(sequence)) {
+                live--;
+            }
+        }
+
+        private void findLongest(List<Message> messages) {
+            Message best = null;
+            for (Message m : messages) {
+                if (!deleted.contains(m.getSequence()) && (best == null || lengthOf(m) > lengthOf(best))) {
+                    best = m;
+                }
+            }
+            longest = best;
+        }
+
+        // Three probes from one 64-bit hash, with salt telling hashes and recipients apart
+        private void addToBloom(String key, int salt) {
+            long h = mix(key.hashCode() * 31L + salt);
+            for (int i = 0; i < 3; i++, h = mix(h)) {
+                int bit = (int) ((h >>> 1) % (bloom.length * 64L));
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        private boolean bloomContains(String key, int salt) {
+            long h = mix(key.hashCode() * 31L + salt);
+            for (int i = 0; i < 3; i++, h = mix(h)) {
+                int bit = (int) ((h >>> 1) % (bloom.length * 64L));
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+    }
+
+    // A segment faulted into memory: its live messages in send order
+    private static final class Loaded {
+        final List<Message> messages;
+        InvertedIndex<Message> index;
+
+        Loaded(List<Message> messages) {
+            this.messages = messages;
+        }
+
+        synchronized InvertedIndex<Message> index() {
+            if (index == null) {
+                index = new InvertedIndex<>(Message::getMessageContent);
+                for (Message m : messages) {
+                    index.add(m, m.getSequence());
+                }
+            }
+            return index;
+        }
+    }
+
+    // A segment's index file: where each record starts, and which records (by position in
+    // the segment, ascending) have each recipient and each content term
+    private static final class SegmentIndex {
+        final long[] offsets;
+        final Map<String, int[]> recipients;
+        final TreeMap<String, int[]> terms;
+
+        SegmentIndex(long[] offsets, Map<String, int[]> recipients, TreeMap<String, int[]> terms) {
+            this.offsets = offsets;
+            this.recipients = recipients;
+            this.terms = terms;
+        }
+
+        int[] recipient(String cell) {
+            int[] records = recipients.get(cell);
+            return records == null ? NONE : records;
+        }
+
+        // Same semantics as InvertedIndex.search over a parsed query
+        int[] search(List<List<String>> query) {
+            int[] found = NONE;
+            for (List<String> words : query) {
+                if (words.isEmpty()) {
+                    continue;
+                }
+                int[] group = null;
+                for (String word : words) {
+                    int[] records = InvertedIndex.isPrefix(word)
+                            ? prefix(word.substring(0, word.length() - 1))
+                            : terms.getOrDefault(word, NONE);
+                    group = group == null ? records : intersect(group, records);
+                }
+                found = union(found, group);
+            }
+            return found;
+        }
+
+        private int[] prefix(String prefix) {
+            int[] found = NONE;
+            // every term starting with prefix sorts in [prefix, prefix + Character.MAX_VALUE)
+            for (int[] records : terms.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                found = union(found, records);
+            }
+            return found;
+        }
+    }
+
+    // Writes messages, in send order, to a new segment file and its index; publish makes it
+    // visible. A failed write leaves no file behind.
+    Segment write(List<Message> messages) throws IOException {
+        Path file;
+        Path indexFile;
+        synchronized (this) {
+            if (directory == null) {
+                directory = configuredDirectory != null
+                        ? Files.createDirectories(configuredDirectory)
+                        : Files.createTempDirectory("sent-messages");
+            }
+            file = directory.resolve(String.format("segment-%08d.bin", segmentsWritten));
+            indexFile = directory.resolve(String.format("segment-%08d.idx", segmentsWritten++));
+        }
+        long[] offsets = new long[messages.size()];
+        Map<String, List<Integer>> recipients = new HashMap<>();
+        TreeMap<String, List<Integer>> terms = new TreeMap<>();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(messages.size());
+                for (int i = 0; i < messages.size(); i++) {
+                    Message m = messages.get(i);
+                    offsets[i] = out.size();
+                    out.writeLong(m.getSequence());
+                    out.writeUTF(m.getMessageHash());
+                    writeString(out, m.getRecipientCell());
+                    writeString(out, m.getMessageContent());
+                    recipients.computeIfAbsent(String.valueOf(m.getRecipientCell()), k -> new ArrayList<>()).add(i);
+                    for (String term : InvertedIndex.terms(m.getMessageContent())) {
+                        terms.computeIfAbsent(term, k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+                out.writeInt(offsets.length);
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                writePostings(out, recipients);
+                writePostings(out, terms);
+            }
+        } catch (IOException e) {
+            delete(file);
+            delete(indexFile);
+            throw e;
+        }
+        return new Segment(file, indexFile, messages, terms.keySet());
+    }
+
+    void publish(Segment segment) {
+        if (segment.live == 0) {
+            delete(segment.file);
+            delete(segment.indexFile);
+            return;
+        }
+        if (!segment.deleted.isEmpty()) {
+            segment.findLongest(load(segment).messages);
+        }
+        List<Segment> next = new ArrayList<>(segments);
+        next.add(segment);
+        segments = Collections.unmodifiableList(next);
+        live += segment.live;
+    }
+
+    int size() {
+        return live;
+    }
+
+    // The earliest evicted message with this hash, or null
+    Message findByHash(String hash) {
+        for (Segment segment : segments) {
+            if (segment.mayHoldHash(hash)) {
+                for (Message m : load(segment).messages) {
+                    if (m.getMessageHash().equals(hash)) {
+                        return m;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    void findByRecipient(String recipientCell, List<Message> found) {
+        String cell = String.valueOf(recipientCell);
+        for (Segment segment : segments) {
+            if (!segment.mayHoldRecipient(cell)) {
+                continue;
+            }
+            Loaded loaded = cached(segment);
+            if (loaded == null) {
+                SegmentIndex index = index(segment);
+                readRecords(segment, index, index.recipient(cell), found);
+                continue;
+            }
+            for (Message m : loaded.messages) {
+                if (cell.equals(String.valueOf(m.getRecipientCell()))) {
+                    found.add(m);
+                }
+            }
+        }
+    }
+
+    // See InvertedIndex.search for the query syntax; results in send order
+    void search(String query, List<Message> found) {
+        List<List<String>> parsed = InvertedIndex.parse(query);
+        for (Segment segment : segments) {
+            if (!segment.mayMatch(parsed)) {
+                continue;
+            }
+            Loaded loaded = cached(segment);
+            if (loaded != null) {
+                found.addAll(loaded.index().search(query));
+            } else {
+                SegmentIndex index = index(segment);
+                readRecords(segment, index, index.search(parsed), found);
+            }
+        }
+    }
+
+    // Adds up to limit messages sent after cursor, in send order
+    void collectAfter(long cursor, int limit, List<Message> page) {
+        int target = page.size() + limit;
+        for (Segment segment : segments) {
+            if (page.size() >= target) {
+                return;
+            }
+            if (segment.lastSequence <= cursor) {
+                continue;
+            }
+            for (Message m : load(segment).messages) {
+                if (m.getSequence() > cursor) {
+                    page.add(m);
+                    if (page.size() >= target) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // The longest evicted message, earliest on ties, or null
+    Message longest() {
+        Message best = null;
+        for (Segment segment : segments) {
+            Message m = segment.longest;
+            if (m != null && (best == null || lengthOf(m) > lengthOf(best))) {
+                best = m;
+            }
+        }
+        return best;
+    }
+
+    // Tombstones every evicted message with this hash and returns them. A segment left with
+    // no live messages is dropped and its file deleted.
+    List<Message> removeByHash(String hash) {
+        List<Message> removed = new ArrayList<>();
+        List<Segment> emptied = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.mayHoldHash(hash)) {
+                continue;
+            }
+            Loaded loaded = load(segment);
+            boolean longestRemoved = false;
+            for (Message m : loaded.messages) {
+                if (m.getMessageHash().equals(hash) && segment.deleted.add(m.getSequence())) {
+                    removed.add(m);
+                    segment.live--;
+                    live--;
+                    longestRemoved |= segment.longest != null && segment.longest.getSequence() == m.getSequence();
+                }
+            }
+            if (segment.live == 0) {
+                emptied.add(segment);
+                continue;
+            }
+            synchronized (this) {
+                // a fresh copy without the tombstoned messages, so the cache never serves them
+                cache.remove(segment);
+            }
+            if (longestRemoved) {
+                segment.findLongest(load(segment).messages);
+            }
+        }
+        if (!emptied.isEmpty()) {
+            List<Segment> next = new ArrayList<>(segments);
+            next.removeAll(emptied);
+            segments = Collections.unmodifiableList(next);
+            synchronized (this) {
+                for (Segment segment : emptied) {
+                    cache.remove(segment);
+                    indexCache.remove(segment);
+                    segment.longest = null;
+                    delete(segment.file);
+                    delete(segment.indexFile);
+                }
+            }
+        }
+        return removed;
+    }
+
+    // Deletes every segment file, and the directory if it was a temporary one
+    synchronized void clear() {
+        cache.clear();
+        indexCache.clear();
+        for (Segment segment : segments) {
+            delete(segment.file);
+            delete(segment.indexFile);
+        }
+        segments = Collections.emptyList();
+        live = 0;
+        if (directory != null && configuredDirectory == null) {
+            // includes any segment whose delete failed earlier
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                // only disk space is lost
+            }
+            directory = null;
+        }
+    }
+
+    private synchronized Loaded cached(Segment segment) {
+        return cache.get(segment);
+    }
+
+    private Loaded load(Segment segment) {
+        Loaded loaded = cached(segment);
+        if (loaded != null) {
+            return loaded;
+        }
+        long start = FAULT.start();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.file)))) {
+            int n = in.readInt();
+            List<Message> messages = new ArrayList<>(segment.live);
+            for (int i = 0; i < n; i++) {
+                Message m = readRecord(in);
+                if (!segment.deleted.contains(m.getSequence())) {
+                    messages.add(m);
+                }
+            }
+            loaded = new Loaded(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read evicted messages from " + segment.file, e);
+        } finally {
+            FAULT.stop(start);
+        }
+        synchronized (this) {
+            cache.put(segment, loaded);
+        }
+        return loaded;
+    }
+
+    private SegmentIndex index(Segment segment) {
+        synchronized (this) {
+            SegmentIndex index = indexCache.get(segment);
+            if (index != null) {
+                return index;
+            }
+        }
+        long start = INDEX.start();
+        SegmentIndex index;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.indexFile)))) {
+            long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+            }
+            Map<String, int[]> recipients = new HashMap<>();
+            readPostings(in, recipients);
+            TreeMap<String, int[]> terms = new TreeMap<>();
+            readPostings(in, terms);
+            index = new SegmentIndex(offsets, recipients, terms);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the index of " + segment.file, e);
+        } finally {
+            INDEX.stop(start);
+        }
+        synchronized (this) {
+            indexCache.put(segment, index);
+        }
+        return index;
+    }
+
+    // Reads only the records at these positions, ascending, skipping tombstoned ones
+    private static void readRecords(Segment segment, SegmentIndex index, int[] records, List<Message> found) {
+        if (records.length == 0) {
+            return;
+        }
+        long[] offsets = index.offsets;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.file)))) {
+            long position = 0;
+            for (int record : records) {
+                in.skipNBytes(offsets[record] - position);
+                Message m = readRecord(in);
+                position = record + 1 < offsets.length ? offsets[record + 1] : Long.MAX_VALUE;
+                if (!segment.deleted.contains(m.getSequence())) {
+                    found.add(m);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read evicted messages from " + segment.file, e);
+        }
+    }
+
+    private static Message readRecord(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        String hash = in.readUTF();
+        String recipient = readString(in);
+        String content = readString(in);
+        Message m = new Message(recipient, content, hash);
+        m.assignSequence(sequence);
+        return m;
+    }
+
+    // Each key with the ascending record positions that have it
+    private static void writePostings(DataOutputStream out, Map<String, List<Integer>> postings) throws IOException {
+        out.writeInt(postings.size());
+        for (Map.Entry<String, List<Integer>> e : postings.entrySet()) {
+            writeString(out, e.getKey());
+            out.writeInt(e.getValue().size());
+            for (int record : e.getValue()) {
+                out.writeInt(record);
+            }
+        }
+    }
+
+    private static void readPostings(DataInputStream in, Map<String, int[]> postings) throws IOException {
+        int keys = in.readInt();
+        for (int i = 0; i < keys; i++) {
+            String key = readString(in);
+            int[] records = new int[in.readInt()];
+            for (int j = 0; j < records.length; j++) {
+                records[j] = in.readInt();
+            }
+            postings.put(key, records);
+        }
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] out = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Length-prefixed UTF-8, with -1 for null; writeUTF would cap content at 64 KB
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int lengthOf(Message m) {
+        String content = m.getMessageContent();
+        return content == null ? 0 : content.length();
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // an orphaned segment only costs disk space until clear() or exit
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.st10159464;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Line-oriented front end for ChatService, started by MainApp --headless.
+// Reads one command per line and writes plain-text replies, so it can run on a server
+// or be scripted by a load generator. Type "help" for the commands.
+public class HeadlessConsole {
+    private static final String HELP = String.join("\n",
+            "register <username> <password> <cell>",
+            "login <username> <password>",
+            "send <cell> <message...>",
+            "import <file>            send every recipient,content line of a file",
+            "hash <hash>              find a message by hash",
+            "recipient <cell>         list messages sent to a cell",
+            "search <query...>        words are ANDed, OR separates alternatives, word* is a prefix",
+            "delete <hash>",
+            "report [cursor] [limit]  one page of the report; prints the cursor for the next page",
+            "stats",
+            "metrics [on|off|reset]   latency and counter table; on/off switches recording",
+            "quit");
+
+    private final ChatService service;
+
+    public HeadlessConsole(ChatService service) {
+        this.service = service;
+    }
+
+    // Runs commands until "quit" or end of input
+    public void run(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals("quit")) {
+                break;
+            }
+            try {
+                execute(line, out);
+            } catch (IllegalArgumentException e) {
+                out.println("error: " + e.getMessage());
+            }
+            out.flush();
+        }
+        out.flush();
+    }
+
+    // Runs one command line and prints its reply
+    public void execute(String line, PrintWriter out) throws IOException {
+        String[] parts = line.trim().split(" ", 2);
+        String command = parts[0];
+        String rest = parts.length > 1 ? parts[1].trim() : "";
+        String[] args = rest.isEmpty() ? new String[0] : rest.split("\\s+");
+        switch (command) {
+            case "register":
+                requireArgs(args, 3, "register <username> <password> <cell>");
+                out.println(service.register(args[0], args[1], args[2]));
+                break;
+            case "login":
+                requireArgs(args, 2, "login <username> <password>");
+                out.println(service.login(args[0], args[1]) ? "Login successful." : "Login failed.");
+                break;
+            case "send": {
+                String[] cellAndText = rest.split(" ", 2);
+                if (cellAndText.length < 2) {
+                    throw new IllegalArgumentException("usage: send <cell> <message...>");
+                }
+                Message m = service.send(cellAndText[0], cellAndText[1]);
+                out.println("sent " + m.getMessageHash());
+                break;
+            }
+            case "import": {
+                requireArgs(args, 1, "import <file>");
+                MessageIngest.Result result = service.sendAllFromFile(Paths.get(rest));
+                out.println("sent " + result.getAccepted() + ", rejected " + result.getRejected().size());
+                for (MessageIngest.Rejection r : result.getRejected()) {
+                    out.println(r);
+                }
+                break;
+            }
+            case "hash": {
+                requireArgs(args, 1, "hash <hash>");
+                Message m = service.findByHash(args[0]);
+                out.println(m == null ? "not found" : describe(m));
+                break;
+            }
+            case "recipient":
+                requireArgs(args, 1, "recipient <cell>");
+                printAll(service.findByRecipient(args[0]), out);
+                break;
+            case "search":
+                requireArgs(args, 1, "search <query...>");
+                printAll(service.search(rest), out);
+                break;
+            case "delete":
+                requireArgs(args, 1, "delete <hash>");
+                out.println(service.deleteByHash(args[0]) ? "deleted" : "not found");
+                break;
+            case "report": {
+                long cursor = args.length > 0 ? parseNumber(args[0]) : 0;
+                int limit = args.length > 1 ? (int) parseNumber(args[1]) : Message.PAGE_SIZE;
+                MessagePage page = service.reportPage(cursor, limit);
+                for (Message m : page.getMessages()) {
+                    out.println(describe(m));
+                }
+                out.println(page.hasMore() ? "next " + page.getNextCursor() : "end");
+                break;
+            }
+            case "stats": {
+                MessageStatistics<Message> stats = service.statistics();
+                Message longest = stats.longest();
+                out.println("messages " + stats.count() + ", characters " + stats.totalChars()
+                        + ", recipients " + stats.recipientCounts().size()
+                        + ", longest " + (longest == null ? 0 : longest.getMessageContent().length()));
+                break;
+            }
+            case "metrics":
+                if (args.length > 0) {
+                    switch (args[0]) {
+                        case "on":
+                            Metrics.setEnabled(true);
+                            break;
+                        case "off":
+                            Metrics.setEnabled(false);
+                            break;
+                        case "reset":
+                            Metrics.reset();
+                            break;
+                        default:
+                            throw new IllegalArgumentException("usage: metrics [on|off|reset]");
+                    }
+                }
+                out.print(Metrics.dump());
+                break;
+            case "help":
+                out.println(HELP);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown command '" + command + "'; try help");
+        }
+    }
+
+    private static void requireArgs(String[] args, int count, String usage) {
+        if (args.length < count) {
+            throw new IllegalArgumentException("usage: " + usage);
+        }
+    }
+
+    private static long parseNumber(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + text);
+        }
+    }
+
+    private static void printAll(List<Message> messages, PrintWriter out) {
+        for (Message m : messages) {
+            out.println(describe(m));
+        }
+        out.println(messages.size() + " message(s)");
+    }
+
+    private static String describe(Message m) {
+        return m.getMessageHash() + " " + m.getRecipientCell() + " " + m.getMessageContent();
+    }
+}
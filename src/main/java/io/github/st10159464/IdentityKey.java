@@ -0,0 +1,20 @@
+package io.github.st10159464;
+
+// Map key comparing by reference, whatever equals() the wrapped message type defines
+final class IdentityKey<M> {
+    private final M value;
+
+    IdentityKey(M value) {
+        this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IdentityKey && ((IdentityKey<?>) o).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(value);
+    }
+}
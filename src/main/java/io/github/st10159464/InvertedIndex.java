@@ -0,0 +1,376 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// In-memory inverted index over message content: term -> messages containing it.
+//
+// Terms are the words that split("\\s+") gives, the same word splitting the com.mycompany
+// message hash uses, lower-cased with Locale.ROOT so searches ignore case. Punctuation stays
+// part of a word ("tonight?"), so a prefix query ("tonight*") is the way to match around it.
+//
+// Terms are also kept in a sorted set, so a prefix query is one range scan. Each posting list is a
+// pair of arrays sorted by add order, and results come back in that order (send order for
+// a store). An AND query walks the shortest posting list and binary-searches the others.
+//
+// M is the message type and contentOf reads its content. Messages are told apart by identity.
+// add and remove are thread-safe, but the same message must not be added and removed concurrently.
+public class InvertedIndex<M> {
+    private final Function<M, String> contentOf;
+
+    // term -> posting list; the sorted copy of the keys serves prefix queries, and is
+    // only touched when a term first appears or its last message goes
+    private final Map<String, Postings<M>> postings = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> sortedTerms = new ConcurrentSkipListSet<>();
+    private final Map<IdentityKey<M>, Long> orders = new ConcurrentHashMap<>();
+    private final AtomicLong nextOrder = new AtomicLong();
+
+    public InvertedIndex(Function<M, String> contentOf) {
+        this.contentOf = contentOf;
+    }
+
+    // Indexes every word of a message; returns false if it is already indexed
+    public boolean add(M message) {
+        return add(message, nextOrder.getAndIncrement());
+    }
+
+    // Same, with the caller's own ordering key (such as a send sequence), unique per message;
+    // results are returned in ascending key order
+    public boolean add(M message, long order) {
+        if (orders.putIfAbsent(new IdentityKey<>(message), order) != null) {
+            return false;
+        }
+        for (String term : terms(contentOf.apply(message))) {
+            // compute() is atomic per term, so the add cannot land in a list remove() is dropping
+            postings.compute(term, (k, v) -> {
+                if (v == null) {
+                    v = new Postings<>();
+                    sortedTerms.add(k);
+                }
+                v.add(order, message);
+                return v;
+            });
+        }
+        return true;
+    }
+
+    // Drops a message from the index; returns false if it was not indexed
+    public boolean remove(M message) {
+        Long order = orders.remove(new IdentityKey<>(message));
+        if (order == null) {
+            return false;
+        }
+        for (String term : terms(contentOf.apply(message))) {
+            postings.computeIfPresent(term, (k, v) -> {
+                v.remove(order);
+                if (v.isEmpty()) {
+                    sortedTerms.remove(k);
+                    return null;
+                }
+                return v;
+            });
+        }
+        return true;
+    }
+
+    // Messages containing every term
+    public List<M> searchAll(Collection<String> terms) {
+        List<Hits<M>> lists = new ArrayList<>();
+        for (String term : terms) {
+            Hits<M> hits = exact(term);
+            if (hits.size == 0) {
+                return new ArrayList<>();
+            }
+            lists.add(hits);
+        }
+        return intersect(lists).toList();
+    }
+
+    // Messages containing at least one of the terms
+    public List<M> searchAny(Collection<String> terms) {
+        List<Hits<M>> lists = new ArrayList<>();
+        for (String term : terms) {
+            lists.add(exact(term));
+        }
+        return union(lists).toList();
+    }
+
+    // Messages containing a word that starts with prefix
+    public List<M> searchPrefix(String prefix) {
+        return prefixMatches(normalize(prefix)).toList();
+    }
+
+    // Runs a query: words are ANDed, "OR" separates alternatives, and a trailing '*'
+    // makes a word a prefix. For example "dinner tonight* OR lunch".
+    public List<M> search(String query) {
+        List<Hits<M>> alternatives = new ArrayList<>();
+        for (List<String> words : parse(query)) {
+            List<Hits<M>> group = new ArrayList<>();
+            for (String word : words) {
+                group.add(isPrefix(word) ? prefixMatches(word.substring(0, word.length() - 1)) : exact(word));
+            }
+            alternatives.add(intersect(group));
+        }
+        return union(alternatives).toList();
+    }
+
+    // A query as its OR alternatives, each a list of lower-cased words to AND; a prefix word
+    // keeps its trailing '*'. EvictedMessages evaluates the same queries over its segments.
+    static List<List<String>> parse(String query) {
+        List<List<String>> alternatives = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (String word : splitWords(query)) {
+            if (word.equals("OR")) {
+                alternatives.add(group);
+                group = new ArrayList<>();
+                continue;
+            }
+            group.add(normalize(word));
+        }
+        alternatives.add(group);
+        return alternatives;
+    }
+
+    static boolean isPrefix(String word) {
+        return word.length() > 1 && word.endsWith("*");
+    }
+
+    // Number of distinct terms
+    public int termCount() {
+        return postings.size();
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    // Not atomic with respect to concurrent updates; meant for tests and resets
+    public void clear() {
+        postings.clear();
+        sortedTerms.clear();
+        orders.clear();
+    }
+
+    // The distinct index terms of a piece of content
+    public static Set<String> terms(String content) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : splitWords(content)) {
+            terms.add(normalize(word));
+        }
+        return terms;
+    }
+
+    private static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && RegexWhitespace.matches(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < n && !RegexWhitespace.matches(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(text.substring(start, i));
+            }
+        }
+        return words;
+    }
+
+    private static String normalize(String term) {
+        return term == null ? "" : term.toLowerCase(Locale.ROOT);
+    }
+
+    private Hits<M> exact(String term) {
+        Postings<M> list = postings.get(normalize(term));
+        return list == null ? Hits.empty() : list.snapshot();
+    }
+
+    private Hits<M> prefixMatches(String prefix) {
+        if (prefix.isEmpty()) {
+            return Hits.empty();
+        }
+        // every term starting with prefix sorts in [prefix, prefix + Character.MAX_VALUE)
+        List<Hits<M>> lists = new ArrayList<>();
+        for (String term : sortedTerms.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            Postings<M> list = postings.get(term);
+            if (list != null) {
+                lists.add(list.snapshot());
+            }
+        }
+        return union(lists);
+    }
+
+    // Walks the shortest list and binary-searches the others
+    private static <M> Hits<M> intersect(List<Hits<M>> lists) {
+        if (lists.isEmpty()) {
+            return Hits.empty();
+        }
+        Hits<M> shortest = lists.get(0);
+        for (Hits<M> hits : lists) {
+            if (hits.size < shortest.size) {
+                shortest = hits;
+            }
+        }
+        if (lists.size() == 1) {
+            return shortest;
+        }
+        Hits<M> result = new Hits<>(shortest.size);
+        outer:
+        for (int i = 0; i < shortest.size; i++) {
+            long order = shortest.orders[i];
+            for (Hits<M> hits : lists) {
+                if (hits != shortest && !hits.contains(order)) {
+                    continue outer;
+                }
+            }
+            result.append(order, shortest.messages[i]);
+        }
+        return result;
+    }
+
+    private static <M> Hits<M> union(List<Hits<M>> lists) {
+        lists.removeIf(h -> h.size == 0);
+        if (lists.isEmpty()) {
+            return Hits.empty();
+        }
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        TreeMap<Long, Object> merged = new TreeMap<>();
+        for (Hits<M> hits : lists) {
+            for (int i = 0; i < hits.size; i++) {
+                merged.put(hits.orders[i], hits.messages[i]);
+            }
+        }
+        Hits<M> result = new Hits<>(merged.size());
+        for (Map.Entry<Long, Object> e : merged.entrySet()) {
+            result.append(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    // One term's messages as parallel arrays sorted by add order. Adds almost always
+    // land at the end, so they are amortised O(1); removes leave a null that is
+    // squeezed out once half the slots are empty.
+    private static final class Postings<M> {
+        private long[] orders = new long[2];
+        private Object[] messages = new Object[2];
+        private int used;
+        private int live;
+
+        synchronized void add(long order, M message) {
+            if (used == orders.length) {
+                if (live < used / 2) {
+                    compact();
+                } else {
+                    orders = Arrays.copyOf(orders, used * 2);
+                    messages = Arrays.copyOf(messages, used * 2);
+                }
+            }
+            // concurrent adds can arrive slightly out of order; step back past any later ones
+            int pos = used;
+            while (pos > 0 && orders[pos - 1] >= order) {
+                if (orders[pos - 1] == order && messages[pos - 1] != null) {
+                    return;
+                }
+                pos--;
+            }
+            System.arraycopy(orders, pos, orders, pos + 1, used - pos);
+            System.arraycopy(messages, pos, messages, pos + 1, used - pos);
+            orders[pos] = order;
+            messages[pos] = message;
+            used++;
+            live++;
+        }
+
+        synchronized void remove(long order) {
+            int i = Arrays.binarySearch(orders, 0, used, order);
+            if (i >= 0 && messages[i] != null) {
+                messages[i] = null;
+                live--;
+                if (live < used / 2) {
+                    compact();
+                }
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return live == 0;
+        }
+
+        synchronized Hits<M> snapshot() {
+            Hits<M> hits = new Hits<>(live);
+            for (int i = 0; i < used; i++) {
+                if (messages[i] != null) {
+                    hits.append(orders[i], messages[i]);
+                }
+            }
+            return hits;
+        }
+
+        private void compact() {
+            int j = 0;
+            for (int i = 0; i < used; i++) {
+                if (messages[i] != null) {
+                    orders[j] = orders[i];
+                    messages[j] = messages[i];
+                    j++;
+                }
+            }
+            Arrays.fill(messages, j, used, null);
+            used = j;
+        }
+    }
+
+    // Query results: messages and their add order, sorted by order
+    private static final class Hits<M> {
+        final long[] orders;
+        final Object[] messages;
+        int size;
+
+        Hits(int capacity) {
+            orders = new long[capacity];
+            messages = new Object[capacity];
+        }
+
+        static <M> Hits<M> empty() {
+            return new Hits<>(0);
+        }
+
+        void append(long order, Object message) {
+            orders[size] = order;
+            messages[size] = message;
+            size++;
+        }
+
+        boolean contains(long order) {
+            return Arrays.binarySearch(orders, 0, size, order) >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<M> toList() {
+            List<M> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add((M) messages[i]);
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.st10159464;
+
+// JMX view of one timed operation, registered as io.github.st10159464:type=Latency,name=<operation>
+public interface LatencyMXBean {
+    String getName();
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,71 @@
+package io.github.st10159464;
+
+import java.util.List;
+
+// A shard in this JVM: a thin MessageShard view of a ChatService
+public class LocalShard implements MessageShard {
+    private final String name;
+    private final ChatService service;
+
+    public LocalShard(String name) {
+        this(name, new ChatService(new UserDirectory(), new MessageStore()));
+    }
+
+    public LocalShard(String name, ChatService service) {
+        this.name = name;
+        this.service = service;
+    }
+
+    public ChatService getService() {
+        return service;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Message send(String recipientCell, String content) {
+        return service.send(recipientCell, content);
+    }
+
+    @Override
+    public Message findByHash(String hash) {
+        return service.findByHash(hash);
+    }
+
+    @Override
+    public List<Message> findByRecipient(String recipientCell) {
+        return service.findByRecipient(recipientCell);
+    }
+
+    @Override
+    public List<Message> search(String query) {
+        return service.search(query);
+    }
+
+    @Override
+    public boolean deleteByHash(String hash) {
+        return service.deleteByHash(hash);
+    }
+
+    @Override
+    public MessagePage reportPage(long cursor, int limit) {
+        return service.reportPage(cursor, limit);
+    }
+
+    @Override
+    public int messageCount() {
+        return service.messageCount();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
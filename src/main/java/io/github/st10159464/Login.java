@@ -1,53 +1,45 @@
 package io.github.st10159464;
 
 
-import java.util.ArrayList;
-import java.util.List;
-
 import javax.swing.JOptionPane;
 
 public class Login {
     private String username;
-    private String password;
     private String cellNumber;
 
-    private static final List<Login> users = new ArrayList<>();
+    // Registration and login go through the shared service, whose user directory keeps
+    // passwords only as salted hashes
+    private static final ChatService service = ChatService.shared();
 
     public String getCellNumber() {
         return cellNumber;
     }
 
     public boolean checkUserName(String username) {
-        return username.contains("_") && username.length() <= 5;
+        return ChatService.isValidUsername(username);
     }
 
+    // At least 8 characters with a capital letter, a digit and a special character
     public boolean checkPasswordComplexity(String password) {
-        return password.matches("^(?=.*[A-Z])(?=.*\\d)(?=.*[!@#$%^&*()_+\\-=\\[\\]{};':\"\\\\|,.<>/?]).{8,}$");
+        return CredentialValidator.isComplexPassword(password);
     }
 
     public boolean checkCellPhoneNumber(String cell) {
         // Accepts +27 followed by 9 digits (South African format)
-        return cell != null && cell.matches("^\\+27\\d{9}$");
+        return CredentialValidator.isSouthAfricanCell(cell);
     }
 
     public String registerUser(String username, String password, String cell) {
-        if (!checkUserName(username)) return "Username is not correctly formatted...";
-        if (!checkPasswordComplexity(password)) return "Password is not correctly formatted...";
-        if (!checkCellPhoneNumber(cell)) return "Cell phone number incorrectly formatted...";
-        this.username = username;
-        this.password = password;
-        this.cellNumber = cell;
-        users.add(this);
-        return "User registered successfully.";
+        String status = service.register(username, password, cell);
+        if (status.equals(ChatService.REGISTERED)) {
+            this.username = username;
+            this.cellNumber = cell;
+        }
+        return status;
     }
 
     public boolean loginUser(String username, String password) {
-        for (Login user : users) {
-            if (user.username.equals(username) && user.password.equals(password)) {
-                return true;
-            }
-        }
-        return false;
+        return service.login(username, password);
     }
 
     public String returnLoginStatus(boolean loginStatus) {
@@ -94,7 +86,7 @@ public class Login {
 
         registrationMessage = login.registerUser(username, password, cell);
         JOptionPane.showMessageDialog(null, registrationMessage);
-    } while (!registrationMessage.equals("User registered successfully."));
+    } while (!registrationMessage.equals(ChatService.REGISTERED));
 
     // Proceed to login after successful registration
     String loginUser = username;
@@ -1,7 +1,36 @@
 package io.github.st10159464;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
 public class MainApp {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--http")) {
+                // JSON over HTTP until the process is killed; optional port follows the flag.
+                // Loopback only unless -Dchatapp.http.bind names an address (0.0.0.0 for any).
+                int port = i + 1 < args.length ? Integer.parseInt(args[i + 1]) : ChatHttpServer.DEFAULT_PORT;
+                String bind = System.getProperty("chatapp.http.bind");
+                ChatHttpServer server = bind == null
+                        ? ChatHttpServer.start(ChatService.shared(), port)
+                        : ChatHttpServer.start(ChatService.shared(), new InetSocketAddress(bind, port));
+                System.out.println("Listening on http://localhost:" + server.getPort() + "/");
+                return;
+            }
+            if (arg.equals("--headless")) {
+                // Commands on stdin, replies on stdout; no Swing
+                new HeadlessConsole(ChatService.shared()).run(
+                        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+                return;
+            }
+        }
         Login.main(args); // Start the login GUI flow
     }
-}
\ No newline at end of file
+}
@@ -1,109 +1,237 @@
 package io.github.st10159464;
 
-import java.util.ArrayList;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 import javax.swing.JOptionPane;
 
 public class Message {
-    private final String recipientCell;
-    private final String messageContent;
+    // "+27" numbers are kept as their RecipientTable id, so all messages to one recipient
+    // share a single String; any other recipient (only ever rejected) is kept as given
+    private final int recipientId;
+    private final String otherRecipient;
+    // Null once an off-heap store has moved the content into its ContentArena; volatile so
+    // that readers who see null also see the arena and address written before it
+    private volatile String messageContent;
+    private ContentArena contentArena;
+    private long contentAddress;
     private final String messageHash;
+    // Send order within the owning MessageStore; 0 until sent
+    private long sequence;
 
-    // Static list to store sent messages
-    private static final List<Message> sentMessages = new ArrayList<>();
+    // The shared service the static methods and the menu are clients of
+    private static final ChatService service = ChatService.shared();
+    // Static store of sent messages, indexed by hash and recipient
+    private static final MessageStore sentMessages = service.getStore();
+    // Messages per dialog page in the menu
+    static final int PAGE_SIZE = 50;
+    // Strategy used by createMessageHash; fixed-width 128-bit Murmur3 unless replaced
+    private static volatile MessageHasher hasher = new Murmur3MessageHasher();
 
     public Message(String recipientCell, String messageContent) {
-        this.recipientCell = recipientCell;
+        this.recipientId = RecipientTable.shared().intern(recipientCell);
+        this.otherRecipient = recipientId == RecipientTable.NOT_A_CELL ? recipientCell : null;
         this.messageContent = messageContent;
-        this.messageHash = createMessageHash();
+        this.messageHash = createMessageHash(recipientCell);
     }
 
-    // Add message to sentMessages
+    // A message read back from disk, keeping the hash it was sent with even if the hasher
+    // has since been replaced
+    Message(String recipientCell, String messageContent, String messageHash) {
+        this.recipientId = RecipientTable.shared().intern(recipientCell);
+        this.otherRecipient = recipientId == RecipientTable.NOT_A_CELL ? recipientCell : null;
+        this.messageContent = messageContent;
+        this.messageHash = messageHash;
+    }
+
+    // Add message to sentMessages, through the service so it is timed like any other send
     public void send() {
-        sentMessages.add(this);
+        service.send(this);
     }
 
     // Ensures message content is not more than 250 characters
     public boolean checkMessageID() {
-        return messageContent.length() <= 250;
+        return getMessageContent().length() <= 250;
     }
 
     // Ensures recipient cell is +27 and 12 characters
     public int checkRecipientCell() {
+        String recipientCell = getRecipientCell();
         return (recipientCell != null && recipientCell.startsWith("+27") && recipientCell.length() == 12) ? 1 : 0;
     }
 
     // Creates a hash for the message
-    private String createMessageHash() {
-        // Example: "MSG:" + first 8 chars of hashcode in uppercase hex
-        return "MSG:" + Integer.toHexString((recipientCell + messageContent).hashCode()).toUpperCase();
+    private String createMessageHash(String recipientCell) {
+        // Example: "MSG:" + 32 upper-case hex digits
+        return hasher.hash(recipientCell, messageContent);
     }
 
     public String getRecipientCell() {
-        return recipientCell;
+        return recipientId == RecipientTable.NOT_A_CELL ? otherRecipient : RecipientTable.shared().cellOf(recipientId);
+    }
+
+    // RecipientTable id of the recipient, or RecipientTable.NOT_A_CELL
+    int getRecipientId() {
+        return recipientId;
     }
 
     public String getMessageContent() {
-        return messageContent;
+        String content = messageContent;
+        return content != null || contentArena == null ? content : contentArena.get(contentAddress);
+    }
+
+    // Moves the content into arena; from now on getMessageContent decodes it from there.
+    // Content that does not fit stays on the heap. Called once, by the store that owns the message.
+    void moveContentTo(ContentArena arena) {
+        String content = messageContent;
+        if (content == null || contentArena != null) {
+            return;
+        }
+        long address = arena.put(content);
+        if (address != ContentArena.NONE) {
+            contentArena = arena;
+            contentAddress = address;
+            messageContent = null;
+        }
+    }
+
+    // Replaces the hashing strategy for messages created from now on
+    public static void setHasher(MessageHasher messageHasher) {
+        if (messageHasher == null) {
+            throw new IllegalArgumentException("hasher must not be null");
+        }
+        hasher = messageHasher;
+    }
+
+    public static MessageHasher getHasher() {
+        return hasher;
     }
 
     public String getMessageHash() {
         return messageHash;
     }
 
+    long getSequence() {
+        return sequence;
+    }
+
+    void assignSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     // Returns all sent messages
     public static List<Message> getSentMessages() {
-        return sentMessages;
+        return sentMessages.snapshot();
     }
 
-    // Returns the longest message sent
+    // Returns the longest message sent; ties go to the earliest
     public static Message getLongestMessage() {
-        Message longest = null;
-        for (Message m : sentMessages) {
-            if (longest == null || m.messageContent.length() > longest.messageContent.length()) {
-                longest = m;
-            }
-        }
-        return longest;
+        return service.longest();
+    }
+
+    // Running counts over the sent messages: totals, per-recipient counts and length histogram
+    public static MessageStatistics<Message> getStatistics() {
+        return service.statistics();
+    }
+
+    // Sends many messages at once; invalid records are returned with reasons instead of sent
+    public static MessageIngest.Result sendAll(List<MessageIngest.Record> records) {
+        return service.sendAll(records);
+    }
+
+    // Sends every "recipient,content" line of a file; see MessageIngest.ingestFile
+    public static MessageIngest.Result sendAllFromFile(Path file) throws IOException {
+        return service.sendAllFromFile(file);
     }
 
     // Search for a message by hash
     public static Message searchByHash(String hash) {
-        for (Message m : sentMessages) {
-            if (m.getMessageHash().equals(hash)) {
-                return m;
-            }
-        }
-        return null;
+        return service.findByHash(hash);
     }
 
     // Search all messages for a recipient
     public static List<Message> searchByRecipient(String recipientCell) {
-        List<Message> result = new ArrayList<>();
-        for (Message m : sentMessages) {
-            if (m.getRecipientCell().equals(recipientCell)) {
-                result.add(m);
-            }
-        }
-        return result;
+        return service.findByRecipient(recipientCell);
+    }
+
+    // Keyword search over content: words are ANDed, "OR" separates alternatives,
+    // and a trailing '*' matches any word with that prefix
+    public static List<Message> searchByContent(String query) {
+        return service.search(query);
     }
 
     // Delete a message by hash
     public static boolean deleteByHash(String hash) {
-        return sentMessages.removeIf(m -> m.getMessageHash().equals(hash));
+        return service.deleteByHash(hash);
     }
 
-    // Display a report of all sent messages
+    // Display a report of all sent messages. Builds the whole report in memory, so the
+    // menu pages through reportPage instead; use writeReport for large exports.
     public static String displayReport() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Total messages sent: ").append(sentMessages.size()).append("\n");
-        for (Message m : sentMessages) {
-            sb.append("To: ").append(m.getRecipientCell())
-              .append(" | Content: ").append(m.getMessageContent())
-              .append(" | Hash: ").append(m.getMessageHash()).append("\n");
+        StringWriter out = new StringWriter();
+        try {
+            writeReport(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    // Streams the report to out one message at a time, so memory use does not grow
+    // with the number of messages. out is flushed but not closed.
+    public static void writeReport(Writer out) throws IOException {
+        service.writeReport(out);
+    }
+
+    // Same as writeReport(Writer), as UTF-8
+    public static void writeReport(OutputStream out) throws IOException {
+        writeReport(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    // One page of the report: up to limit messages sent after cursor (0 for the first page)
+    public static MessagePage reportPage(long cursor, int limit) {
+        return service.reportPage(cursor, limit);
+    }
+
+    // Shows sent messages a page at a time, with a Next button while more remain
+    private static void showPages(String title, boolean fullReport) {
+        long cursor = 0;
+        int pageNumber = 1;
+        while (true) {
+            MessagePage page = reportPage(cursor, PAGE_SIZE);
+            StringWriter text = new StringWriter();
+            try {
+                if (fullReport) {
+                    service.writeReportHeader(text);
+                }
+                for (Message m : page.getMessages()) {
+                    if (fullReport) {
+                        ChatService.writeReportLine(m, text);
+                    } else {
+                        text.write("To: " + m.getRecipientCell() + " - " + m.getMessageContent() + "\n");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            String[] buttons = page.hasMore() ? new String[] {"Next", "Close"} : new String[] {"Close"};
+            int choice = JOptionPane.showOptionDialog(null, text.toString(), title + " (page " + pageNumber + ")",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, buttons, buttons[0]);
+            if (!page.hasMore() || choice != 0) {
+                return;
+            }
+            cursor = page.getNextCursor();
+            pageNumber++;
         }
-        return sb.toString();
     }
 
     // For testing: clear sent messages
@@ -112,7 +240,8 @@ public class Message {
     }
 
     public static void showMenu() {
-        String[] options = {"Send Message", "Show Recently Sent Messages", "Show Report", "Quit"};
+        String[] options = {"Send Message", "Show Recently Sent Messages", "Show Report", "Search Messages",
+            "Import Messages", "Quit"};
         boolean running = true;
         while (running) {
             int choice = JOptionPane.showOptionDialog(
@@ -131,28 +260,53 @@ public class Message {
                     String recipient = JOptionPane.showInputDialog("Enter recipient cell (+27#########):");
                     String content = JOptionPane.showInputDialog("Enter your message (max 250 chars):");
                     if (recipient != null && content != null) {
-                        Message msg = new Message(recipient, content);
-                        msg.send();
-                        JOptionPane.showMessageDialog(null, "Message sent!");
+                        try {
+                            service.send(recipient, content);
+                            JOptionPane.showMessageDialog(null, "Message sent!");
+                        } catch (IllegalArgumentException e) {
+                            JOptionPane.showMessageDialog(null, "Message not sent: " + e.getMessage());
+                        }
                     }
                     break;
                 case 1: // Show Recently Sent Messages
-                    if (sentMessages.isEmpty()) {
+                    if (service.messageCount() == 0) {
                         JOptionPane.showMessageDialog(null, "No messages sent yet.");
                     } else {
-                        StringBuilder sb = new StringBuilder();
-                        for (Message m : sentMessages) {
-                            sb.append("To: ").append(m.getRecipientCell())
-                              .append(" - ").append(m.getMessageContent()).append("\n");
-                        }
-                        JOptionPane.showMessageDialog(null, sb.toString(), "Recently Sent Messages", JOptionPane.INFORMATION_MESSAGE);
+                        showPages("Recently Sent Messages", false);
                     }
                     break;
                 case 2: // Show Report
-                    String report = Message.displayReport();
-                    JOptionPane.showMessageDialog(null, report, "Message Report", JOptionPane.INFORMATION_MESSAGE);
+                    showPages("Message Report", true);
+                    break;
+                case 3: // Search Messages
+                    String query = JOptionPane.showInputDialog("Search words (use OR for alternatives, * for prefixes):");
+                    if (query != null && !query.trim().isEmpty()) {
+                        List<Message> found = searchByContent(query);
+                        StringBuilder sb = new StringBuilder("Found " + found.size() + " message(s)\n");
+                        for (int i = 0; i < Math.min(found.size(), PAGE_SIZE); i++) {
+                            Message m = found.get(i);
+                            sb.append("To: ").append(m.getRecipientCell()).append(" - ").append(m.getMessageContent()).append("\n");
+                        }
+                        JOptionPane.showMessageDialog(null, sb.toString(), "Search Results", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                    break;
+                case 4: // Import Messages
+                    String path = JOptionPane.showInputDialog("File of recipient,content lines to send:");
+                    if (path != null && !path.trim().isEmpty()) {
+                        try {
+                            MessageIngest.Result result = sendAllFromFile(Paths.get(path.trim()));
+                            StringBuilder sb = new StringBuilder("Sent " + result.getAccepted() + " message(s), rejected "
+                                    + result.getRejected().size() + ".\n");
+                            for (int i = 0; i < Math.min(result.getRejected().size(), PAGE_SIZE); i++) {
+                                sb.append(result.getRejected().get(i)).append("\n");
+                            }
+                            JOptionPane.showMessageDialog(null, sb.toString(), "Import", JOptionPane.INFORMATION_MESSAGE);
+                        } catch (IOException e) {
+                            JOptionPane.showMessageDialog(null, "Could not read file: " + e.getMessage());
+                        }
+                    }
                     break;
-                case 3: // Quit
+                case 5: // Quit
                 case JOptionPane.CLOSED_OPTION:
                     running = false;
                     break;
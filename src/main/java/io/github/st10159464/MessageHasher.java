@@ -0,0 +1,13 @@
+package io.github.st10159464;
+
+// Strategy for turning a message's recipient and content into its hash.
+// Message uses Murmur3MessageHasher unless another strategy is set with Message.setHasher.
+public interface MessageHasher {
+
+    // The original 32-bit scheme: "MSG:" + hex of (recipientCell + messageContent).hashCode().
+    // Kept for reading old hashes; it collides often once there are many messages.
+    MessageHasher STRING_HASH_CODE = (recipientCell, messageContent) ->
+            "MSG:" + Integer.toHexString((recipientCell + messageContent).hashCode()).toUpperCase();
+
+    String hash(String recipientCell, String messageContent);
+}
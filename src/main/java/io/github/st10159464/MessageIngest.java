@@ -0,0 +1,221 @@
+package io.github.st10159464;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Bulk send: validates and hashes (recipient, content) records in parallel, then adds the
+// valid ones to a MessageStore with one addAll per batch. Invalid records come back with
+// the reason they were rejected; nothing is shown in a dialog.
+//
+// Records are processed in batches of batchSize so that a file or stream of any length is
+// ingested in flat memory. Validation, hashing (the Message constructor) and the store
+// insert all run on a fork-join pool, so throughput grows with the pool's parallelism.
+public class MessageIngest {
+    public static final int DEFAULT_BATCH_SIZE = 65_536;
+
+    private final MessageStore store;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    public MessageIngest(MessageStore store) {
+        this(store, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    public MessageIngest(MessageStore store, ForkJoinPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.store = store;
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    // One (recipient, content) record to send
+    public static class Record {
+        private final String recipientCell;
+        private final String messageContent;
+
+        public Record(String recipientCell, String messageContent) {
+            this.recipientCell = recipientCell;
+            this.messageContent = messageContent;
+        }
+
+        public String getRecipientCell() {
+            return recipientCell;
+        }
+
+        public String getMessageContent() {
+            return messageContent;
+        }
+    }
+
+    // A record that was not sent; number is its 1-based position in the input (the line for files)
+    public static class Rejection {
+        private final long number;
+        private final String recipientCell;
+        private final String messageContent;
+        private final String reason;
+
+        Rejection(long number, String recipientCell, String messageContent, String reason) {
+            this.number = number;
+            this.recipientCell = recipientCell;
+            this.messageContent = messageContent;
+            this.reason = reason;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        public String getRecipientCell() {
+            return recipientCell;
+        }
+
+        public String getMessageContent() {
+            return messageContent;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + number + ": " + reason;
+        }
+    }
+
+    // How many records were sent, and why the others were not
+    public static class Result {
+        private long accepted;
+        private final List<Rejection> rejected = new ArrayList<>();
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public List<Rejection> getRejected() {
+            return Collections.unmodifiableList(rejected);
+        }
+
+        public long getTotal() {
+            return accepted + rejected.size();
+        }
+    }
+
+    public Result ingest(List<Record> records) {
+        return ingest(records.stream());
+    }
+
+    public Result ingest(Stream<Record> records) {
+        Result result = new Result();
+        List<Record> batch = new ArrayList<>(batchSize);
+        long number = 1;
+        for (Iterator<Record> it = records.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            if (batch.size() == batchSize) {
+                ingestBatch(batch, number, result);
+                number += batch.size();
+                batch.clear();
+            }
+        }
+        ingestBatch(batch, number, result);
+        return result;
+    }
+
+    // Reads UTF-8 lines of "recipient,content"; the content is everything after the first comma.
+    // Blank lines are skipped but still counted, so rejection numbers are line numbers.
+    public Result ingestFile(Path file) throws IOException {
+        Result result = new Result();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Record> batch = new ArrayList<>(batchSize);
+            long firstLine = 1;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                batch.add(parseLine(line));
+                if (batch.size() == batchSize) {
+                    ingestBatch(batch, firstLine, result);
+                    firstLine = lineNumber + 1;
+                    batch.clear();
+                }
+            }
+            ingestBatch(batch, firstLine, result);
+        }
+        return result;
+    }
+
+    // Blank lines become null records, which ingestBatch skips; a line without a comma
+    // keeps the whole line as the recipient so the rejection can quote it
+    private static Record parseLine(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        int comma = line.indexOf(',');
+        return comma < 0 ? new Record(line, null) : new Record(line.substring(0, comma), line.substring(comma + 1));
+    }
+
+    private void ingestBatch(List<Record> batch, long firstNumber, Result result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // each slot holds either the hashed Message or the reason the record was rejected
+        List<Object> outcomes = pool.submit(() -> IntStream.range(0, batch.size())
+                .parallel()
+                .mapToObj(i -> validate(batch.get(i)))
+                .collect(Collectors.toList())).join();
+        List<Message> accepted = new ArrayList<>(outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (outcome instanceof Message) {
+                accepted.add((Message) outcome);
+            } else if (outcome != null) {
+                Record r = batch.get(i);
+                result.rejected.add(new Rejection(firstNumber + i, r.getRecipientCell(), r.getMessageContent(),
+                        (String) outcome));
+            }
+        }
+        pool.submit(() -> store.addAll(accepted)).join();
+        result.accepted += accepted.size();
+    }
+
+    // A Message (hash already computed) for a valid record, a reason string otherwise,
+    // and null for a skipped blank line
+    private static Object validate(Record record) {
+        if (record == null) {
+            return null;
+        }
+        if (record.getRecipientCell() == null) {
+            return "Missing recipient";
+        }
+        if (record.getMessageContent() == null) {
+            return "Missing message content";
+        }
+        Message message = new Message(record.getRecipientCell(), record.getMessageContent());
+        String reason = reasonToReject(message);
+        return reason == null ? message : reason;
+    }
+
+    // Why a message may not be sent, or null if it may
+    static String reasonToReject(Message message) {
+        if (message.checkRecipientCell() != 1) {
+            return "Recipient cell must start with +27 and be 12 characters long";
+        }
+        if (!message.checkMessageID()) {
+            return "Message exceeds 250 characters";
+        }
+        return null;
+    }
+}
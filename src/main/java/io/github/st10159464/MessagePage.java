@@ -0,0 +1,34 @@
+package io.github.st10159464;
+
+import java.util.Collections;
+import java.util.List;
+
+// One page of messages from a MessageStore, plus the cursor for the page after it
+public class MessagePage {
+    private final List<Message> messages;
+    private final long nextCursor;
+    private final boolean hasMore;
+
+    MessagePage(List<Message> messages, long nextCursor, boolean hasMore) {
+        this.messages = Collections.unmodifiableList(messages);
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    // Pass to MessageStore.pageAfter to get the next page; stays valid while messages are added or deleted
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty();
+    }
+}
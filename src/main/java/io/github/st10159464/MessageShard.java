@@ -0,0 +1,33 @@
+package io.github.st10159464;
+
+import java.util.List;
+
+// One partition of the sent messages: a ChatService in this JVM (LocalShard) or one behind a
+// ChatHttpServer in another JVM (RemoteShard). ShardRouter decides which shard owns each
+// recipient, so every message to one recipient lives on the same shard.
+//
+// Remote shards report I/O failures as UncheckedIOException; invalid messages are rejected
+// with IllegalArgumentException, as ChatService.send does.
+public interface MessageShard extends AutoCloseable {
+
+    // Unique name; also where the shard sits on the hash ring
+    String getName();
+
+    Message send(String recipientCell, String content);
+
+    Message findByHash(String hash);
+
+    List<Message> findByRecipient(String recipientCell);
+
+    List<Message> search(String query);
+
+    boolean deleteByHash(String hash);
+
+    // Up to limit messages sent after cursor (0 for the first page), in this shard's send order
+    MessagePage reportPage(long cursor, int limit);
+
+    int messageCount();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,211 @@
+package io.github.st10159464;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Running statistics over a changing set of messages, updated on every add and remove
+// so dashboard queries never scan the messages:
+//   longest()             O(1)       - ordered multiset by (length desc, add order)
+//   count(), totalChars() O(1)
+//   recipientCount(cell)  O(1)
+//   lengthHistogram()     O(buckets)
+// add and remove cost O(log n). Removing the current longest message simply promotes
+// the next entry of the ordered set.
+//
+// A store that moves messages out of memory retires them: they stay in every count, but
+// are no longer tracked one by one. Only the longest retired message is remembered, for
+// longest(); the store offers the next one when that is removed.
+//
+// M is the message type; the two functions read its recipient and content, so both
+// Message classes can use it. Messages are told apart by identity. add and remove are
+// thread-safe, but the same message must not be added and removed concurrently.
+public class MessageStatistics<M> {
+    // Histogram buckets are BUCKET_WIDTH characters wide; the last one holds everything longer
+    public static final int BUCKET_WIDTH = 10;
+    public static final int BUCKETS = 26;
+
+    private final Function<M, String> recipientOf;
+    private final Function<M, String> contentOf;
+
+    private final Comparator<Entry<M>> longestFirst =
+            Comparator.<Entry<M>>comparingInt(e -> -e.length).thenComparingLong(e -> e.order);
+    private final Map<IdentityKey<M>, Entry<M>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry<M>> byLength = new ConcurrentSkipListSet<>(longestFirst);
+    // Longest retired message, earliest on ties; null if none has been offered
+    private volatile Entry<M> retiredLongest;
+    private final Map<String, Long> perRecipient = new ConcurrentHashMap<>();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLong nextOrder = new AtomicLong();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalChars = new LongAdder();
+
+    public MessageStatistics(Function<M, String> recipientOf, Function<M, String> contentOf) {
+        this.recipientOf = recipientOf;
+        this.contentOf = contentOf;
+    }
+
+    // Counts a message; returns false if it is already counted
+    public boolean add(M message) {
+        return add(message, nextOrder.getAndIncrement());
+    }
+
+    // Same, with the caller's own ordering key (such as a send sequence) for breaking ties
+    public boolean add(M message, long order) {
+        IdentityKey<M> key = new IdentityKey<>(message);
+        int length = lengthOf(message);
+        Entry<M> entry = new Entry<>(message, length, order);
+        if (entries.putIfAbsent(key, entry) != null) {
+            return false;
+        }
+        byLength.add(entry);
+        count.increment();
+        totalChars.add(length);
+        histogram.incrementAndGet(bucketOf(length));
+        perRecipient.merge(String.valueOf(recipientOf.apply(message)), 1L, Long::sum);
+        return true;
+    }
+
+    // Stops counting a message; returns false if it was not counted
+    public boolean remove(M message) {
+        Entry<M> entry = entries.remove(new IdentityKey<>(message));
+        if (entry == null) {
+            return false;
+        }
+        byLength.remove(entry);
+        count.decrement();
+        totalChars.add(-entry.length);
+        histogram.decrementAndGet(bucketOf(entry.length));
+        perRecipient.computeIfPresent(String.valueOf(recipientOf.apply(message)),
+                (k, n) -> n == 1 ? null : n - 1);
+        return true;
+    }
+
+    // Stops tracking a message one by one but keeps it in the counts; returns false if it
+    // was not counted. It stays a candidate for longest() until removeRetired.
+    public boolean retire(M message) {
+        Entry<M> entry = entries.remove(new IdentityKey<>(message));
+        if (entry == null) {
+            return false;
+        }
+        byLength.remove(entry);
+        offerRetired(entry);
+        return true;
+    }
+
+    // Takes a retired message out of the counts. message may be a copy; order is the key it
+    // was added with. Returns true if it was the longest retired message, in which case the
+    // caller should offer the next longest with offerRetiredLongest.
+    public boolean removeRetired(M message, long order) {
+        int length = lengthOf(message);
+        count.decrement();
+        totalChars.add(-length);
+        histogram.decrementAndGet(bucketOf(length));
+        perRecipient.computeIfPresent(String.valueOf(recipientOf.apply(message)),
+                (k, n) -> n == 1 ? null : n - 1);
+        synchronized (this) {
+            Entry<M> longest = retiredLongest;
+            if (longest != null && longest.order == order) {
+                retiredLongest = null;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // Offers a retired message as the longest retired one; kept if it is longer than the
+    // current one, or as long and earlier
+    public void offerRetiredLongest(M message, long order) {
+        offerRetired(new Entry<>(message, lengthOf(message), order));
+    }
+
+    private synchronized void offerRetired(Entry<M> entry) {
+        if (retiredLongest == null || longestFirst.compare(entry, retiredLongest) < 0) {
+            retiredLongest = entry;
+        }
+    }
+
+    // The longest message; ties go to the one added first. Null when there are none.
+    public M longest() {
+        // an iterator rather than first(), which throws if the set empties after a check
+        Iterator<Entry<M>> it = byLength.iterator();
+        Entry<M> tracked = it.hasNext() ? it.next() : null;
+        Entry<M> retired = retiredLongest;
+        if (retired != null && (tracked == null || longestFirst.compare(retired, tracked) < 0)) {
+            return retired.message;
+        }
+        return tracked == null ? null : tracked.message;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalChars() {
+        return totalChars.sum();
+    }
+
+    public double averageLength() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) totalChars.sum() / n;
+    }
+
+    public long recipientCount(String recipient) {
+        return perRecipient.getOrDefault(String.valueOf(recipient), 0L);
+    }
+
+    // Copy of the message count for every recipient that has at least one message
+    public Map<String, Long> recipientCounts() {
+        return new HashMap<>(perRecipient);
+    }
+
+    // Copy of the length histogram; index i counts lengths [i * BUCKET_WIDTH, (i + 1) * BUCKET_WIDTH)
+    public long[] lengthHistogram() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = histogram.get(i);
+        }
+        return copy;
+    }
+
+    // Not atomic with respect to concurrent updates; meant for tests and resets
+    public void clear() {
+        entries.clear();
+        byLength.clear();
+        retiredLongest = null;
+        perRecipient.clear();
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram.set(i, 0);
+        }
+        count.reset();
+        totalChars.reset();
+    }
+
+    public static int bucketOf(int length) {
+        return Math.min(length / BUCKET_WIDTH, BUCKETS - 1);
+    }
+
+    private int lengthOf(M message) {
+        String content = contentOf.apply(message);
+        return content == null ? 0 : content.length();
+    }
+
+    private static final class Entry<M> {
+        final M message;
+        final int length;
+        final long order;
+
+        Entry(M message, int length, long order) {
+            this.message = message;
+            this.length = length;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,646 @@
+package io.github.st10159464;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+// Indexed store of sent messages. Lookups by hash or recipient cost O(1) per result
+// instead of a scan over every message that was ever sent.
+//
+// Safe for many concurrent senders: writers lock one stripe chosen by message hash,
+// readers never lock, and iteration works on a weakly consistent view, so reports
+// can run while messages are being sent or deleted.
+//
+// An off-heap store (offHeap(), or -Dchatapp.store=offheap for the shared service) moves
+// each message's content into a ContentArena once it is indexed, and decodes it only when
+// it is read; search, report and delete work the same on both.
+//
+// A bounded store (tiered(), or -Dchatapp.sent.memory for the shared service) keeps only
+// the newest memoryLimit messages in memory. Past that, the oldest segmentSize of them are
+// written to a segment file and dropped from every in-memory index, so heap use stays flat
+// however long the store runs; see EvictedMessages. Every query and report still covers
+// them, faulting segments back in as needed, and the statistics keep counting them.
+// Spills and deletes take a tier lock exclusively and senders take it shared, so queries
+// see each message in exactly one tier; queries themselves read optimistically and only
+// lock if a spill or delete ran meanwhile. An unbounded store has no tier lock at all.
+// Close a bounded store to delete its segment files. Off-heap content of spilled messages
+// stays in the arena, which never frees.
+public class MessageStore implements Closeable {
+    public static final int DEFAULT_MEMORY_LIMIT = 10_000;
+    public static final int DEFAULT_SEGMENT_SIZE = 1_000;
+
+    private static final int STRIPES = 64;
+    // Batches at least this big are inserted by several threads
+    private static final int PARALLEL_BATCH = 4096;
+    // Messages fetched at a time while iterating a bounded store
+    private static final int ITERATION_PAGE = 512;
+
+    private static final Metrics.Timer SPILL = Metrics.timer("store.spill");
+    private static final Metrics.Counter SPILL_FAILED = Metrics.counter("store.spill.failed");
+
+    // Stripe locks, chosen by message hash, keep the three maps consistent per hash
+    private final Object[] locks = new Object[STRIPES];
+
+    // Send sequence numbers; 0 means "not in a store"
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final LongAdder count = new LongAdder();
+
+    // All messages keyed by send sequence, so iteration follows send order
+    private final ConcurrentSkipListMap<Long, Message> messages = new ConcurrentSkipListMap<>();
+
+    // Primary index: message hash -> messages with that hash (identical messages share one)
+    private final Map<String, ConcurrentSkipListMap<Long, Message>> byHash = new ConcurrentHashMap<>();
+
+    // Secondary index: recipient -> messages sent to that recipient. "+27" cells are keyed by
+    // their RecipientTable id; anything else (never accepted by send) by the string itself
+    private final DenseIntMap<ConcurrentSkipListMap<Long, Message>> byRecipient = new DenseIntMap<>();
+    private final Map<String, ConcurrentSkipListMap<Long, Message>> byOtherRecipient = new ConcurrentHashMap<>();
+
+    // Longest message, counts, per-recipient totals and length histogram, kept up to date
+    private final MessageStatistics<Message> statistics =
+            new MessageStatistics<>(Message::getRecipientCell, Message::getMessageContent);
+
+    // Keyword search over message content
+    private final InvertedIndex<Message> contentIndex = new InvertedIndex<>(Message::getMessageContent);
+
+    // Where content goes once indexed; null keeps it on the heap
+    private volatile ContentArena arena;
+
+    // Integer.MAX_VALUE for an unbounded store, which has no disk tier and no tier lock
+    private final int memoryLimit;
+    private final int segmentSize;
+    private final EvictedMessages evicted;
+    private final StampedLock tierLock;
+    private final AtomicBoolean spilling = new AtomicBoolean();
+
+    public MessageStore() {
+        this(null);
+    }
+
+    // arena null keeps content on the heap
+    public MessageStore(ContentArena arena) {
+        this(arena, Integer.MAX_VALUE, DEFAULT_SEGMENT_SIZE, null);
+    }
+
+    // Keeps at most memoryLimit messages in memory and spills older ones, segmentSize at a
+    // time, to directory (null for a temporary one); Integer.MAX_VALUE never spills
+    public MessageStore(ContentArena arena, int memoryLimit, int segmentSize, Path directory) {
+        if (segmentSize < 1 || memoryLimit < segmentSize) {
+            throw new IllegalArgumentException("segmentSize must be >= 1 and memoryLimit >= segmentSize");
+        }
+        this.arena = arena;
+        this.memoryLimit = memoryLimit;
+        this.segmentSize = segmentSize;
+        boolean bounded = memoryLimit != Integer.MAX_VALUE;
+        this.evicted = bounded ? new EvictedMessages(directory) : null;
+        this.tierLock = bounded ? new StampedLock() : null;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // A store that keeps message content off-heap
+    public static MessageStore offHeap() {
+        return new MessageStore(new ContentArena());
+    }
+
+    // A heap store that keeps at most memoryLimit messages in memory, spilling older ones
+    // to a temporary directory
+    public static MessageStore tiered(int memoryLimit) {
+        return new MessageStore(null, memoryLimit, Math.min(DEFAULT_SEGMENT_SIZE, memoryLimit), null);
+    }
+
+    private static int stripeOf(String hash) {
+        int h = hash.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private Object lockFor(String hash) {
+        return locks[stripeOf(hash)];
+    }
+
+    // Adds a message to the store and both indexes
+    public void add(Message message) {
+        long stamp = lockShared();
+        try {
+            synchronized (lockFor(message.getMessageHash())) {
+                if (!contains(message)) {
+                    insert(message, nextSequence.getAndIncrement());
+                }
+            }
+        } finally {
+            unlockShared(stamp);
+        }
+        spillIfOverLimit();
+    }
+
+    // Adds a batch of messages, keeping their order. Sequence numbers for the whole batch
+    // are reserved in one atomic step and each stripe lock is taken once, not once per message.
+    // Large batches fill the stripes in parallel on the current fork-join pool.
+    public void addAll(List<Message> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long stamp = lockShared();
+        try {
+            insertAll(batch);
+        } finally {
+            unlockShared(stamp);
+        }
+        spillIfOverLimit();
+    }
+
+    private void insertAll(List<Message> batch) {
+        int n = batch.size();
+        long base = nextSequence.getAndAdd(n);
+        // bucket the batch positions by stripe: first[] heads a chain through next[]
+        int[] first = new int[STRIPES];
+        int[] next = new int[n];
+        Arrays.fill(first, -1);
+        for (int i = n - 1; i >= 0; i--) {
+            int stripe = stripeOf(batch.get(i).getMessageHash());
+            next[i] = first[stripe];
+            first[stripe] = i;
+        }
+        IntStream stripes = IntStream.range(0, STRIPES).filter(stripe -> first[stripe] >= 0);
+        if (n >= PARALLEL_BATCH) {
+            stripes = stripes.parallel();
+        }
+        stripes.forEach(stripe -> {
+            synchronized (locks[stripe]) {
+                for (int i = first[stripe]; i >= 0; i = next[i]) {
+                    Message message = batch.get(i);
+                    if (!contains(message)) {
+                        insert(message, base + i);
+                    }
+                }
+            }
+        });
+    }
+
+    // Caller holds the message's stripe lock
+    private boolean contains(Message message) {
+        return messages.get(message.getSequence()) == message;
+    }
+
+    // Caller holds the message's stripe lock
+    private void insert(Message message, long seq) {
+        message.assignSequence(seq);
+        messages.put(seq, message);
+        addToIndex(byHash, message.getMessageHash(), seq, message);
+        addToRecipientIndex(message, seq);
+        statistics.add(message, seq);
+        contentIndex.add(message, seq);
+        count.increment();
+        // after indexing, which reads the content
+        ContentArena offHeap = arena;
+        if (offHeap != null) {
+            message.moveContentTo(offHeap);
+        }
+    }
+
+    // Returns the first message sent with the given hash, or null
+    public Message findByHash(String hash) {
+        if (evicted == null) {
+            return findInMemory(hash);
+        }
+        return read(() -> {
+            Message m = evicted.findByHash(hash);
+            return m != null ? m : findInMemory(hash);
+        });
+    }
+
+    private Message findInMemory(String hash) {
+        ConcurrentSkipListMap<Long, Message> matches = byHash.get(hash);
+        if (matches == null) {
+            return null;
+        }
+        Map.Entry<Long, Message> first = matches.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    // Returns every message sent to the recipient, in send order
+    public List<Message> findByRecipient(String recipientCell) {
+        if (evicted == null) {
+            return findInMemoryByRecipient(recipientCell, new ArrayList<>());
+        }
+        return read(() -> {
+            List<Message> found = new ArrayList<>();
+            evicted.findByRecipient(recipientCell, found);
+            return findInMemoryByRecipient(recipientCell, found);
+        });
+    }
+
+    private List<Message> findInMemoryByRecipient(String recipientCell, List<Message> found) {
+        int id = RecipientTable.shared().find(recipientCell);
+        ConcurrentSkipListMap<Long, Message> matches = id == RecipientTable.NOT_A_CELL
+                ? byOtherRecipient.get(String.valueOf(recipientCell)) : byRecipient.get(id);
+        if (matches != null) {
+            found.addAll(matches.values());
+        }
+        return found;
+    }
+
+    // Removes every message with the given hash; returns true if any were removed
+    public boolean removeByHash(String hash) {
+        if (evicted == null) {
+            return removeFromMemory(hash);
+        }
+        long stamp = tierLock.writeLock();
+        try {
+            boolean removed = removeFromMemory(hash);
+            boolean longestRemoved = false;
+            for (Message m : evicted.removeByHash(hash)) {
+                longestRemoved |= statistics.removeRetired(m, m.getSequence());
+                removed = true;
+            }
+            if (longestRemoved) {
+                Message next = evicted.longest();
+                if (next != null) {
+                    statistics.offerRetiredLongest(next, next.getSequence());
+                }
+            }
+            return removed;
+        } finally {
+            tierLock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean removeFromMemory(String hash) {
+        synchronized (lockFor(hash)) {
+            ConcurrentSkipListMap<Long, Message> removed = byHash.remove(hash);
+            if (removed == null) {
+                return false;
+            }
+            for (Map.Entry<Long, Message> e : removed.entrySet()) {
+                messages.remove(e.getKey());
+                removeFromRecipientIndex(e.getValue(), e.getKey());
+                statistics.remove(e.getValue());
+                contentIndex.remove(e.getValue());
+                count.decrement();
+            }
+            return true;
+        }
+    }
+
+    // compute() is atomic per key, so a concurrent add never lands in a map that is being dropped
+    private static void addToIndex(Map<String, ConcurrentSkipListMap<Long, Message>> index,
+                                   String key, long seq, Message message) {
+        index.compute(key, (k, v) -> {
+            if (v == null) {
+                v = new ConcurrentSkipListMap<>();
+            }
+            v.put(seq, message);
+            return v;
+        });
+    }
+
+    private static void removeFromIndex(Map<String, ConcurrentSkipListMap<Long, Message>> index,
+                                        String key, long seq) {
+        index.computeIfPresent(key, (k, v) -> {
+            v.remove(seq);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    // Per-recipient maps for "+27" cells stay when emptied: recipients are few and come back
+    private void addToRecipientIndex(Message message, long seq) {
+        int id = message.getRecipientId();
+        if (id == RecipientTable.NOT_A_CELL) {
+            addToIndex(byOtherRecipient, String.valueOf(message.getRecipientCell()), seq, message);
+        } else {
+            byRecipient.computeIfAbsent(id, k -> new ConcurrentSkipListMap<>()).put(seq, message);
+        }
+    }
+
+    private void removeFromRecipientIndex(Message message, long seq) {
+        int id = message.getRecipientId();
+        if (id == RecipientTable.NOT_A_CELL) {
+            removeFromIndex(byOtherRecipient, String.valueOf(message.getRecipientCell()), seq);
+        } else {
+            ConcurrentSkipListMap<Long, Message> messages = byRecipient.get(id);
+            if (messages != null) {
+                messages.remove(seq);
+            }
+        }
+    }
+
+    // Weakly consistent, read-only view of all messages in send order; never throws
+    // ConcurrentModificationException. A bounded store's view reads a page at a time.
+    public Collection<Message> all() {
+        if (evicted == null) {
+            return Collections.unmodifiableCollection(messages.values());
+        }
+        return new AbstractCollection<Message>() {
+            @Override
+            public Iterator<Message> iterator() {
+                return new PagingIterator();
+            }
+
+            @Override
+            public int size() {
+                return MessageStore.this.size();
+            }
+        };
+    }
+
+    // Up to limit messages sent after the cursor (0 for the first page), in send order.
+    // Costs O(log n + limit) however deep the cursor is.
+    public MessagePage pageAfter(long cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be >= 1");
+        }
+        if (evicted == null) {
+            return page(messages.tailMap(cursor, false).values(), 0, limit, cursor);
+        }
+        return read(() -> {
+            // one more than asked for says whether there are more
+            List<Message> page = new ArrayList<>(Math.min(limit, 1024) + 1);
+            evicted.collectAfter(cursor, limit + 1, page);
+            for (Iterator<Message> it = messages.tailMap(cursor, false).values().iterator();
+                    page.size() <= limit && it.hasNext(); ) {
+                page.add(it.next());
+            }
+            boolean more = page.size() > limit;
+            if (more) {
+                page.remove(limit);
+            }
+            long next = page.isEmpty() ? cursor : page.get(page.size() - 1).getSequence();
+            return new MessagePage(page, next, more);
+        });
+    }
+
+    // Up to limit messages starting at position offset in send order. The skipped
+    // messages are walked over, so deep pages cost O(offset); prefer pageAfter.
+    public MessagePage page(long offset, int limit) {
+        return page(evicted == null ? messages.values() : all(), offset, limit, 0);
+    }
+
+    private final class PagingIterator implements Iterator<Message> {
+        private Iterator<Message> page = Collections.emptyIterator();
+        private long cursor;
+        private boolean more = true;
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && more) {
+                MessagePage next = pageAfter(cursor, ITERATION_PAGE);
+                page = next.getMessages().iterator();
+                cursor = next.getNextCursor();
+                more = next.hasMore();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+    }
+
+    private static MessagePage page(Collection<Message> source, long offset, int limit, long cursor) {
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("offset must be >= 0 and limit >= 1");
+        }
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        long next = cursor;
+        Iterator<Message> it = source.iterator();
+        for (long skipped = 0; skipped < offset && it.hasNext(); skipped++) {
+            next = it.next().getSequence();
+        }
+        while (page.size() < limit && it.hasNext()) {
+            Message m = it.next();
+            page.add(m);
+            next = m.getSequence();
+        }
+        return new MessagePage(page, next, it.hasNext());
+    }
+
+    // Point-in-time copy of all messages in send order
+    public List<Message> snapshot() {
+        return new ArrayList<>(all());
+    }
+
+    // Messages whose content matches the query, in send order; see InvertedIndex.search
+    public List<Message> searchContent(String query) {
+        if (evicted == null) {
+            return contentIndex.search(query);
+        }
+        return read(() -> {
+            List<Message> found = new ArrayList<>();
+            evicted.search(query, found);
+            found.addAll(contentIndex.search(query));
+            return found;
+        });
+    }
+
+    // Index over the messages in memory only; searchContent covers spilled ones too
+    public InvertedIndex<Message> getContentIndex() {
+        return contentIndex;
+    }
+
+    // Counts and longest cover every message, spilled ones included
+    public MessageStatistics<Message> getStatistics() {
+        return statistics;
+    }
+
+    // The arena holding content, or null for a heap store
+    public ContentArena getContentArena() {
+        return arena;
+    }
+
+    public int size() {
+        if (evicted == null) {
+            return count.intValue();
+        }
+        return read(() -> count.intValue() + evicted.size());
+    }
+
+    // Messages held in memory; all of them for an unbounded store
+    public int getMemoryCount() {
+        return count.intValue();
+    }
+
+    public boolean isEmpty() {
+        return evicted == null ? messages.isEmpty() : size() == 0;
+    }
+
+    // Not atomic with respect to concurrent senders; meant for tests and resets
+    public void clear() {
+        long stamp = tierLock == null ? 0 : tierLock.writeLock();
+        try {
+            clearMemory();
+            if (evicted != null) {
+                evicted.clear();
+            }
+        } finally {
+            if (tierLock != null) {
+                tierLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // Deletes the segment files of a bounded store, and the spilled messages with them
+    @Override
+    public void close() {
+        if (evicted != null) {
+            long stamp = tierLock.writeLock();
+            try {
+                long spilled = evicted.size();
+                evicted.clear();
+                if (spilled > 0) {
+                    // they are gone, so the counts must not include them any more
+                    statistics.clear();
+                    for (Message m : messages.values()) {
+                        statistics.add(m, m.getSequence());
+                    }
+                }
+            } finally {
+                tierLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private void clearMemory() {
+        messages.clear();
+        byHash.clear();
+        byRecipient.clear();
+        byOtherRecipient.clear();
+        statistics.clear();
+        contentIndex.clear();
+        count.reset();
+        // a fresh arena: messages still referenced elsewhere keep the old one alive
+        if (arena != null) {
+            arena = new ContentArena(arena.getSlabBytes());
+        }
+    }
+
+    private long lockShared() {
+        return tierLock == null ? 0 : tierLock.readLock();
+    }
+
+    private void unlockShared(long stamp) {
+        if (tierLock != null) {
+            tierLock.unlockRead(stamp);
+        }
+    }
+
+    // Runs a query of a bounded store optimistically, and again under the shared lock if a
+    // spill or delete ran meanwhile, so each message is seen in exactly one tier. A segment
+    // deleted under an optimistic read can make the query throw; that is retried too.
+    private <T> T read(Supplier<T> query) {
+        long stamp = tierLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = query.get();
+                if (tierLock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (tierLock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        stamp = tierLock.readLock();
+        try {
+            return query.get();
+        } finally {
+            tierLock.unlockRead(stamp);
+        }
+    }
+
+    // One sender at a time spills until memory is back under the limit
+    private void spillIfOverLimit() {
+        if (evicted == null || count.intValue() <= memoryLimit || !spilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (count.intValue() > memoryLimit && spillOldest()) {
+                // keep going: a large addAll can be several segments over
+            }
+        } finally {
+            spilling.set(false);
+        }
+    }
+
+    // Moves the oldest segmentSize messages to a new segment. They are chosen under the
+    // exclusive lock, when no insert is part way, so everything left in memory or sent later
+    // has a higher sequence and the disk tier is always the oldest messages. The file is
+    // written without the lock; messages deleted meanwhile are tombstoned in it. If the
+    // write fails they stay in memory, and a later send tries again.
+    private boolean spillOldest() {
+        List<Message> batch = new ArrayList<>(segmentSize);
+        long[] sequences = new long[segmentSize];
+        long stamp = tierLock.writeLock();
+        try {
+            for (Message m : messages.values()) {
+                if (batch.size() == segmentSize) {
+                    break;
+                }
+                sequences[batch.size()] = m.getSequence();
+                batch.add(m);
+            }
+        } finally {
+            tierLock.unlockWrite(stamp);
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        EvictedMessages.Segment segment;
+        long start = SPILL.start();
+        try {
+            segment = evicted.write(batch);
+        } catch (IOException e) {
+            SPILL_FAILED.increment();
+            return false;
+        } finally {
+            SPILL.stop(start);
+        }
+        stamp = tierLock.writeLock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Message m = batch.get(i);
+                if (messages.get(sequences[i]) == m) {
+                    dropFromMemory(m, sequences[i]);
+                } else {
+                    segment.tombstone(sequences[i]);
+                }
+            }
+            evicted.publish(segment);
+        } finally {
+            tierLock.unlockWrite(stamp);
+        }
+        return true;
+    }
+
+    // Caller holds the exclusive tier lock, so no stripe lock is needed
+    private void dropFromMemory(Message message, long seq) {
+        messages.remove(seq);
+        removeFromIndex(byHash, message.getMessageHash(), seq);
+        removeFromRecipientIndex(message, seq);
+        statistics.retire(message);
+        contentIndex.remove(message);
+        count.decrement();
+    }
+}
@@ -0,0 +1,230 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Process-wide counters and latency timers for the message hot paths.
+//
+// Off unless the JVM starts with -Dchatapp.metrics=true or it is switched on through JMX
+// (io.github.st10159464:type=Metrics) or setEnabled. While off, a timed operation costs one
+// volatile read and nothing is recorded. Typical use:
+//
+//     private static final Metrics.Timer SEND = Metrics.timer("chat.send");
+//     long start = SEND.start();
+//     try { ... } finally { SEND.stop(start); }
+public final class Metrics {
+    private static final String DOMAIN = "io.github.st10159464";
+    // Returned by start() while disabled; System.nanoTime() never gets there in practice
+    private static final long OFF = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = Boolean.getBoolean("chatapp.metrics");
+    private static final ConcurrentMap<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    static {
+        register("type=Metrics", new Control());
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // The timer with this name, created and registered with JMX on first use
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> {
+            Timer t = new Timer(n);
+            register("type=Latency,name=" + ObjectName.quote(n), t);
+            return t;
+        });
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    // Clears every timer and counter; they stay registered
+    public static void reset() {
+        timers.values().forEach(Timer::reset);
+        counters.values().forEach(c -> c.count.reset());
+    }
+
+    // Writes one line per timer (latencies in microseconds) and per counter, sorted by name
+    public static void dump(Writer out) throws IOException {
+        out.write(String.format("metrics %s%n", enabled ? "enabled" : "disabled"));
+        out.write(String.format("%-28s %10s %10s %10s %10s %10s %10s %10s%n",
+                "timer", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (Timer t : timers.values()) {
+            out.write(String.format("%-28s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", t.name,
+                    t.getCount(), t.getMeanMicros(), t.getP50Micros(), t.getP90Micros(),
+                    t.getP99Micros(), t.getP999Micros(), t.getMaxMicros()));
+        }
+        if (!counters.isEmpty()) {
+            out.write(String.format("%-28s %10s%n", "counter", "value"));
+            for (Counter c : counters.values()) {
+                out.write(String.format("%-28s %10d%n", c.name, c.get()));
+            }
+        }
+        out.flush();
+    }
+
+    public static String dump() {
+        StringWriter out = new StringWriter();
+        try {
+            dump(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
+        }
+        return out.toString();
+    }
+
+    // Monitoring must never stop the application, so a JMX failure only loses the bean
+    private static void register(String properties, Object bean) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName(DOMAIN + ":" + properties));
+        } catch (JMException | RuntimeException e) {
+            // already registered by another class loader, or no JMX in this runtime
+        }
+    }
+
+    // Latency histogram for one operation
+    public static final class Timer implements LatencyMXBean {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        // Pass the result to stop() when the operation finishes
+        public long start() {
+            return enabled ? System.nanoTime() : OFF;
+        }
+
+        public void stop(long start) {
+            if (start != OFF) {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.getMean() / 1000;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histogram.percentile(50) / 1000.0;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return histogram.percentile(90) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histogram.percentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return histogram.percentile(99.9) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return histogram.getMax() / 1000.0;
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+
+    // Lock-free event counter; increments are dropped while metrics are off
+    public static final class Counter {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+
+        public void add(long n) {
+            if (enabled) {
+                count.add(n);
+            }
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    private static final class Control implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            enabled = on;
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> values = new TreeMap<>();
+            counters.forEach((name, c) -> values.put(name, c.get()));
+            return values;
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
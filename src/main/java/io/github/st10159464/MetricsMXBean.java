@@ -0,0 +1,17 @@
+package io.github.st10159464;
+
+import java.util.Map;
+
+// JMX control for the metrics layer, registered as io.github.st10159464:type=Metrics
+public interface MetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getCounters();
+
+    // The same table as Metrics.dump
+    String dump();
+
+    void reset();
+}
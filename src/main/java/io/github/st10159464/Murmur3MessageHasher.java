@@ -0,0 +1,162 @@
+package io.github.st10159464;
+
+// 128-bit MurmurHash3 (x64 variant) over the UTF-16 code units of the recipient and content.
+// The recipient length goes in first, so "+27a" + "b" and "+27" + "ab" hash differently,
+// and the two strings are read in place without being concatenated.
+// The result is "MSG:" followed by 32 upper-case hex digits.
+public class Murmur3MessageHasher implements MessageHasher {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final long seed;
+
+    public Murmur3MessageHasher() {
+        this(0);
+    }
+
+    public Murmur3MessageHasher(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public String hash(String recipientCell, String messageContent) {
+        State s = digest(recipientCell, messageContent);
+        char[] out = new char[4 + 32];
+        out[0] = 'M';
+        out[1] = 'S';
+        out[2] = 'G';
+        out[3] = ':';
+        writeHex(s.h1, out, 4);
+        writeHex(s.h2, out, 20);
+        return new String(out);
+    }
+
+    // First 64 bits of the hash, for callers that want a number rather than the text form
+    public long hash64(String recipientCell, String messageContent) {
+        return digest(recipientCell, messageContent).h1;
+    }
+
+    private State digest(String recipientCell, String messageContent) {
+        State s = new State(seed);
+        // -1 marks null, so a null recipient does not hash like "null"
+        int length = recipientCell == null ? -1 : recipientCell.length();
+        s.add((char) length);
+        s.add((char) (length >>> 16));
+        addAll(s, recipientCell);
+        addAll(s, messageContent);
+        s.finish();
+        return s;
+    }
+
+    private static void addAll(State s, String text) {
+        if (text == null) {
+            return;
+        }
+        int i = 0;
+        int n = text.length();
+        // top up a partly filled block one char at a time, then take whole blocks directly
+        while (i < n && s.buffered != 0) {
+            s.add(text.charAt(i++));
+        }
+        for (; i + 8 <= n; i += 8) {
+            s.k1 = text.charAt(i) | (long) text.charAt(i + 1) << 16
+                    | (long) text.charAt(i + 2) << 32 | (long) text.charAt(i + 3) << 48;
+            s.k2 = text.charAt(i + 4) | (long) text.charAt(i + 5) << 16
+                    | (long) text.charAt(i + 6) << 32 | (long) text.charAt(i + 7) << 48;
+            s.bytes += 16;
+            s.mixBlock();
+        }
+        while (i < n) {
+            s.add(text.charAt(i++));
+        }
+    }
+
+    private static void writeHex(long value, char[] out, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    // Streaming hash state: 8 chars (16 bytes, little-endian) make one block
+    private static final class State {
+        long h1;
+        long h2;
+        long k1;
+        long k2;
+        int buffered;
+        long bytes;
+
+        State(long seed) {
+            h1 = seed;
+            h2 = seed;
+        }
+
+        void add(char c) {
+            if (buffered < 4) {
+                k1 |= (long) c << (16 * buffered);
+            } else {
+                k2 |= (long) c << (16 * (buffered - 4));
+            }
+            bytes += 2;
+            if (++buffered == 8) {
+                mixBlock();
+            }
+        }
+
+        void mixBlock() {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+
+            k1 = 0;
+            k2 = 0;
+            buffered = 0;
+        }
+
+        void finish() {
+            if (buffered > 4) {
+                h2 ^= mixK2(k2);
+            }
+            if (buffered > 0) {
+                h1 ^= mixK1(k1);
+            }
+            h1 ^= bytes;
+            h2 ^= bytes;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            return k1 * C2;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            return k2 * C1;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
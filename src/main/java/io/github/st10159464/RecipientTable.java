@@ -0,0 +1,144 @@
+package io.github.st10159464;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Intern table for South African cell numbers ("+27" and 9 digits). Each distinct number
+// gets a small dense id, kept once as a String; messages store the 4-byte id instead of
+// their own copy of the number, and indexes can key on it without hashing strings.
+//
+// Numbers are looked up by their 9 digits, parsed without allocating, in an open-addressing
+// table of packed longs, so the lookup hashes no strings and boxes nothing. Lookups never
+// lock; assigning an id to a new number takes the table's lock. Ids are never reused, so
+// the table grows with the number of distinct recipients ever seen, not with messages.
+public final class RecipientTable {
+    // Returned for anything that is not "+27" followed by 9 digits
+    public static final int NOT_A_CELL = -1;
+
+    private static final RecipientTable SHARED = new RecipientTable();
+
+    // Entry: (digits + 1) << 32 | id, so 0 marks an empty slot
+    private volatile AtomicLongArray slots = new AtomicLongArray(1024);
+    private volatile String[] cells = new String[256];
+    private int size;
+
+    // The table behind Message
+    public static RecipientTable shared() {
+        return SHARED;
+    }
+
+    // The id for cell, assigning one if the number is new; NOT_A_CELL if cell is not a +27 number
+    public int intern(String cell) {
+        long digits = digitsOf(cell);
+        if (digits < 0) {
+            return NOT_A_CELL;
+        }
+        int id = probe(slots, digits);
+        return id >= 0 ? id : add(digits, cell);
+    }
+
+    // The id for cell if it has one, else NOT_A_CELL; never adds to the table
+    public int find(String cell) {
+        long digits = digitsOf(cell);
+        if (digits < 0) {
+            return NOT_A_CELL;
+        }
+        int id = probe(slots, digits);
+        if (id >= 0) {
+            return id;
+        }
+        // a resize may have moved the entry since we read slots
+        synchronized (this) {
+            return probe(slots, digits);
+        }
+    }
+
+    // The cell number an id stands for
+    public String cellOf(int id) {
+        return cells[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // The 9 digits after "+27" as a number, or -1 if cell is not in that form
+    // (the same numbers CredentialValidator.isSouthAfricanCell accepts, checked and parsed in one pass)
+    static long digitsOf(String cell) {
+        if (cell == null || cell.length() != 12
+                || cell.charAt(0) != '+' || cell.charAt(1) != '2' || cell.charAt(2) != '7') {
+            return -1;
+        }
+        long digits = 0;
+        for (int i = 3; i < 12; i++) {
+            int d = cell.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            digits = digits * 10 + d;
+        }
+        return digits;
+    }
+
+    private static int indexOf(long digits, int mask) {
+        long h = digits * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // The id stored for digits, or -1 (NOT_A_CELL)
+    private static int probe(AtomicLongArray table, long digits) {
+        int mask = table.length() - 1;
+        long key = digits + 1;
+        for (int i = indexOf(digits, mask); ; i = (i + 1) & mask) {
+            long entry = table.get(i);
+            if (entry == 0) {
+                return -1;
+            }
+            if (entry >>> 32 == key) {
+                return (int) entry;
+            }
+        }
+    }
+
+    private synchronized int add(long digits, String cell) {
+        int id = probe(slots, digits);
+        if (id >= 0) {
+            return id;
+        }
+        id = size;
+        if (id == cells.length) {
+            String[] grown = new String[id * 2];
+            System.arraycopy(cells, 0, grown, 0, id);
+            cells = grown;
+        }
+        // the cell is written before the id can be seen in the table
+        cells[id] = cell;
+        size++;
+        AtomicLongArray table = slots;
+        if (size * 2 > table.length()) {
+            table = rehash(table, table.length() * 2);
+        }
+        insert(table, digits, id);
+        slots = table;
+        return id;
+    }
+
+    private static AtomicLongArray rehash(AtomicLongArray old, int capacity) {
+        AtomicLongArray table = new AtomicLongArray(capacity);
+        for (int i = 0; i < old.length(); i++) {
+            long entry = old.get(i);
+            if (entry != 0) {
+                insert(table, (entry >>> 32) - 1, (int) entry);
+            }
+        }
+        return table;
+    }
+
+    private static void insert(AtomicLongArray table, long digits, int id) {
+        int mask = table.length() - 1;
+        int i = indexOf(digits, mask);
+        while (table.get(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        table.set(i, (digits + 1) << 32 | id);
+    }
+}
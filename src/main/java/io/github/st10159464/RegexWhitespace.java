@@ -0,0 +1,14 @@
+package io.github.st10159464;
+
+// The characters matched by the regex class \s, shared by the message hash and the
+// content index. The hash's word split is part of every stored hash, so this set must
+// not change; a search tokenizer that wants other separators needs its own rule.
+public final class RegexWhitespace {
+
+    private RegexWhitespace() {
+    }
+
+    public static boolean matches(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.st10159464;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// A shard in another JVM, reached over loopback (or any network) through the JSON API of
+// its ChatHttpServer; start one with "MainApp --http <port>". Messages that come back are
+// rebuilt locally, so their hash is computed again here and their sequence is the remote
+// store's, which keeps report cursors valid on the remote side.
+//
+// Thread-safe: the JDK HttpClient pools keep-alive connections to the shard.
+public class RemoteShard implements MessageShard {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final String host;
+    private final int port;
+    private final HttpClient client;
+
+    public RemoteShard(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .executor(ChatHttpServer.newRequestExecutor())
+                .build();
+    }
+
+    // A shard on this machine
+    public static RemoteShard loopback(int port) {
+        return new RemoteShard("127.0.0.1", port);
+    }
+
+    @Override
+    public String getName() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public Message send(String recipientCell, String content) {
+        JsonObject body = new JsonObject();
+        body.addProperty("recipient", recipientCell);
+        body.addProperty("content", content);
+        HttpResponse<String> response = call("POST", "/messages", null, body.toString());
+        if (response.statusCode() == 400) {
+            throw new IllegalArgumentException(errorOf(response));
+        }
+        return toMessage(expect(response, 201));
+    }
+
+    @Override
+    public Message findByHash(String hash) {
+        HttpResponse<String> response = call("GET", "/messages/" + hash, null, null);
+        return response.statusCode() == 404 ? null : toMessage(expect(response, 200));
+    }
+
+    @Override
+    public List<Message> findByRecipient(String recipientCell) {
+        return toMessages(expect(call("GET", "/recipients/" + recipientCell + "/messages", null, null), 200));
+    }
+
+    @Override
+    public List<Message> search(String query) {
+        return toMessages(expect(call("GET", "/search", "q=" + encode(query), null), 200));
+    }
+
+    @Override
+    public boolean deleteByHash(String hash) {
+        HttpResponse<String> response = call("DELETE", "/messages/" + hash, null, null);
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        expect(response, 200);
+        return true;
+    }
+
+    // The server caps limit at 1000
+    @Override
+    public MessagePage reportPage(long cursor, int limit) {
+        JsonObject json = expect(call("GET", "/report", "cursor=" + cursor + "&limit=" + Math.min(limit, 1000), null), 200);
+        return new MessagePage(toMessages(json), json.get("nextCursor").getAsLong(), json.get("hasMore").getAsBoolean());
+    }
+
+    @Override
+    public int messageCount() {
+        return expect(call("GET", "/report", "cursor=0&limit=1", null), 200).get("total").getAsInt();
+    }
+
+    @Override
+    public void close() {
+        // HttpClient has no close() before JDK 21; its threads are daemons and its idle
+        // connections time out on their own
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    private HttpResponse<String> call(String method, String path, String rawQuery, String body) {
+        try {
+            // the multi-argument constructor quotes characters that are not legal in a path
+            URI uri = new URI("http", null, host, port, path, null, null);
+            if (rawQuery != null) {
+                uri = URI.create(uri.toASCIIString() + "?" + rawQuery);
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Cannot address " + path + " on shard " + getName(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shard " + getName() + " did not answer " + method + " " + path, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted calling shard " + getName(), e));
+        }
+    }
+
+    private JsonObject expect(HttpResponse<String> response, int status) {
+        if (response.statusCode() != status) {
+            throw new UncheckedIOException(new IOException("Shard " + getName() + " answered "
+                    + response.statusCode() + ": " + errorOf(response)));
+        }
+        try {
+            return JsonParser.parseString(response.body()).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new UncheckedIOException(new IOException("Shard " + getName() + " sent malformed JSON", e));
+        }
+    }
+
+    private static String errorOf(HttpResponse<String> response) {
+        try {
+            JsonElement error = JsonParser.parseString(response.body()).getAsJsonObject().get("error");
+            return error == null ? response.body() : error.getAsString();
+        } catch (JsonParseException | IllegalStateException e) {
+            return response.body();
+        }
+    }
+
+    private static List<Message> toMessages(JsonObject json) {
+        JsonArray array = json.getAsJsonArray("messages");
+        List<Message> messages = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            messages.add(toMessage(element.getAsJsonObject()));
+        }
+        return messages;
+    }
+
+    // Keeps the server's hash: hashing again here would use this JVM's hasher, which may differ
+    private static Message toMessage(JsonObject json) {
+        Message m = new Message(stringOf(json, "recipient"), stringOf(json, "content"), stringOf(json, "hash"));
+        m.assignSequence(json.get("sequence").getAsLong());
+        return m;
+    }
+
+    private static String stringOf(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
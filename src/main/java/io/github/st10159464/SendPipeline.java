@@ -0,0 +1,235 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Asynchronous send path: messages go into bounded ring buffers (ArrayBlockingQueue), worker
+// threads drain them in batches, group each batch by recipient and hand every group to a
+// DeliveryChannel in one call. Once the channel accepts a group its messages are added to
+// the MessageStore, and the future of each message completes with it.
+//
+// Each worker owns one queue, and a recipient's messages always go to the same queue, so
+// they are delivered in the order they were submitted. When a queue is full, submit blocks
+// (backpressure) and trySubmit gives up after its timeout.
+//
+// Timed under "pipeline.deliver" per channel call when Metrics is enabled, with counters
+// "pipeline.delivered", "pipeline.failed" and "pipeline.rejected" (a full queue). Invalid
+// messages are rejected by ChatService.validMessage, the same check send uses, and counted
+// under "chat.send.rejected".
+public class SendPipeline implements AutoCloseable {
+    public static final int DEFAULT_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    // How often a blocked submit looks again at whether the pipeline was closed
+    private static final long CLOSED_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Queued by close() to stop a worker
+    private static final Pending STOP = new Pending(null);
+
+    private static final Metrics.Timer DELIVER = Metrics.timer("pipeline.deliver");
+    private static final Metrics.Counter DELIVERED = Metrics.counter("pipeline.delivered");
+    private static final Metrics.Counter FAILED = Metrics.counter("pipeline.failed");
+    private static final Metrics.Counter REJECTED = Metrics.counter("pipeline.rejected");
+
+    private final MessageStore store;
+    private final DeliveryChannel channel;
+    private final int maxBatch;
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public SendPipeline(MessageStore store, DeliveryChannel channel) {
+        this(store, channel, DEFAULT_WORKERS, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    // capacity is split evenly over the workers' queues
+    public SendPipeline(MessageStore store, DeliveryChannel channel, int workers, int capacity, int maxBatch) {
+        if (workers < 1 || capacity < workers || maxBatch < 1) {
+            throw new IllegalArgumentException("workers and maxBatch must be >= 1 and capacity >= workers");
+        }
+        this.store = store;
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(capacity / workers);
+            Thread worker = new Thread(() -> run(queue), "send-pipeline-" + i);
+            worker.setDaemon(true);
+            queues.add(queue);
+            this.workers.add(worker);
+        }
+        for (Thread worker : this.workers) {
+            worker.start();
+        }
+    }
+
+    // Queues a message, waiting while its queue is full. Invalid messages are rejected here
+    // with IllegalArgumentException, as ChatService.send does; the future fails if delivery does.
+    public CompletableFuture<Message> submit(String recipientCell, String content) {
+        return enqueue(ChatService.validMessage(recipientCell, content), Long.MAX_VALUE);
+    }
+
+    // Like submit, but the future fails with RejectedExecutionException if the queue is still
+    // full after the timeout
+    public CompletableFuture<Message> trySubmit(String recipientCell, String content, long timeout, TimeUnit unit) {
+        return enqueue(ChatService.validMessage(recipientCell, content), unit.toNanos(timeout));
+    }
+
+    // Messages waiting to be delivered
+    public int backlog() {
+        int n = 0;
+        for (BlockingQueue<Pending> queue : queues) {
+            n += queue.size();
+        }
+        return n;
+    }
+
+    // Stops accepting messages, delivers whatever is queued and waits for the workers. Only
+    // the first call does this; any other, even a concurrent one, returns at once, so each
+    // worker gets exactly one stop marker.
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        for (BlockingQueue<Pending> queue : queues) {
+            try {
+                queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // a submit that raced with close() may have queued after the marker
+        for (BlockingQueue<Pending> queue : queues) {
+            Pending late;
+            while ((late = queue.poll()) != null) {
+                late.fail(new RejectedExecutionException("Send pipeline is closed"));
+            }
+        }
+    }
+
+    private CompletableFuture<Message> enqueue(Message message, long timeoutNanos) {
+        Pending pending = new Pending(message);
+        BlockingQueue<Pending> queue = queueFor(message.getRecipientCell());
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            while (true) {
+                if (closed.get()) {
+                    pending.fail(new RejectedExecutionException("Send pipeline is closed"));
+                    return pending.done;
+                }
+                long wait = Math.min(CLOSED_CHECK_NANOS, deadline - System.nanoTime());
+                if (wait <= 0) {
+                    REJECTED.increment();
+                    pending.fail(new RejectedExecutionException("Send queue is full"));
+                    return pending.done;
+                }
+                if (queue.offer(pending, wait, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.fail(new RejectedExecutionException("Interrupted while the send queue was full", e));
+            return pending.done;
+        }
+        // queued behind the stop marker after close() drained this queue: nobody will take it
+        if (closed.get() && queue.remove(pending)) {
+            pending.fail(new RejectedExecutionException("Send pipeline is closed"));
+        }
+        return pending.done;
+    }
+
+    private BlockingQueue<Pending> queueFor(String recipientCell) {
+        int h = recipientCell.hashCode();
+        return queues.get(Math.floorMod(h ^ (h >>> 16), queues.size()));
+    }
+
+    private void run(BlockingQueue<Pending> queue) {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            queue.drainTo(batch, maxBatch - batch.size());
+            // anything drained after the marker was queued before close() returned; deliver it too
+            stopping |= batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // One channel call per recipient, in the order each recipient's messages were queued
+    private void deliver(List<Pending> batch) {
+        Map<String, List<Pending>> byRecipient = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            byRecipient.computeIfAbsent(p.message.getRecipientCell(), k -> new ArrayList<>()).add(p);
+        }
+        for (Map.Entry<String, List<Pending>> group : byRecipient.entrySet()) {
+            List<Message> messages = new ArrayList<>(group.getValue().size());
+            for (Pending p : group.getValue()) {
+                messages.add(p.message);
+            }
+            long start = DELIVER.start();
+            try {
+                channel.deliver(group.getKey(), messages);
+            } catch (IOException | RuntimeException e) {
+                fail(group.getValue(), e);
+                continue;
+            } finally {
+                DELIVER.stop(start);
+            }
+            try {
+                store.addAll(messages);
+            } catch (RuntimeException e) {
+                // delivered but not recorded; the worker lives on for the next batch
+                fail(group.getValue(), e);
+                continue;
+            }
+            DELIVERED.add(messages.size());
+            for (Pending p : group.getValue()) {
+                p.done.complete(p.message);
+            }
+        }
+    }
+
+    private static void fail(List<Pending> group, Throwable cause) {
+        FAILED.add(group.size());
+        for (Pending p : group) {
+            p.fail(cause);
+        }
+    }
+
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<Message> done = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+
+        void fail(Throwable cause) {
+            done.completeExceptionally(cause);
+        }
+    }
+}
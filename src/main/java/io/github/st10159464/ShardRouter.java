@@ -0,0 +1,306 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// Spreads sent messages over several MessageShards by a consistent hash of the recipient cell,
+// so no single JVM has to hold them all.
+//
+//   send, findByRecipient            routed to the shard that owns the recipient
+//   deleteByHash(cell, hash)         routed the same way
+//   deleteByHash(hash), findByHash   the hash does not say who the recipient was, so these
+//                                    ask every shard at once
+//   search, messageCount, reports    scattered to every shard in parallel and gathered
+//
+// Reports list the shards in the order they were added, each in its own send order; there is
+// no global send order across JVMs. A report cursor packs the shard's position (top 16 bits)
+// with that shard's own cursor (low 48 bits).
+//
+// addShard puts a new shard on the ring and moves to it the messages of the recipients it now
+// owns, about 1/n of them; nothing moves between the existing shards. Rebalancing holds a
+// write lock, so requests wait for it rather than see a recipient half moved.
+public class ShardRouter implements AutoCloseable {
+    // Messages fetched per page while reporting or rebalancing
+    static final int PAGE_SIZE = 500;
+    private static final int SHARD_BITS = 16;
+    private static final long CURSOR_MASK = (1L << (64 - SHARD_BITS)) - 1;
+
+    private final ConsistentHashRing<MessageShard> ring = new ConsistentHashRing<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService scatter = ChatHttpServer.newRequestExecutor();
+
+    public ShardRouter(List<? extends MessageShard> shards) {
+        for (MessageShard shard : shards) {
+            ring.add(shard.getName(), shard);
+        }
+    }
+
+    // The shard that owns a recipient's messages
+    public MessageShard ownerOf(String recipientCell) {
+        lock.readLock().lock();
+        try {
+            return ring.ownerOf(recipientCell);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Shards in the order they were added
+    public List<MessageShard> getShards() {
+        lock.readLock().lock();
+        try {
+            return ring.nodes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Message send(String recipientCell, String content) {
+        return routed(recipientCell, shard -> shard.send(recipientCell, content));
+    }
+
+    public List<Message> findByRecipient(String recipientCell) {
+        return routed(recipientCell, shard -> shard.findByRecipient(recipientCell));
+    }
+
+    // Deletes on the recipient's shard only; use when the recipient is known
+    public boolean deleteByHash(String recipientCell, String hash) {
+        return routed(recipientCell, shard -> shard.deleteByHash(hash));
+    }
+
+    // Deletes on whichever shards have the hash
+    public boolean deleteByHash(String hash) {
+        boolean deleted = false;
+        for (boolean d : scattered(shard -> shard.deleteByHash(hash))) {
+            deleted |= d;
+        }
+        return deleted;
+    }
+
+    // First match in shard order, or null
+    public Message findByHash(String hash) {
+        for (Message m : scattered(shard -> shard.findByHash(hash))) {
+            if (m != null) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    // Keyword search on every shard; results in shard order, each in send order
+    public List<Message> search(String query) {
+        List<Message> found = new ArrayList<>();
+        for (List<Message> part : scattered(shard -> shard.search(query))) {
+            found.addAll(part);
+        }
+        return found;
+    }
+
+    public int messageCount() {
+        int total = 0;
+        for (int count : scattered(MessageShard::messageCount)) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Up to limit messages after cursor (0 for the first page), moving on to the next
+    // shard when one runs out
+    public MessagePage reportPage(long cursor, int limit) {
+        if (cursor < 0 || limit < 1) {
+            throw new IllegalArgumentException("cursor must be >= 0 and limit >= 1");
+        }
+        lock.readLock().lock();
+        try {
+            List<MessageShard> shards = ring.nodes();
+            int index = (int) (cursor >>> (64 - SHARD_BITS));
+            long shardCursor = cursor & CURSOR_MASK;
+            List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+            while (index < shards.size()) {
+                MessagePage part = shards.get(index).reportPage(shardCursor, limit - page.size());
+                page.addAll(part.getMessages());
+                shardCursor = part.getNextCursor();
+                if (part.hasMore()) {
+                    if (page.size() >= limit) {
+                        return new MessagePage(page, cursorOf(index, shardCursor), true);
+                    }
+                    continue;
+                }
+                index++;
+                shardCursor = 0;
+                if (page.size() >= limit) {
+                    // only another round trip would tell whether later shards are empty
+                    return new MessagePage(page, cursorOf(index, 0), index < shards.size());
+                }
+            }
+            return new MessagePage(page, cursorOf(index, 0), false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Streams the report of every shard: the total is gathered from all shards at once and
+    // the first page of each is fetched in parallel; after that each shard's next page is
+    // fetched while the current one is being written. out is flushed but not closed.
+    public void writeReport(Writer out) throws IOException {
+        lock.readLock().lock();
+        try {
+            List<MessageShard> shards = ring.nodes();
+            List<CompletableFuture<Integer>> counts = new ArrayList<>();
+            List<CompletableFuture<MessagePage>> firstPages = new ArrayList<>();
+            for (MessageShard shard : shards) {
+                counts.add(CompletableFuture.supplyAsync(shard::messageCount, scatter));
+                firstPages.add(CompletableFuture.supplyAsync(() -> shard.reportPage(0, PAGE_SIZE), scatter));
+            }
+            int total = 0;
+            for (CompletableFuture<Integer> count : counts) {
+                total += join(count);
+            }
+            out.write("Total messages sent: " + total + "\n");
+            for (int i = 0; i < shards.size(); i++) {
+                MessageShard shard = shards.get(i);
+                MessagePage page = join(firstPages.get(i));
+                while (true) {
+                    CompletableFuture<MessagePage> next = null;
+                    if (page.hasMore()) {
+                        long cursor = page.getNextCursor();
+                        next = CompletableFuture.supplyAsync(() -> shard.reportPage(cursor, PAGE_SIZE), scatter);
+                    }
+                    for (Message m : page.getMessages()) {
+                        ChatService.writeReportLine(m, out);
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    page = join(next);
+                }
+            }
+            out.flush();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds a shard and moves to it the messages of every recipient it now owns; returns how
+    // many messages moved. Each message is copied before the originals with its hash are
+    // deleted, so a failure part way leaves duplicates rather than losing messages.
+    public int addShard(MessageShard shard) {
+        lock.writeLock().lock();
+        try {
+            List<MessageShard> existing = ring.nodes();
+            ring.add(shard.getName(), shard);
+            List<CompletableFuture<Integer>> moves = new ArrayList<>();
+            for (MessageShard from : existing) {
+                moves.add(CompletableFuture.supplyAsync(() -> moveOwned(from, shard), scatter));
+            }
+            int moved = 0;
+            for (CompletableFuture<Integer> move : moves) {
+                moved += join(move);
+            }
+            return moved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Copies from's messages that the ring now gives to "to", then deletes them from "from".
+    // Deleting waits until the walk is over, because deleting a hash removes every message
+    // with it, including identical ones on pages not copied yet.
+    private int moveOwned(MessageShard from, MessageShard to) {
+        Set<String> hashes = new HashSet<>();
+        int moved = 0;
+        long cursor = 0;
+        MessagePage page;
+        do {
+            page = from.reportPage(cursor, PAGE_SIZE);
+            for (Message m : page.getMessages()) {
+                if (ring.ownerOf(m.getRecipientCell()) == to) {
+                    to.send(m.getRecipientCell(), m.getMessageContent());
+                    hashes.add(m.getMessageHash());
+                    moved++;
+                }
+            }
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+        for (String hash : hashes) {
+            from.deleteByHash(hash);
+        }
+        return moved;
+    }
+
+    // Closes every shard and the scatter threads
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (MessageShard shard : ring.nodes()) {
+                shard.close();
+            }
+            scatter.shutdown();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T routed(String recipientCell, Function<MessageShard, T> call) {
+        lock.readLock().lock();
+        try {
+            MessageShard owner = ring.ownerOf(recipientCell);
+            if (owner == null) {
+                throw new IllegalStateException("No shards to route to");
+            }
+            return call.apply(owner);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Runs call on every shard in parallel; results in shard order
+    private <T> List<T> scattered(Function<MessageShard, T> call) {
+        lock.readLock().lock();
+        try {
+            List<CompletableFuture<T>> futures = new ArrayList<>();
+            for (MessageShard shard : ring.nodes()) {
+                futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), scatter));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(join(future));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long cursorOf(int shardIndex, long shardCursor) {
+        return ((long) shardIndex << (64 - SHARD_BITS)) | (shardCursor & CURSOR_MASK);
+    }
+
+    // Rethrows what the shard threw, rather than a CompletionException around it
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.st10159464;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Username-keyed directory of registered users. Lookups are O(1) whatever the number of users,
+// and passwords are kept only as salted PBKDF2 hashes.
+//
+// Login time is one map lookup plus one PBKDF2 run, so it is bounded by the hashing cost
+// (iterations), not by how many users are registered. Unknown usernames run a hash as well,
+// so a failed login takes the same time whether or not the user exists.
+public class UserDirectory {
+    public static final int DEFAULT_ITERATIONS = 10_000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final Map<String, UserRecord> users = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private volatile int iterations;
+    // Hashed against when the username is unknown, to keep failed logins constant-time
+    private volatile UserRecord dummy;
+
+    public UserDirectory() {
+        this(Integer.getInteger("chatapp.password.iterations", DEFAULT_ITERATIONS));
+    }
+
+    // iterations sets the hashing cost for registrations; each user keeps the cost they were stored with
+    public UserDirectory(int iterations) {
+        setIterations(iterations);
+    }
+
+    // Changes the hashing cost for users registered from now on
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least 1");
+        }
+        byte[] salt = newSalt();
+        this.dummy = new UserRecord(salt, iterations, hash(new char[0], salt, iterations), null);
+        this.iterations = iterations;
+    }
+
+    // Stored user data: never the plain password
+    private static final class UserRecord {
+        final byte[] salt;
+        final int iterations;
+        final byte[] passwordHash;
+        final String cellNumber;
+
+        UserRecord(byte[] salt, int iterations, byte[] passwordHash, String cellNumber) {
+            this.salt = salt;
+            this.iterations = iterations;
+            this.passwordHash = passwordHash;
+            this.cellNumber = cellNumber;
+        }
+    }
+
+    // Adds a user; returns false if the username is already taken
+    public boolean register(String username, String password, String cellNumber) {
+        if (users.containsKey(username)) {
+            return false;
+        }
+        int cost = iterations;
+        byte[] salt = newSalt();
+        UserRecord record = new UserRecord(salt, cost, hash(password.toCharArray(), salt, cost), cellNumber);
+        return users.putIfAbsent(username, record) == null;
+    }
+
+    // True if the username exists and the password matches its stored hash
+    public boolean authenticate(String username, String password) {
+        if (username == null || password == null) {
+            return false;
+        }
+        UserRecord record = users.get(username);
+        UserRecord against = record != null ? record : dummy;
+        byte[] candidate = hash(password.toCharArray(), against.salt, against.iterations);
+        // isEqual compares every byte, so the time does not depend on where a mismatch is
+        return MessageDigest.isEqual(candidate, against.passwordHash) && record != null;
+    }
+
+    public boolean contains(String username) {
+        return users.containsKey(username);
+    }
+
+    public String getCellNumber(String username) {
+        UserRecord record = users.get(username);
+        return record == null ? null : record.cellNumber;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static byte[] hash(char[] password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link BinaryMessageFile}: lookups by ID and conversion to and from JSON.
+ */
+public class BinaryMessageFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameMessage(Message expected, Message actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getRecipient(), actual.getRecipient());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getIssuedAt(), actual.getIssuedAt());
+    }
+
+    @Test
+    public void testFindByIdDecodesOnlyMatchingRecord() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("messages.bin");
+        List<Message> messages = new ArrayList<>();
+        for (int i = 999; i >= 0; i--) {
+            messages.add(new Message(String.format("%010d", i), "Message " + i, "0712345678"));
+        }
+        assertEquals(1000, BinaryMessageFile.write(file, messages));
+
+        try (BinaryMessageFile binary = BinaryMessageFile.open(file)) {
+            assertEquals(1000, binary.size());
+            assertEquals("Message 421", binary.findById("0000000421").getContent());
+            assertEquals("Message 0", binary.findById("0000000000").getContent());
+            assertEquals("Message 999", binary.findById("0000000999").getContent());
+            assertNull(binary.findById("0000001000"));
+            assertNull(binary.findById("42"));
+            // file order is kept for full reads
+            assertEquals("0000000999", binary.readAll().get(0).getId());
+        }
+    }
+
+    @Test
+    public void testUnicodeAndNullFieldsRoundTrip() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("messages.bin");
+        Message unicode = new Message("0000000001", "Sawubona é世😀", "0712345678", 1_735_689_600_000L);
+        Message noRecipient = new Message("0000000002", "No recipient", null);
+        BinaryMessageFile.write(file, Arrays.asList(unicode, noRecipient));
+
+        try (BinaryMessageFile binary = BinaryMessageFile.open(file)) {
+            assertSameMessage(unicode, binary.findById("0000000001"));
+            assertSameMessage(noRecipient, binary.findById("0000000002"));
+        }
+    }
+
+    @Test
+    public void testJsonConversionRoundTrip() throws IOException {
+        Path json = folder.getRoot().toPath().resolve("storedMessages.json");
+        Path binary = folder.getRoot().toPath().resolve("storedMessages.bin");
+        Path back = folder.getRoot().toPath().resolve("back.json");
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            messages.add(new Message(String.format("%010d", i), "Stored \"quoted\" message " + i, "0712345678"));
+        }
+        new StoredMessageLog(json).rewrite(messages);
+
+        assertEquals(100, BinaryMessageFile.fromJson(json, binary));
+        assertTrue(Files.size(binary) < Files.size(json));
+        assertEquals(100, BinaryMessageFile.toJson(binary, back));
+
+        List<Message> loaded = new StoredMessageLog(back).load();
+        assertEquals(100, loaded.size());
+        for (int i = 0; i < 100; i++) {
+            assertSameMessage(messages.get(i), loaded.get(i));
+        }
+    }
+
+    // fromJson takes only the snapshot, so the log must still replay after converting back
+    @Test
+    public void testJsonConversionInPlaceKeepsLog() throws IOException {
+        Path json = folder.getRoot().toPath().resolve("storedMessages.json");
+        Path binary = folder.getRoot().toPath().resolve("storedMessages.bin");
+        StoredMessageLog log = new StoredMessageLog(json);
+        log.rewrite(Arrays.asList(new Message("0000000001", "In the snapshot", "0712345678")));
+        log.append(new Message("0000000002", "In the log", "0712345678"));
+        log.close();
+
+        BinaryMessageFile.fromJson(json, binary);
+        BinaryMessageFile.toJson(binary, json);
+
+        List<Message> loaded = new StoredMessageLog(json).load();
+        assertEquals(2, loaded.size());
+        assertEquals("In the log", loaded.get(1).getContent());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNonBinaryFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("storedMessages.json");
+        Files.write(file, "[]".getBytes());
+        BinaryMessageFile.open(file);
+    }
+}
@@ -0,0 +1,187 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the headless {@link ChatSession}.
+ */
+public class ChatSessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private StoredMessageLog log;
+    private ChatSession session;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.getRoot().toPath().resolve("storedMessages.json");
+        log = new StoredMessageLog(file);
+        session = new ChatSession("+27718693002", 3, log, 10);
+        session.getStoredLoaded().get(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        log.close();
+    }
+
+    @Test
+    public void testSendSearchAndDelete() {
+        Message first = session.send("Did you get the cake?");
+        Message second = session.send("It is dinner time!");
+        assertSame(first, session.findById(first.getId()));
+        assertEquals(Arrays.asList(first, second), session.findByRecipient("+27718693002"));
+        assertEquals(Arrays.asList(second), session.search("dinner"));
+        assertSame(first, session.longest());
+
+        assertTrue(session.deleteByHash(first.createMessageHash()));
+        assertFalse(session.deleteByHash(first.createMessageHash()));
+        assertNull(session.findById(first.getId()));
+        assertSame(second, session.longest());
+        assertTrue(session.reportPage(0, 10).contains("It is dinner time!"));
+    }
+
+    @Test
+    public void testInvalidContentAndLimit() {
+        try {
+            session.send("   ");
+            fail("blank message accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid message.", e.getMessage());
+        }
+        session.send("one");
+        session.disregard("two");
+        session.send("three");
+        assertTrue(session.canSend());
+        session.send("four");
+        assertFalse(session.canSend());
+        try {
+            session.send("five");
+            fail("limit not enforced");
+        } catch (IllegalStateException e) {
+            assertEquals("Message limit reached.", e.getMessage());
+        }
+        assertEquals(1, session.getDisregardedMessages().size());
+    }
+
+    @Test
+    public void testSendAllChecksEachRecord() {
+        ChatSession.BulkResult result = session.sendAll(
+                Arrays.asList("0712345678", "+2771869300", "0798765432", null, "+27718693002", "0722222222", "0733333333"),
+                Arrays.asList("Did you get the cake?", "wrong format", "  ", "no recipient", "It is dinner time!",
+                        "Ok", "over limit"));
+        assertEquals(3, result.getSent().size());
+        assertEquals("It is dinner time!", result.getSent().get(1).getContent());
+        // the login format is accepted too, like the session's own number
+        assertEquals("+27718693002", result.getSent().get(1).getRecipient());
+        assertEquals(Arrays.asList(2, 3, 4, 7), new ArrayList<>(result.getRejected().keySet()));
+        assertEquals("Recipient must start with 07 and be no more than 10 characters, or be + and 11 digits.",
+                result.getRejected().get(2));
+        assertEquals("Message limit reached.", result.getRejected().get(7));
+        assertEquals(result.getSent(), session.getSentMessages());
+        Message first = result.getSent().get(0);
+        assertTrue(session.deleteByHash(first.createMessageHash()));
+        assertEquals(Arrays.asList(result.getSent().get(1)), session.search("dinner"));
+    }
+
+    @Test
+    public void testSendAllFromFileKeysRejectionsByLine() throws IOException {
+        Path lines = folder.newFile("import.csv").toPath();
+        Files.write(lines, Arrays.asList("0712345678,Hi, Mike", "", "oops"));
+        ChatSession.BulkResult result = session.sendAllFromFile(lines);
+        assertEquals("Hi, Mike", result.getSent().get(0).getContent());
+        assertEquals("0712345678", result.getSent().get(0).getRecipient());
+        assertEquals(Arrays.asList(3), new ArrayList<>(result.getRejected().keySet()));
+    }
+
+    @Test
+    public void testFindByIdCoversEveryList() throws IOException {
+        Message sent = session.send("Sent one");
+        Message dropped = session.disregard("Dropped one");
+        Message stored = session.store("Stored one");
+        assertSame(dropped, session.findById(dropped.getId()));
+        assertEquals(MessageIndex.Status.STORED, session.find(stored.getId()).getStatus());
+        assertEquals(MessageIndex.Status.SENT, session.find(sent.getId()).getStatus());
+        assertSame(stored, session.latest(1).get(0).getMessage());
+        assertEquals(3, session.between(0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testEvictedSentMessagesAnswerEveryQuery() throws IOException {
+        try (ChatSession small = new ChatSession("+27718693002", 100, log, 10, 4)) {
+            List<Message> sent = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sent.add(small.send("Message " + i + (i == 1 ? " with dinner plans" : "")));
+            }
+            Message old = sent.get(1);
+            assertEquals(10, small.getSentMessages().size());
+            assertEquals(old.getId(), small.findById(old.getId()).getId());
+            assertEquals(MessageIndex.Status.SENT, small.find(old.getId()).getStatus());
+            assertEquals(1, small.search("dinner").size());
+            assertEquals(10, small.search("message OR dinner").size());
+            assertEquals(old.getId(), small.longest().getId());
+            assertEquals(10, small.findByRecipient("+27718693002").size());
+            assertEquals(10, small.latest(20).size());
+            assertEquals(sent.get(9), small.latest(20).get(0).getMessage());
+            assertEquals(sent.get(0).getId(), small.latest(20).get(9).getMessage().getId());
+            assertEquals(10, small.between(0, Long.MAX_VALUE).size());
+            assertTrue(small.reportPage(0, 3).contains("Message 0\n"));
+
+            assertTrue(small.deleteByHash(old.createMessageHash()));
+            assertFalse(small.deleteByHash(old.createMessageHash()));
+            assertNull(small.findById(old.getId()));
+            assertTrue(small.search("dinner").isEmpty());
+            assertEquals(9, small.getSentMessages().size());
+        }
+    }
+
+    @Test
+    public void testEvictedDisregardedMessagesAreStillFound() throws IOException {
+        try (ChatSession small = new ChatSession("+27718693002", 100, log, 10, 4)) {
+            List<Message> dropped = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                dropped.add(small.disregard("Dropped " + i));
+            }
+            Message sent = small.send("Sent after them");
+            assertEquals(10, small.getDisregardedMessages().size());
+            assertEquals("Dropped 0", small.getDisregardedMessages().get(0).getContent());
+            assertEquals(MessageIndex.Status.DISREGARDED, small.find(dropped.get(0).getId()).getStatus());
+            List<MessageIndex.Entry> latest = small.latest(20);
+            assertEquals(11, latest.size());
+            assertEquals(sent, latest.get(0).getMessage());
+            assertEquals(dropped.get(0).getId(), latest.get(10).getMessage().getId());
+            assertEquals(11, small.between(0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    public void testStoredMessagesArePersisted() throws Exception {
+        Message stored = session.store("Keep this one");
+        assertEquals(1, session.getStoredMessages().size());
+        try (StoredMessageLog reopenedLog = new StoredMessageLog(file)) {
+            ChatSession reopened = new ChatSession("+27718693002", 3, reopenedLog, 10);
+            assertEquals(Integer.valueOf(1), reopened.getStoredLoaded().get(10, TimeUnit.SECONDS));
+            assertEquals(stored.getId(), reopened.getStoredMessages().get(0).getId());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mycompany.progassignmentpart3;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-call checks of the part 3 menus: {@link Message#createMessageHash} on a
+ * fresh message (the hash is cached after the first call) and the
+ * {@link LoginClass} password and cell number checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    private final String[] contents = new String[1024];
+    private int counter;
+
+    public HotPathBenchmark() {
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = "Hi Mike, can you join us for dinner tonight? " + i;
+        }
+    }
+
+    @Benchmark
+    public String createMessageHash() {
+        return new Message("0012345678", contents[counter++ & (contents.length - 1)], "+27838968976").createMessageHash();
+    }
+
+    @Benchmark
+    public boolean checkPasswordComplexity_valid() {
+        return LoginClass.checkPasswordComplexity("Ch&&sec@ke99!");
+    }
+
+    @Benchmark
+    public boolean checkPasswordComplexity_invalid() {
+        return LoginClass.checkPasswordComplexity("password");
+    }
+
+    @Benchmark
+    public boolean checkCellphoneNumber() {
+        return LoginClass.checkCellphoneNumber("+27838968976");
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.progassignmentpart3;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link MessageIdGenerator} against the old
+ * {@code String.format("%010d", random.nextInt(...))} on a shared {@link Random},
+ * with 8 threads issuing IDs at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class MessageIdGeneratorBenchmark {
+
+    private final Random random = new Random();
+    private final MessageIdGenerator ids = new MessageIdGenerator(0);
+
+    @Benchmark
+    public String randomFormatted() {
+        return String.format("%010d", random.nextInt(1_000_000_000));
+    }
+
+    @Benchmark
+    public String generator() {
+        return ids.nextId();
+    }
+}
@@ -0,0 +1,106 @@
+package com.mycompany.progassignmentpart3;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MessageIdGenerator}.
+ */
+public class MessageIdGeneratorTest {
+
+    @Test
+    public void testIdsPassCheckMessageIdAndCarryTheirTime() {
+        long before = System.currentTimeMillis();
+        String id = new MessageIdGenerator(3).nextId();
+        assertEquals(10, id.length());
+        assertTrue(id.matches("[0-9A-Z]{10}"));
+        assertTrue(new Message(id, "Hi", "0712345678").checkMessageID());
+        long issued = MessageIdGenerator.timestampOf(id);
+        assertTrue(issued >= before && issued <= System.currentTimeMillis());
+        assertEquals(3, MessageIdGenerator.nodeOf(id));
+        assertEquals(-1, MessageIdGenerator.timestampOf("0123456789a"));
+        assertEquals(-1, MessageIdGenerator.timestampOf("012345678#"));
+    }
+
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        long max = (1L << (41 + MessageIdGenerator.NODE_BITS + MessageIdGenerator.SEQUENCE_BITS)) - 1;
+        for (long v : new long[] {0, 1, 35, 36, 123_456_789_012L, max}) {
+            assertEquals(v, MessageIdGenerator.decode(MessageIdGenerator.encode(v)));
+        }
+        assertEquals("0000000000", MessageIdGenerator.encode(0));
+    }
+
+    @Test
+    public void testBurstsAndBackwardClockStayMonotonic() {
+        AtomicLong clock = new AtomicLong(MessageIdGenerator.EPOCH_MILLIS + 1_000_000);
+        MessageIdGenerator ids = new MessageIdGenerator(0, clock::get);
+        String previous = ids.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.addAndGet(-60_000); // NTP steps the clock back a minute
+            }
+            String id = ids.nextId();
+            assertTrue(previous + " < " + id, id.compareTo(previous) > 0);
+            previous = id;
+        }
+        // 10,000 IDs in a frozen millisecond ran about 156 ms ahead of it
+        assertTrue(MessageIdGenerator.timestampOf(previous) > clock.get());
+    }
+
+    @Test
+    public void testUniqueAndOrderedAcrossThreads() throws InterruptedException {
+        MessageIdGenerator ids = new MessageIdGenerator(0);
+        int threads = 8;
+        int perThread = 50_000;
+        List<List<String>> issued = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> mine = new ArrayList<>(perThread);
+            issued.add(mine);
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    mine.add(ids.nextId());
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Set<String> all = new HashSet<>();
+        for (List<String> mine : issued) {
+            for (int i = 0; i < mine.size(); i++) {
+                assertTrue("duplicate " + mine.get(i), all.add(mine.get(i)));
+                // each thread sees its own IDs increase
+                assertTrue(i == 0 || mine.get(i).compareTo(mine.get(i - 1)) > 0);
+            }
+        }
+        assertEquals(threads * perThread, all.size());
+    }
+
+    @Test
+    public void testNodesNeverCollide() {
+        AtomicLong clock = new AtomicLong(MessageIdGenerator.EPOCH_MILLIS + 42);
+        Set<String> all = new HashSet<>();
+        for (int node = 0; node <= MessageIdGenerator.MAX_NODE; node++) {
+            MessageIdGenerator ids = new MessageIdGenerator(node, clock::get);
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(all.add(ids.nextId()));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNodeOutOfRange() {
+        new MessageIdGenerator(MessageIdGenerator.MAX_NODE + 1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.mycompany.progassignmentpart3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup by ID and "last 20 messages" through {@link MessageIndex}, against the
+ * scan and sort over the session's lists that they replace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private final List<Message> sent = new ArrayList<>();
+    private final List<Message> stored = new ArrayList<>();
+    private final List<Message> disregarded = new ArrayList<>();
+    private final MessageIndex index = new MessageIndex();
+    private String lookupId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MessageIdGenerator ids = new MessageIdGenerator(0);
+        for (int i = 0; i < size; i++) {
+            Message m = new Message(ids.nextId(), "Message number " + i, "0712345678");
+            MessageIndex.Status status = MessageIndex.Status.values()[i % 3];
+            (status == MessageIndex.Status.SENT ? sent : status == MessageIndex.Status.STORED ? stored : disregarded).add(m);
+            index.add(m, status);
+        }
+        lookupId = sent.get(sent.size() / 2).getId();
+    }
+
+    @Benchmark
+    public Message findById_scan() {
+        return sent.stream().filter(m -> m.getId().equals(lookupId)).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public MessageIndex.Entry findById_index() {
+        return index.findById(lookupId);
+    }
+
+    @Benchmark
+    public List<Message> latest20_sort() {
+        List<Message> all = new ArrayList<>(sent);
+        all.addAll(stored);
+        all.addAll(disregarded);
+        return all.stream().sorted(Comparator.comparing(Message::getId).reversed())
+                .limit(20).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<MessageIndex.Entry> latest20_index() {
+        return index.latest(20);
+    }
+}
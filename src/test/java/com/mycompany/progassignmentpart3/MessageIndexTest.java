@@ -0,0 +1,144 @@
+package com.mycompany.progassignmentpart3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MessageIndex}.
+ */
+public class MessageIndexTest {
+
+    private static final long START = MessageIdGenerator.EPOCH_MILLIS + 86_400_000L;
+
+    private AtomicLong clock;
+    private MessageIdGenerator ids;
+    private MessageIndex index;
+
+    @Before
+    public void setUp() {
+        clock = new AtomicLong(START);
+        ids = new MessageIdGenerator(0, clock::get);
+        index = new MessageIndex();
+    }
+
+    // A message issued at START + offsetMillis
+    private Message at(long offsetMillis, String content) {
+        clock.set(START + offsetMillis);
+        return Message.issued(ids.nextId(), content, "0712345678");
+    }
+
+    private static List<Message> messages(List<MessageIndex.Entry> entries) {
+        List<Message> result = new ArrayList<>();
+        for (MessageIndex.Entry e : entries) {
+            result.add(e.getMessage());
+        }
+        return result;
+    }
+
+    private static List<Message> reversed(List<Message> messages) {
+        List<Message> result = new ArrayList<>(messages);
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Test
+    public void testFindByIdAcrossAllLists() {
+        Message sent = at(0, "sent");
+        Message stored = at(1, "stored");
+        Message dropped = at(2, "dropped");
+        index.add(sent, MessageIndex.Status.SENT);
+        index.add(stored, MessageIndex.Status.STORED);
+        index.add(dropped, MessageIndex.Status.DISREGARDED);
+
+        assertSame(stored, index.findById(stored.getId()).getMessage());
+        assertEquals(MessageIndex.Status.DISREGARDED, index.findById(dropped.getId()).getStatus());
+        assertNull(index.findById("ZZZZZZZZZZ"));
+        assertNull(index.findById(null));
+        assertEquals(3, index.size());
+        assertEquals(1, index.size(MessageIndex.Status.STORED));
+    }
+
+    @Test
+    public void testLatestRangeAndBetween() {
+        List<Message> all = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            all.add(at(i * 1000L, "message " + i));
+        }
+        // added out of order, as a background load would
+        for (int i = all.size() - 1; i >= 0; i--) {
+            index.add(all.get(i), i % 2 == 0 ? MessageIndex.Status.SENT : MessageIndex.Status.STORED);
+        }
+        assertEquals(Arrays.asList(all.get(9), all.get(8), all.get(7)), messages(index.latest(3)));
+        assertEquals(10, index.latest(50).size());
+        assertTrue(index.latest(0).isEmpty());
+
+        assertEquals(reversed(all.subList(2, 5)), messages(index.range(all.get(2).getId(), all.get(5).getId(), 10)));
+        assertEquals(reversed(all.subList(8, 10)), messages(index.range(all.get(8).getId(), null, 10)));
+        assertEquals(reversed(all.subList(7, 10)), messages(index.range(null, null, 3)));
+        // paging back from the oldest message of the page before
+        assertEquals(reversed(all.subList(4, 7)), messages(index.range(null, all.get(7).getId(), 3)));
+        assertTrue(index.range(all.get(5).getId(), all.get(2).getId(), 10).isEmpty());
+
+        assertEquals(reversed(all.subList(3, 6)), messages(index.between(START + 3000, START + 6000)));
+        assertEquals(reversed(all.subList(3, 6)), messages(index.between(START + 2001, START + 5001)));
+        assertTrue(index.between(START + 100_000, START + 200_000).isEmpty());
+        assertEquals(reversed(all), messages(index.between(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertTrue(index.between(Long.MAX_VALUE - 1, Long.MAX_VALUE).isEmpty());
+    }
+
+    // A legacy decimal ID also parses as base 36, as a time in early 2024, but was never issued then
+    @Test
+    public void testBetweenSkipsLegacyIds() {
+        Message legacy = new Message("0123456789", "legacy", "0712345678");
+        long looksIssued = MessageIdGenerator.timestampOf(legacy.getId());
+        Message generated = at(looksIssued - START, "generated");
+        index.add(legacy, MessageIndex.Status.STORED);
+        index.add(generated, MessageIndex.Status.SENT);
+
+        assertEquals(Arrays.asList(generated), messages(index.between(looksIssued, looksIssued + 1)));
+        assertEquals(Arrays.asList(generated), messages(index.between(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertEquals(2, index.latest(5).size());
+    }
+
+    @Test
+    public void testRemoveKeepsBothIndexesInStep() {
+        Message a = at(0, "a");
+        Message b = at(1, "b");
+        index.add(a, MessageIndex.Status.SENT);
+        index.add(b, MessageIndex.Status.SENT);
+        assertTrue(index.remove(a));
+        assertFalse(index.remove(a));
+        assertNull(index.findById(a.getId()));
+        assertEquals(Arrays.asList(b), messages(index.latest(5)));
+        assertEquals(0, index.size(MessageIndex.Status.STORED));
+        assertEquals(1, index.size(MessageIndex.Status.SENT));
+    }
+
+    @Test
+    public void testLegacyDuplicateIdsKeepFirstThenNext() {
+        Message first = new Message("0000000042", "first", "0712345678");
+        Message second = new Message("0000000042", "second", "0712345678");
+        Message noId = new Message(null, "no id", "0712345678");
+        index.add(first, MessageIndex.Status.STORED);
+        index.add(second, MessageIndex.Status.STORED);
+        index.add(noId, MessageIndex.Status.STORED);
+        assertSame(first, index.findById("0000000042").getMessage());
+        assertEquals(3, index.size());
+
+        assertTrue(index.remove(first));
+        assertSame(second, index.findById("0000000042").getMessage());
+        assertTrue(index.remove(noId));
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,91 @@
+package com.mycompany.progassignmentpart3;
+
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for the cached message hash of {@link Message}.
+ * <p>
+ * The word scan is compared with the {@code split("\\s+")} implementation it replaced.
+ */
+public class MessageTest {
+
+    private static final String ALPHABET = "ab Z\u00e9\t\n\u000B\f\r\u0001\u00a0\u2003\u00dfi.";
+
+    // The hash as it was computed before it was cached
+    private static String splitHash(String id, String content) {
+        if (content == null || id == null) return "";
+        String[] words = content.trim().split("\\s+");
+        String firstWord = words.length > 0 ? words[0] : "";
+        String lastWord = words.length > 1 ? words[words.length - 1] : "";
+        return id + ":" + (firstWord + lastWord).toUpperCase() + ":" + content.length();
+    }
+
+    @Test
+    public void testHashMatchesSplitImplementation() {
+        String[] cases = {
+            "", " ", "Hello", "Hello world", "  Hello   big  world  ", "\tone\ntwo\rthree\f",
+            "a\u0001b c", "\u0001lead trail\u0001", "non\u00a0breaking space", "em\u2003space here", "stra\u00dfe ende",
+        };
+        for (String content : cases) {
+            assertEquals(content, splitHash("0000000001", content), new Message("0000000001", content, "0712345678").createMessageHash());
+        }
+        assertEquals("", new Message(null, "Hello", "0712345678").createMessageHash());
+        assertEquals("", new Message("0000000001", null, "0712345678").createMessageHash());
+    }
+
+    @Test
+    public void testRandomContentMatchesSplitImplementation() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String content = sb.toString();
+            assertEquals(content, splitHash("42", content), new Message("42", content, "0712345678").createMessageHash());
+        }
+    }
+
+    @Test
+    public void testHashIsComputedOnce() {
+        Message m = new Message("0000000001", "Hello there world", "0712345678");
+        assertSame(m.createMessageHash(), m.createMessageHash());
+        assertEquals("0000000001:HELLOWORLD:17", m.createMessageHash());
+    }
+
+    // Messages loaded from JSON bypass the constructor and must still hash
+    @Test
+    public void testHashIsNotStoredInJson() {
+        Gson gson = new Gson();
+        Message m = new Message("0000000001", "Hello there world", "0712345678");
+        m.createMessageHash();
+        String json = gson.toJson(m);
+        assertFalse(json.contains("messageHash"));
+        assertEquals(m.createMessageHash(), gson.fromJson(json, Message.class).createMessageHash());
+    }
+
+    @Test
+    public void testPrintMessagesPage() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(new Message("000000000" + i, "Message " + i, "+27718693002"));
+        }
+        String page = Message.printMessages(messages, 3, 10);
+        assertFalse(page.contains("Message 2"));
+        assertTrue(page.contains("Message 3"));
+        assertTrue(page.contains("Message 4"));
+        assertEquals(Message.printMessages(messages),
+                Message.printMessages(messages, 0, 3) + Message.printMessages(messages, 3, 3));
+        assertEquals("", Message.printMessages(messages, 5, 3));
+    }
+}
@@ -0,0 +1,109 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Load time of the JSON stored-messages file against the memory-mapped
+ * {@link BinaryMessageFile}, plus a lookup by ID in each.
+ * <p>
+ * The on-disk size of both files is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoredMessageFormatBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    private Path dir;
+    private Path json;
+    private Path binary;
+    private String lookupId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("stored-format");
+        json = dir.resolve("storedMessages.json");
+        binary = dir.resolve("storedMessages.bin");
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(new Message(String.format("%010d", i * 7919L % 1_000_000_000L),
+                    "Stored message number " + i + " for the weekly report", "0712345678"));
+        }
+        lookupId = messages.get(size / 2).getId();
+        new StoredMessageLog(json).rewrite(messages);
+        BinaryMessageFile.fromJson(json, binary);
+        System.out.printf("%nJSON: %,d bytes, binary: %,d bytes%n", Files.size(json), Files.size(binary));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(json);
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void loadAll_json(Blackhole bh) throws IOException {
+        try (StoredMessageReader reader = new StoredMessageReader(
+                Files.newBufferedReader(json, StandardCharsets.UTF_8))) {
+            Message m;
+            while ((m = reader.next()) != null) {
+                bh.consume(m);
+            }
+        }
+    }
+
+    @Benchmark
+    public void loadAll_binary(Blackhole bh) throws IOException {
+        try (BinaryMessageFile file = BinaryMessageFile.open(binary)) {
+            file.forEach(bh::consume);
+        }
+    }
+
+    @Benchmark
+    public Message findById_json() throws IOException {
+        try (StoredMessageReader reader = new StoredMessageReader(
+                Files.newBufferedReader(json, StandardCharsets.UTF_8))) {
+            Message m;
+            while ((m = reader.next()) != null) {
+                if (m.getId().equals(lookupId)) {
+                    return m;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Message findById_binary() throws IOException {
+        try (BinaryMessageFile file = BinaryMessageFile.open(binary)) {
+            return file.findById(lookupId);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole-file save and load of {@code storedMessages.json}, the work behind
+ * "Store Message" rewrites and the stored-messages load at startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoredMessageJsonBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Path dir;
+    private StoredMessageLog log;
+    private final List<Message> messages = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("stored-json");
+        log = new StoredMessageLog(dir.resolve("storedMessages.json"));
+        for (int i = 0; i < size; i++) {
+            messages.add(new Message(String.format("%010d", i), "Stored message number " + i + " for the weekly report",
+                    "+27838968976"));
+        }
+        log.rewrite(messages);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        log.rewrite(messages);
+    }
+
+    @Benchmark
+    public List<Message> load() throws IOException {
+        return log.load();
+    }
+}
@@ -0,0 +1,309 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link StoredMessageLog}: appends, compaction, crash recovery
+ * streaming loads through {@link StoredMessageReader} and group commits through
+ * {@link GroupCommitWriter}.
+ */
+public class StoredMessageLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path snapshot;
+    private Path logFile;
+    private StoredMessageLog log;
+
+    @Before
+    public void setUp() {
+        snapshot = folder.getRoot().toPath().resolve("storedMessages.json");
+        logFile = Paths.get(snapshot + StoredMessageLog.LOG_SUFFIX);
+        log = new StoredMessageLog(snapshot);
+    }
+
+    private static Message message(int i) {
+        return new Message(String.format("%010d", i), "Stored message " + i, "0712345678");
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        List<String> ids = new ArrayList<>();
+        for (Message m : messages) {
+            ids.add(m.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testAppendedMessagesSurviveReopen() throws IOException {
+        log.append(message(1));
+        log.append(message(2));
+        log.close();
+
+        List<Message> loaded = new StoredMessageLog(snapshot).load();
+        assertEquals(Arrays.asList("0000000001", "0000000002"), ids(loaded));
+        assertEquals("Stored message 2", loaded.get(1).getContent());
+    }
+
+    @Test
+    public void testAppendDoesNotRewriteSnapshot() throws IOException {
+        log.rewrite(Arrays.asList(message(1)));
+        long snapshotSize = Files.size(snapshot);
+        log.append(message(2));
+        assertEquals(snapshotSize, Files.size(snapshot));
+        assertEquals(2, log.load().size());
+    }
+
+    @Test
+    public void testCompactionFoldsLogIntoSnapshot() throws IOException {
+        for (int i = 0; i < 1500; i++) {
+            log.append(message(i));
+        }
+        log.compact();
+        assertEquals(0, Files.size(logFile));
+        List<Message> loaded = new StoredMessageLog(snapshot).load();
+        assertEquals(1500, loaded.size());
+        assertEquals("0000001499", loaded.get(1499).getId());
+    }
+
+    @Test
+    public void testTornRecordIsDroppedOnRecovery() throws IOException {
+        log.append(message(1));
+        log.append(message(2));
+        log.close();
+        long goodLength = Files.size(logFile);
+        Files.write(logFile, "{\"id\":\"00000".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        StoredMessageLog recovered = new StoredMessageLog(snapshot);
+        assertEquals(Arrays.asList("0000000001", "0000000002"), ids(recovered.load()));
+        assertEquals(goodLength, Files.size(logFile));
+
+        recovered.append(message(3));
+        assertEquals(3, recovered.load().size());
+    }
+
+    // Crash after the new snapshot was swapped in but before the log was cleared
+    @Test
+    public void testRecordsAlreadyInSnapshotAreNotReplayedTwice() throws IOException {
+        log.append(message(1));
+        log.append(message(2));
+        log.close();
+        byte[] logBytes = Files.readAllBytes(logFile);
+        log.compact();
+        Files.write(logFile, logBytes);
+
+        List<Message> loaded = new StoredMessageLog(snapshot).load();
+        assertEquals(Arrays.asList("0000000001", "0000000002"), ids(loaded));
+    }
+
+    // Legacy IDs are random, so a logged message may share its ID with a snapshot message
+    @Test
+    public void testLogRecordWithSnapshotIdIsReplayed() throws IOException {
+        log.rewrite(Arrays.asList(message(7)));
+        Message sameId = new Message("0000000007", "Another message", "0712345678");
+        log.append(sameId);
+        log.close();
+
+        List<Message> loaded = new StoredMessageLog(snapshot).load();
+        assertEquals(Arrays.asList("0000000007", "0000000007"), ids(loaded));
+        assertEquals("Another message", loaded.get(1).getContent());
+    }
+
+    // The snapshot was put back from an older copy; the log is not in it yet
+    @Test
+    public void testLogFollowingNewerGenerationIsReplayed() throws IOException {
+        log.rewrite(Arrays.asList(message(1)));
+        log.rewrite(Arrays.asList(message(1)));
+        log.append(message(2));
+        log.close();
+        Files.write(snapshot, ("[{\"snapshotGeneration\":1},"
+                + "{\"id\":\"0000000001\",\"content\":\"Stored message 1\",\"recipient\":\"0712345678\"}]")
+                .getBytes(StandardCharsets.UTF_8));
+
+        StoredMessageLog restored = new StoredMessageLog(snapshot);
+        assertEquals(Arrays.asList("0000000001", "0000000002"), ids(restored.load()));
+
+        // crash after the next snapshot was swapped in but before the log was cleared
+        byte[] logBytes = Files.readAllBytes(logFile);
+        restored.compact();
+        restored.close();
+        Files.write(logFile, logBytes);
+        assertEquals(Arrays.asList("0000000001", "0000000002"), ids(new StoredMessageLog(snapshot).load()));
+    }
+
+    @Test
+    public void testLogWithoutGenerationHeaderIsReplayed() throws IOException {
+        Files.write(snapshot, "[{\"id\":\"0000000001\",\"content\":\"Old\",\"recipient\":\"0712345678\"}]"
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(logFile, "{\"id\":\"0000000001\",\"content\":\"Older log\",\"recipient\":\"0712345678\"}\n"
+                .getBytes(StandardCharsets.UTF_8));
+        List<Message> loaded = log.load();
+        assertEquals(2, loaded.size());
+        assertEquals("Older log", loaded.get(1).getContent());
+
+        log.compact();
+        assertEquals(2, new StoredMessageLog(snapshot).load().size());
+    }
+
+    @Test
+    public void testSnapshotKeepsJsonArrayFormat() throws IOException {
+        log.rewrite(Arrays.asList(message(1)));
+        String json = new String(Files.readAllBytes(snapshot), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("[{"));
+        assertTrue(json.contains("\"content\":\"Stored message 1\""));
+    }
+
+    @Test
+    public void testLoadPagesStreamsSnapshotThenLog() throws IOException {
+        List<Message> stored = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            stored.add(message(i));
+        }
+        log.rewrite(stored);
+        log.append(message(250));
+
+        List<Integer> pageSizes = new ArrayList<>();
+        List<Message> loaded = new ArrayList<>();
+        int count = new StoredMessageLog(snapshot).loadPages(100, page -> {
+            pageSizes.add(page.size());
+            loaded.addAll(page);
+        });
+        assertEquals(251, count);
+        assertEquals(Arrays.asList(100, 100, 51), pageSizes);
+        assertEquals("0000000250", loaded.get(250).getId());
+    }
+
+    @Test
+    public void testLoadInBackgroundCompletesWithCount() throws Exception {
+        log.rewrite(Arrays.asList(message(1), message(2), message(3)));
+        List<Message> loaded = Collections.synchronizedList(new ArrayList<>());
+        int count = new StoredMessageLog(snapshot).loadInBackground(2, loaded::addAll).get(10, TimeUnit.SECONDS);
+        assertEquals(3, count);
+        assertEquals(3, loaded.size());
+    }
+
+    // The load covers what was stored when it was asked for, and its callback holds up no append
+    @Test
+    public void testAppendDuringBackgroundLoadIsNotDeliveredAndDoesNotWait() throws Exception {
+        log.rewrite(Arrays.asList(message(1), message(2)));
+        log.append(message(3));
+        CountDownLatch firstPage = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Message> loaded = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Integer> done = log.loadInBackground(1, page -> {
+            loaded.addAll(page);
+            firstPage.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        log.append(message(4));
+        assertTrue(firstPage.await(10, TimeUnit.SECONDS));
+        // the loader is parked inside its callback; appends still go through
+        log.append(message(5));
+        release.countDown();
+
+        assertEquals(3, (int) done.get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0000000001", "0000000002", "0000000003"), ids(loaded));
+        assertEquals(5, new StoredMessageLog(snapshot).load().size());
+    }
+
+    @Test
+    public void testReaderHandlesEmptyAndNullFiles() throws IOException {
+        try (StoredMessageReader reader = new StoredMessageReader(new StringReader(""))) {
+            assertNull(reader.next());
+        }
+        try (StoredMessageReader reader = new StoredMessageReader(new StringReader("null"))) {
+            assertNull(reader.next());
+        }
+        try (StoredMessageReader reader = new StoredMessageReader(new StringReader(
+                "[{\"id\":\"1\",\"content\":\"a\",\"recipient\":\"07\"},"
+                + "{\"id\":\"2\",\"content\":\"b\",\"recipient\":\"07\"}]"))) {
+            assertEquals(1, reader.nextPage(1).size());
+            assertEquals("2", reader.nextPage(5).get(0).getId());
+            assertTrue(reader.nextPage(5).isEmpty());
+        }
+    }
+
+    @Test
+    public void testGroupCommitMessagesAreOnDiskWhenFutureCompletes() throws Exception {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (GroupCommitWriter writer = new GroupCommitWriter(log, 64, 50)) {
+            for (int i = 0; i < 200; i++) {
+                futures.add(writer.submit(message(i)));
+            }
+            futures.get(199).get(10, TimeUnit.SECONDS);
+            assertEquals(200, new StoredMessageLog(snapshot).load().size());
+        }
+        for (CompletableFuture<Void> f : futures) {
+            assertTrue(f.isDone() && !f.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void testGroupCommitCloseFlushesQueuedMessages() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(log, 1000, 10_000);
+        CompletableFuture<Void> all = writer.submitAll(Arrays.asList(message(1), message(2), message(3)));
+        writer.close();
+        assertTrue(all.isDone() && !all.isCompletedExceptionally());
+        assertEquals(3, new StoredMessageLog(snapshot).load().size());
+        assertTrue(writer.submit(message(4)).isCompletedExceptionally());
+    }
+
+    // Every future settles, whichever side of close() its submit lands on
+    @Test
+    public void testSubmitRacingCloseNeverHangs() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            GroupCommitWriter writer = new GroupCommitWriter(log, 16, 0);
+            List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    futures.add(writer.submit(message(i)));
+                }
+            });
+            submitter.start();
+            writer.close();
+            submitter.join();
+            for (CompletableFuture<Void> f : futures) {
+                try {
+                    f.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAppendAsyncUsesSharedGroupCommit() throws Exception {
+        log.appendAsync(message(1)).get(10, TimeUnit.SECONDS);
+        log.appendAsync(message(2)).get(10, TimeUnit.SECONDS);
+        log.close();
+        assertEquals(Arrays.asList("0000000001", "0000000002"), ids(new StoredMessageLog(snapshot).load()));
+    }
+}
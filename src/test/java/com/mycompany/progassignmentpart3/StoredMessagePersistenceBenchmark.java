@@ -0,0 +1,81 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-message cost of persisting stored messages: one fsync per message through
+ * {@link StoredMessageLog#append} against group commits through {@link GroupCommitWriter}.
+ * <p>
+ * Both benchmarks persist {@value #BULK} messages per invocation and report time per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoredMessagePersistenceBenchmark {
+
+    static final int BULK = 256;
+
+    private Path dir;
+    private StoredMessageLog log;
+    private GroupCommitWriter writer;
+    private final List<Message> batch = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("stored-persistence");
+        log = new StoredMessageLog(dir.resolve("storedMessages.json"));
+        writer = new GroupCommitWriter(log);
+        for (int i = 0; i < BULK; i++) {
+            batch.add(new Message(String.format("%010d", i), "Bulk stored message number " + i, "0712345678"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        log.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public void appendEach() throws IOException {
+        for (Message m : batch) {
+            log.append(m);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public void groupCommit() {
+        writer.submitAll(batch).join();
+    }
+}
@@ -0,0 +1,86 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A {@link ChatSession} holding {@code size} sent messages with every one on the heap
+ * against one that keeps only the newest 10,000 there and spills the rest to disk.
+ * <p>
+ * Setup prints the heap used after a full GC. The benchmarks time the whole report,
+ * which faults every evicted segment back in, and a lookup of the oldest message by ID.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TieredMessageStoreBenchmark {
+
+    @Param({"10000", "2147483647"})
+    public int memoryLimit;
+
+    @Param({"500000"})
+    public int size;
+
+    private Path dir;
+    private StoredMessageLog log;
+    private ChatSession session;
+    private String oldestId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("tiered-bench");
+        log = new StoredMessageLog(dir.resolve("storedMessages.json"));
+        long before = usedHeap();
+        session = new ChatSession("+27718693002", Integer.MAX_VALUE, log, 100, memoryLimit);
+        for (int i = 0; i < size; i++) {
+            session.send("Message number " + i + ": can you join us for dinner tonight? Bring message " + (i * 31));
+        }
+        oldestId = session.getSentMessages().get(0).getId();
+        System.out.printf("%nHeap used by %,d sent messages: %,d KB%n", size, (usedHeap() - before) / 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        session.close();
+        log.close();
+        Files.deleteIfExists(dir.resolve("storedMessages.json"));
+        Files.deleteIfExists(dir);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeReport() throws IOException {
+        session.writeReport(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public Message findOldestById() {
+        return session.findById(oldestId);
+    }
+}
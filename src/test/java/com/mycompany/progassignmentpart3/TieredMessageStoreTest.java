@@ -0,0 +1,146 @@
+package com.mycompany.progassignmentpart3;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link TieredMessageStore}.
+ */
+public class TieredMessageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MessageIdGenerator ids = new MessageIdGenerator(0);
+    private final List<Message> evicted = new ArrayList<>();
+    private final List<Message> sent = new ArrayList<>();
+    private Path dir;
+    private TieredMessageStore store;
+
+    @Before
+    public void setUp() {
+        dir = folder.getRoot().toPath().resolve("segments");
+        store = new TieredMessageStore(dir, 10, 4, evicted::addAll);
+        for (int i = 0; i < 25; i++) {
+            Message m = Message.issued(ids.nextId(), "message " + i + (i == 3 ? " is the longest one" : ""), "0712345678");
+            sent.add(m);
+            store.add(m);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private static List<String> idsOf(List<Message> messages) {
+        List<String> result = new ArrayList<>();
+        for (Message m : messages) {
+            result.add(m.getId());
+        }
+        return result;
+    }
+
+    @Test
+    public void testMemoryStaysBoundedAndOrderIsKept() throws IOException {
+        assertEquals(25, store.size());
+        assertTrue(store.getMemoryCount() <= 10);
+        assertEquals(16, store.getEvictedCount());
+        assertEquals(4, store.getSegmentCount());
+        assertEquals(idsOf(sent.subList(0, 16)), idsOf(evicted));
+        assertEquals(idsOf(sent), idsOf(store));
+        assertEquals(idsOf(sent.subList(5, 15)), idsOf(store.subList(5, 15)));
+
+        StringWriter report = new StringWriter();
+        Message.writeMessages(store, report);
+        assertTrue(report.toString().contains("Content: message 0\n"));
+        assertTrue(report.toString().contains("Content: message 24\n"));
+    }
+
+    @Test
+    public void testFindSearchAndLongestFaultEvictedMessagesIn() {
+        assertEquals("message 2", store.findEvicted(sent.get(2).getId()).getContent());
+        assertNull(store.findEvicted(sent.get(24).getId()));
+        assertNull(store.findEvicted("ZZZZZZZZZZ"));
+        assertEquals(idsOf(sent.subList(3, 4)), idsOf(store.searchEvicted("longest")));
+        // 1 and 10-15 are on disk; 16-24 are still in memory
+        assertEquals(7, store.searchEvicted("message 1*").size());
+        assertEquals(sent.get(3).getId(), store.longestEvicted().getId());
+        assertEquals(idsOf(List.of(sent.get(15), sent.get(14))), idsOf(store.newestEvicted(2)));
+    }
+
+    @Test
+    public void testEvictedBetweenSkipsLegacyIds() throws IOException {
+        try (TieredMessageStore legacy = new TieredMessageStore(dir.resolve("legacy"), 2, 2, null)) {
+            Message old = new Message("0123456789", "legacy", "0712345678");
+            Message issued = Message.issued(ids.nextId(), "issued", "0712345678");
+            legacy.add(old);
+            legacy.add(issued);
+            legacy.add(Message.issued(ids.nextId(), "spills the other two", "0712345678"));
+            assertEquals(2, legacy.getEvictedCount());
+
+            long looksIssued = MessageIdGenerator.timestampOf(old.getId());
+            assertTrue(legacy.evictedBetween(looksIssued, looksIssued + 1).isEmpty());
+            assertEquals(idsOf(List.of(issued)), idsOf(legacy.evictedBetween(0, Long.MAX_VALUE)));
+            assertEquals(issued.getIssuedAt(), legacy.findEvicted(issued.getId()).getIssuedAt());
+        }
+    }
+
+    @Test
+    public void testRemoveEvictedAndInMemory() throws IOException {
+        assertTrue(store.remove(sent.get(24)));
+        assertTrue(store.removeEvicted(sent.get(3).getId()));
+        assertFalse(store.removeEvicted(sent.get(3).getId()));
+        assertEquals(23, store.size());
+        assertNull(store.findEvicted(sent.get(3).getId()));
+        assertTrue(store.searchEvicted("longest").isEmpty());
+        assertEquals("message 10", store.longestEvicted().getContent());
+
+        List<Message> expected = new ArrayList<>(sent.subList(0, 24));
+        expected.remove(3);
+        assertEquals(idsOf(expected), idsOf(store));
+
+        // a segment whose messages are all deleted goes away
+        for (int i = 4; i < 8; i++) {
+            assertTrue(store.remove(new Message(sent.get(i).getId(), "", "")));
+        }
+        assertEquals(3, store.getSegmentCount());
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test
+    public void testCloseDeletesSegments() throws IOException {
+        store.close();
+        assertEquals(9, store.size());
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+        TieredMessageStore temporary = new TieredMessageStore(1, 1, null);
+        temporary.add(sent.get(0));
+        temporary.add(sent.get(1));
+        assertEquals(1, temporary.getEvictedCount());
+        temporary.close();
+        assertEquals(1, temporary.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSegmentMustFitInMemoryLimit() {
+        new TieredMessageStore(dir, 2, 3, null);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.st10159464;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, such as the ones {@link BenchmarkSuite}
+ * writes for the last release and for the current build.
+ * <p>
+ * {@code BenchmarkComparison baseline.json current.json [percent]} prints the
+ * change in every benchmark present in both files and exits with status 1 if
+ * any got worse by more than {@code percent} (10 by default). Throughput
+ * scores are better when higher; every other mode measures time, so lower wins.
+ */
+public class BenchmarkComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison baseline.json current.json [percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonObject> baseline = read(Paths.get(args[0]));
+        Map<String, JsonObject> current = read(Paths.get(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonObject> e : current.entrySet()) {
+            JsonObject before = baseline.get(e.getKey());
+            if (before == null) {
+                System.out.printf("%-80s new%n", e.getKey());
+                continue;
+            }
+            double old = score(before);
+            double now = score(e.getValue());
+            // positive means worse, whichever direction the mode counts
+            double worse = 100 * (now - old) / old * (isThroughput(e.getValue()) ? -1 : 1);
+            boolean regressed = worse > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-80s %12.3f -> %12.3f %s  %+6.1f%%%s%n", e.getKey(), old, now,
+                    e.getValue().getAsJsonObject("primaryMetric").get("scoreUnit").getAsString(),
+                    worse, regressed ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d benchmark(s) compared, %d regression(s) beyond %.1f%%%n",
+                current.size(), regressions, threshold);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    // Results keyed by benchmark name, mode and parameters
+    private static Map<String, JsonObject> read(Path file) throws IOException {
+        Map<String, JsonObject> results = new LinkedHashMap<>();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonArray array = JsonParser.parseReader(in).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject result = element.getAsJsonObject();
+                StringBuilder key = new StringBuilder(result.get("benchmark").getAsString())
+                        .append(" [").append(result.get("mode").getAsString()).append(']');
+                JsonObject params = result.getAsJsonObject("params");
+                if (params != null) {
+                    for (Map.Entry<String, JsonElement> p : params.entrySet()) {
+                        key.append(' ').append(p.getKey()).append('=').append(p.getValue().getAsString());
+                    }
+                }
+                results.put(key.toString(), result);
+            }
+        }
+        return results;
+    }
+
+    private static double score(JsonObject result) {
+        return result.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+    }
+
+    private static boolean isThroughput(JsonObject result) {
+        return result.get("mode").getAsString().equals("thrpt");
+    }
+}
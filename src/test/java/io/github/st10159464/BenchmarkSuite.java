@@ -0,0 +1,39 @@
+package io.github.st10159464;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of both packages and writes the results as JMH JSON, so
+ * two releases can be compared with {@link BenchmarkComparison}.
+ * <p>
+ * Arguments are ordinary JMH command-line options, e.g. a benchmark regex and
+ * {@code -p size=1000}; with none, every benchmark runs. This is also how to run a
+ * single benchmark class, which has no {@code main} of its own:
+ * {@code BenchmarkSuite HotPathBenchmark}, or {@code BenchmarkSuite ChatHttpServerBenchmark -t 64}
+ * for a thread count. The result file is {@code target/jmh-result.json} unless the
+ * {@code jmh.result} system property names another. {@code mvn -Pbenchmarks verify}
+ * runs this, with the arguments in {@code -Djmh.args}.
+ */
+public class BenchmarkSuite {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        File result = new File(System.getProperty("jmh.result", "target/jmh-result.json"));
+        File dir = result.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + dir);
+        }
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getPath())
+                .build()).run();
+        System.out.println("Results written to " + result.getAbsolutePath());
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.st10159464;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -89,6 +91,15 @@ public class ChatAppTests {
         assertFalse(login.loginUser("wrong", "pass"));
     }
 
+    // Test that a second registration with a taken username is rejected
+    @Test
+    public void testRegisterDuplicateUsername() {
+        Login other = new Login();
+        assertEquals("Username is already taken.", other.registerUser("kyl_1", "Diff3rent!pw", "+27838968977"));
+        assertTrue(login.loginUser("kyl_1", "Ch&&sec@ke99!"));
+        assertFalse(login.loginUser("kyl_1", "Diff3rent!pw"));
+    }
+
     // Test that the message ID is of acceptable length
     @Test
     public void testMessageIDLength() {
@@ -163,6 +174,20 @@ public class ChatAppTests {
         assertNull(Message.searchByHash(hash));
     }
 
+    @Test
+    public void testDeleteByHashUpdatesRecipientIndex() {
+        Message m1 = new Message("+27838968976", "Keep");
+        Message m2 = new Message("+27838968976", "Remove");
+        m1.send();
+        m2.send();
+        assertTrue(Message.deleteByHash(m2.getMessageHash()));
+        List<Message> found = Message.searchByRecipient("+27838968976");
+        assertEquals(1, found.size());
+        assertEquals("Keep", found.get(0).getMessageContent());
+        assertEquals(1, Message.getSentMessages().size());
+        assertFalse(Message.deleteByHash(m2.getMessageHash()));
+    }
+
     @Test
     public void testDisplayReport() {
         Message m1 = new Message("+27838968976", "Report1");
@@ -175,6 +200,17 @@ public class ChatAppTests {
         assertTrue(report.contains("Report2"));
     }
 
+    @Test
+    public void testWriteReportToStream() throws Exception {
+        new Message("+27838968976", "Streamed \u00e9").send();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Message.writeReport(out);
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertEquals(Message.displayReport(), report);
+        assertTrue(report.startsWith("Total messages sent: 1\n"));
+        assertTrue(report.contains("Streamed \u00e9"));
+    }
+
     @Test
     public void testMessageLengthExactly250() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,98 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Local load test of {@link ChatHttpServer}: request latency over loopback with
+ * many clients talking to one server at once.
+ * <p>
+ * Sample-time mode, so JMH reports the p50, p90, p99 and p99.9 latencies as well
+ * as the mean. Run it with {@code BenchmarkSuite ChatHttpServerBenchmark -t N} for
+ * N concurrent clients, e.g. 1, 64 and 512; each client is a JMH thread waiting on
+ * a blocking request, which keeps the same number of requests in flight at the
+ * server for the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatHttpServerBenchmark {
+
+    private ChatService service;
+    private ChatHttpServer server;
+    private HttpClient client;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        service = new ChatService(new UserDirectory(1_000), new MessageStore());
+        server = ChatHttpServer.start(service, 0);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://localhost:" + server.getPort();
+        for (int i = 0; i < 1_000; i++) {
+            service.send(String.format("+27%09d", i), "Seed message number " + i + " about dinner tonight");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static int nextId;
+        private String recipient;
+        private int counter;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            synchronized (Client.class) {
+                recipient = String.format("+27%09d", nextId++ % 1_000);
+            }
+        }
+
+        String nextBody() {
+            return "{\"recipient\":\"" + recipient + "\",\"content\":\"Load test message " + counter++ + "\"}";
+        }
+    }
+
+    // POST then DELETE, so the store stays the same size for the whole run
+    @Benchmark
+    public int sendAndDelete(Client c) throws IOException, InterruptedException {
+        HttpResponse<String> sent = client.send(HttpRequest.newBuilder(URI.create(base + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(c.nextBody())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        String body = sent.body();
+        int start = body.indexOf("MSG:");
+        String hash = body.substring(start, body.indexOf('"', start));
+        return client.send(HttpRequest.newBuilder(URI.create(base + "/messages/" + hash)).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public String findByRecipient(Client c) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(base + "/recipients/" + c.recipient + "/messages")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.st10159464;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round trips through {@link ChatHttpServer} with the JDK HTTP client.
+ */
+public class ChatHttpServerTest {
+
+    private ChatService service;
+    private ChatHttpServer server;
+    private HttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        service = new ChatService(new UserDirectory(1_000), new MessageStore());
+        server = ChatHttpServer.start(service, 0);
+        client = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+        request.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonObject json(HttpResponse<String> response) {
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
+    private String post(String recipient, String content) throws Exception {
+        JsonObject body = new JsonObject();
+        body.addProperty("recipient", recipient);
+        body.addProperty("content", content);
+        HttpResponse<String> response = send("POST", "/messages", body.toString());
+        assertEquals(201, response.statusCode());
+        return json(response).get("hash").getAsString();
+    }
+
+    @Test
+    public void testSendThenFindByHash() throws Exception {
+        String hash = post("+27838968976", "Hi Mike, can you join us for dinner tonight?");
+        HttpResponse<String> response = send("GET", "/messages/" + hash, null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        JsonObject m = json(response);
+        assertEquals("+27838968976", m.get("recipient").getAsString());
+        assertEquals("Hi Mike, can you join us for dinner tonight?", m.get("content").getAsString());
+    }
+
+    @Test
+    public void testSendRejectsInvalidMessage() throws Exception {
+        HttpResponse<String> response = send("POST", "/messages", "{\"recipient\":\"0838968976\",\"content\":\"Hi\"}");
+        assertEquals(400, response.statusCode());
+        assertTrue(json(response).get("error").getAsString().contains("+27"));
+        assertEquals(400, send("POST", "/messages", "not json").statusCode());
+        assertEquals(0, service.messageCount());
+    }
+
+    @Test
+    public void testFindByRecipientAndSearch() throws Exception {
+        post("+27838968976", "Hi Mike, can you join us for dinner tonight?");
+        post("+27838968976", "Where are you? You are late!");
+        post("+27834484567", "Dinner is at seven");
+
+        JsonArray mike = json(send("GET", "/recipients/+27838968976/messages", null)).getAsJsonArray("messages");
+        assertEquals(2, mike.size());
+        JsonArray dinner = json(send("GET", "/search?q=dinner", null)).getAsJsonArray("messages");
+        assertEquals(2, dinner.size());
+        assertEquals(400, send("GET", "/search", null).statusCode());
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        String hash = post("+27838968976", "Ok, I am leaving without you.");
+        HttpResponse<String> deleted = send("DELETE", "/messages/" + hash, null);
+        assertEquals(200, deleted.statusCode());
+        assertEquals(hash, json(deleted).get("deleted").getAsString());
+        assertEquals(404, send("DELETE", "/messages/" + hash, null).statusCode());
+        assertEquals(404, send("GET", "/messages/" + hash, null).statusCode());
+        assertEquals(0, service.messageCount());
+    }
+
+    // Started with a port only, the server answers on loopback and not on this host's other addresses
+    @Test
+    public void testBindsLoopbackByDefault() throws Exception {
+        InetAddress external = null;
+        for (NetworkInterface nic : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            for (InetAddress address : Collections.list(nic.getInetAddresses())) {
+                if (!address.isLoopbackAddress() && address instanceof Inet4Address) {
+                    external = address;
+                }
+            }
+        }
+        Assume.assumeNotNull(external);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(external, server.getPort()), 1_000);
+            fail("reachable on " + external);
+        } catch (IOException expected) {
+            // refused: only loopback is bound
+        }
+        assertEquals(200, send("GET", "/search?q=x", null).statusCode());
+    }
+
+    @Test
+    public void testReportPages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            post("+27838968976", "Message number " + i);
+        }
+        JsonObject first = json(send("GET", "/report?limit=3", null));
+        assertEquals(5, first.get("total").getAsInt());
+        assertEquals(3, first.getAsJsonArray("messages").size());
+        assertTrue(first.get("hasMore").getAsBoolean());
+
+        JsonObject second = json(send("GET", "/report?limit=3&cursor=" + first.get("nextCursor").getAsLong(), null));
+        assertEquals(2, second.getAsJsonArray("messages").size());
+        assertFalse(second.get("hasMore").getAsBoolean());
+        assertEquals("Message number 4", second.getAsJsonArray("messages").get(1).getAsJsonObject().get("content").getAsString());
+
+        assertEquals(400, send("GET", "/report?limit=abc", null).statusCode());
+    }
+}
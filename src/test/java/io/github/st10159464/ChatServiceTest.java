@@ -0,0 +1,89 @@
+package io.github.st10159464;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the headless {@link ChatService} and {@link HeadlessConsole}.
+ */
+public class ChatServiceTest {
+
+    private ChatService service;
+
+    @Before
+    public void setUp() {
+        service = new ChatService(new UserDirectory(1_000), new MessageStore());
+    }
+
+    @Test
+    public void testRegisterAndLogin() {
+        assertEquals(ChatService.REGISTERED, service.register("kyl_1", "Ch&&sec@ke99!", "+27838968976"));
+        assertEquals("Username is already taken.", service.register("kyl_1", "Ch&&sec@ke99!", "+27838968976"));
+        assertEquals("Username is not correctly formatted...", service.register("kyle!!!!!!", "Ch&&sec@ke99!", "+27838968976"));
+        assertEquals("Password is not correctly formatted...", service.register("kyl_2", "password", "+27838968976"));
+        assertEquals("Cell phone number incorrectly formatted...", service.register("kyl_2", "Ch&&sec@ke99!", "0838968976"));
+        assertTrue(service.login("kyl_1", "Ch&&sec@ke99!"));
+        assertFalse(service.login("kyl_1", "wrong"));
+    }
+
+    @Test
+    public void testSendSearchDelete() {
+        Message m = service.send("+27838968976", "Hi Mike, can you join us for dinner tonight?");
+        assertSame(m, service.findByHash(m.getMessageHash()));
+        assertEquals(1, service.findByRecipient("+27838968976").size());
+        assertEquals(1, service.search("dinner").size());
+        assertSame(m, service.longest());
+        assertTrue(service.deleteByHash(m.getMessageHash()));
+        assertNull(service.findByHash(m.getMessageHash()));
+        assertEquals(0, service.messageCount());
+    }
+
+    @Test
+    public void testSendRejectsInvalidMessages() {
+        try {
+            service.send("08575975889", "Hi");
+            fail("invalid recipient accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("+27"));
+        }
+        assertEquals(0, service.messageCount());
+    }
+
+    @Test
+    public void testHeadlessConsole() throws Exception {
+        String script = String.join("\n",
+                "register kyl_1 Ch&&sec@ke99! +27838968976",
+                "login kyl_1 Ch&&sec@ke99!",
+                "send +27838968976 Hello from the console",
+                "send 0831 bad",
+                "search console",
+                "report 0 1",
+                "nonsense",
+                "quit",
+                "send +27838968976 never read");
+        StringWriter out = new StringWriter();
+        new HeadlessConsole(service).run(new BufferedReader(new StringReader(script)), new PrintWriter(out));
+        String[] lines = out.toString().split("\n");
+        assertEquals(ChatService.REGISTERED, lines[0]);
+        assertEquals("Login successful.", lines[1]);
+        assertTrue(lines[2].startsWith("sent MSG:"));
+        assertTrue(lines[3].startsWith("error: Recipient cell"));
+        assertTrue(lines[4].endsWith("Hello from the console"));
+        assertEquals("1 message(s)", lines[5]);
+        assertEquals("end", lines[7]);
+        assertTrue(lines[8].startsWith("error: unknown command"));
+        assertEquals(9, lines.length);
+        assertEquals(1, service.messageCount());
+    }
+}
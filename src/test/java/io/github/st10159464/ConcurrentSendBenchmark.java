@@ -0,0 +1,65 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi-threaded send/delete throughput of a shared {@link MessageStore}.
+ * <p>
+ * Run it once per thread count, {@code BenchmarkSuite ConcurrentSendBenchmark -t 1},
+ * {@code -t 2}, {@code -t 4}, ... up to {@code -t max}, to read off how throughput
+ * scales with the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentSendBenchmark {
+
+    private final MessageStore store = new MessageStore();
+
+    @State(Scope.Thread)
+    public static class Sender {
+        private static int nextId;
+        private final String recipient;
+        private int counter;
+
+        public Sender() {
+            synchronized (Sender.class) {
+                recipient = String.format("+27%09d", nextId++);
+            }
+        }
+
+        Message next() {
+            return new Message(recipient, "Message number " + counter++);
+        }
+    }
+
+    // Send then delete, so the store stays small for the whole run
+    @Benchmark
+    public boolean sendAndDelete(Sender sender) {
+        Message m = sender.next();
+        store.add(m);
+        return store.removeByHash(m.getMessageHash());
+    }
+
+    @Benchmark
+    public Message sendAndSearch(Sender sender) {
+        Message m = sender.next();
+        store.add(m);
+        Message found = store.findByHash(m.getMessageHash());
+        store.removeByHash(m.getMessageHash());
+        return found;
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.st10159464;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConsistentHashRing}.
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 20_000;
+
+    private static String key(int i) {
+        return String.format("+27%09d", i * 7919);
+    }
+
+    @Test
+    public void testKeysSpreadEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+        for (String node : new String[] {"a", "b", "c", "d"}) {
+            ring.add(node, node);
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf(key(i)), 1, Integer::sum);
+        }
+        for (int count : counts.values()) {
+            // each node should get roughly a quarter of the keys
+            assertTrue("share " + count, count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3);
+        }
+    }
+
+    @Test
+    public void testAddingANodeOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+        ring.add("a", "a");
+        ring.add("b", "b");
+        ring.add("c", "c");
+        String[] before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.ownerOf(key(i));
+        }
+        ring.add("d", "d");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String after = ring.ownerOf(key(i));
+            if (!after.equals(before[i])) {
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > KEYS / 4 * 0.7 && moved < KEYS / 4 * 1.3);
+
+        assertTrue(ring.remove("d"));
+        assertFalse(ring.remove("d"));
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(before[i], ring.ownerOf(key(i)));
+        }
+    }
+
+    @Test
+    public void testEmptyRingAndDuplicateNames() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+        assertNull(ring.ownerOf("+27000000001"));
+        ring.add("only", "only");
+        assertSame("only", ring.ownerOf("+27000000001"));
+        try {
+            ring.add("only", "again");
+            org.junit.Assert.fail("duplicate name accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, ring.size());
+        }
+    }
+}
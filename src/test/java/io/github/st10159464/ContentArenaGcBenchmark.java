@@ -0,0 +1,106 @@
+package io.github.st10159464;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * GC cost of retaining {@code size} messages in a heap {@link MessageStore}
+ * against one that keeps content in a {@link ContentArena}.
+ * <p>
+ * {@code fullGc} times one full collection, which has to trace every live object,
+ * so it grows with what the store keeps on the heap. {@code churn} allocates
+ * short-lived garbage next to the retained store, the way request handling does;
+ * the young collection count and time it caused are printed after each iteration.
+ * Setup prints the heap used by the filled store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:+UseG1GC"})
+public class ContentArenaGcBenchmark {
+
+    @Param({"heap", "offheap"})
+    public String backend;
+
+    @Param({"1000000"})
+    public int size;
+
+    private MessageStore store;
+    private long gcCount;
+    private long gcMillis;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = backend.equals("offheap") ? MessageStore.offHeap() : new MessageStore();
+        ChatService service = new ChatService(new UserDirectory(1_000), store);
+        for (int i = 0; i < size; i++) {
+            service.send(String.format("+27%09d", i % 10_000),
+                    "Message number " + i + ": can you join us for dinner tonight? Bring message " + (i * 31));
+        }
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        ContentArena arena = store.getContentArena();
+        System.out.printf("%n%s: %,d MB heap used, %,d MB off-heap%n", backend, heap >> 20,
+                arena == null ? 0 : arena.getReservedBytes() >> 20);
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        gcCount = collections();
+        gcMillis = collectionMillis();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCollections() {
+        System.out.printf(" [%d collections, %d ms]", collections() - gcCount, collectionMillis() - gcMillis);
+    }
+
+    private static long collections() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += gc.getCollectionCount();
+        }
+        return n;
+    }
+
+    private static long collectionMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += gc.getCollectionTime();
+        }
+        return ms;
+    }
+
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+
+    // About 2 GB of short-lived garbage, a few young collections' worth
+    @Benchmark
+    public void churn(Blackhole bh) {
+        for (int i = 0; i < 2_000_000; i++) {
+            bh.consume(new byte[1024]);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.st10159464;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ContentArena} and the off-heap {@link MessageStore}.
+ */
+public class ContentArenaTest {
+
+    private ContentArena arena;
+
+    @Before
+    public void setUp() {
+        arena = new ContentArena(1024);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        long a = arena.put("Hi Mike, can you join us for dinner tonight?");
+        long b = arena.put("Caf\u00e9 at 7? \ud83d\ude00");
+        long c = arena.put("");
+        assertEquals("Hi Mike, can you join us for dinner tonight?", arena.get(a));
+        assertEquals("Caf\u00e9 at 7? \ud83d\ude00", arena.get(b));
+        assertEquals("", arena.get(c));
+        assertEquals(ContentArena.NONE, arena.put(null));
+    }
+
+    @Test
+    public void testFillsManySlabs() {
+        List<Long> addresses = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            addresses.add(arena.put("Message number " + i));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("Message number " + i, arena.get(addresses.get(i)));
+        }
+        assertTrue(arena.getReservedBytes() > 1024);
+        assertTrue(arena.getUsedBytes() <= arena.getReservedBytes());
+    }
+
+    @Test
+    public void testTooBigForASlabStaysOnHeap() {
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 2048) {
+            big.append("long ");
+        }
+        assertEquals(ContentArena.NONE, arena.put(big.toString()));
+        Message m = new Message("+27838968976", big.toString());
+        m.moveContentTo(arena);
+        assertEquals(big.toString(), m.getMessageContent());
+    }
+
+    @Test
+    public void testOffHeapStoreSearchesReportsAndDeletes() throws Exception {
+        MessageStore store = new MessageStore(arena);
+        Message dinner = new Message("+27838968976", "Hi Mike, can you join us for dinner tonight?");
+        Message late = new Message("+27838968976", "Where are you? You are late!");
+        store.add(dinner);
+        store.add(late);
+        assertTrue(arena.getUsedBytes() > 0);
+
+        assertSame(dinner, store.findByHash(dinner.getMessageHash()));
+        assertEquals("Hi Mike, can you join us for dinner tonight?", dinner.getMessageContent());
+        assertEquals(2, store.findByRecipient("+27838968976").size());
+        assertEquals(1, store.searchContent("dinner").size());
+        assertSame(dinner, store.getStatistics().longest());
+
+        ChatService service = new ChatService(new UserDirectory(1_000), store);
+        StringWriter report = new StringWriter();
+        service.writeReport(report);
+        assertTrue(report.toString().contains("Content: Where are you? You are late!"));
+
+        assertTrue(store.removeByHash(late.getMessageHash()));
+        assertEquals(0, store.searchContent("late").size());
+        assertEquals(1, store.getStatistics().count());
+        // a deleted message can still be read by whoever holds it
+        assertEquals("Where are you? You are late!", late.getMessageContent());
+    }
+
+    @Test
+    public void testClearStartsANewArena() {
+        MessageStore store = new MessageStore(arena);
+        Message m = new Message("+27838968976", "Ok, I am leaving without you.");
+        store.add(m);
+        store.clear();
+        assertFalse(store.getContentArena() == arena);
+        assertEquals("Ok, I am leaving without you.", m.getMessageContent());
+        assertNull(new MessageStore().getContentArena());
+    }
+}
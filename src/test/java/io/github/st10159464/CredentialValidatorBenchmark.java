@@ -0,0 +1,66 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CredentialValidator} against the {@code String.matches} calls it replaced.
+ * <p>
+ * Run with {@code -prof gc} to see that the validator allocates nothing per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CredentialValidatorBenchmark {
+
+    @Param({"Ch&&sec@ke99!", "passwordwithoutrules"})
+    public String password;
+
+    public String cell = "+27838968976";
+
+    @Benchmark
+    public boolean loginPassword_regex() {
+        return password.matches("^(?=.*[A-Z])(?=.*\\d)(?=.*[!@#$%^&*()_+\\-=\\[\\]{};':\"\\\\|,.<>/?]).{8,}$");
+    }
+
+    @Benchmark
+    public boolean loginPassword_validator() {
+        return CredentialValidator.isComplexPassword(password);
+    }
+
+    @Benchmark
+    public boolean loginClassPassword_regex() {
+        return password.length() >= 8
+            && password.matches(".*[A-Z].*")
+            && password.matches(".*[^a-zA-Z0-9].*")
+            && password.matches(".*\\d.*");
+    }
+
+    @Benchmark
+    public boolean loginClassPassword_validator() {
+        return CredentialValidator.hasUpperSymbolAndDigit(password);
+    }
+
+    @Benchmark
+    public boolean cell_regex() {
+        return cell.matches("^\\+27\\d{9}$");
+    }
+
+    @Benchmark
+    public boolean cell_validator() {
+        return CredentialValidator.isSouthAfricanCell(cell);
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.st10159464;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Differential tests for {@link CredentialValidator}.
+ * <p>
+ * Every check is compared with the regular expressions that {@link Login} and
+ * {@code LoginClass} used before, over hand-picked edge cases and a large set of
+ * random strings drawn from an alphabet that mixes letters, digits, specials,
+ * line terminators and surrogates.
+ */
+public class CredentialValidatorTest {
+
+    private static final Pattern LOGIN_PASSWORD =
+            Pattern.compile("^(?=.*[A-Z])(?=.*\\d)(?=.*[!@#$%^&*()_+\\-=\\[\\]{};':\"\\\\|,.<>/?]).{8,}$");
+    private static final Pattern LOGIN_CELL = Pattern.compile("^\\+27\\d{9}$");
+    private static final Pattern UPPER = Pattern.compile(".*[A-Z].*");
+    private static final Pattern SYMBOL = Pattern.compile(".*[^a-zA-Z0-9].*");
+    private static final Pattern DIGIT = Pattern.compile(".*\\d.*");
+    private static final Pattern LOGINCLASS_CELL = Pattern.compile("\\+[0-9]{11}$");
+
+    private static final String ALPHABET = "aZz09+27_!@#$%^&*()-=[]{};':\"\\|,.<>/?`~ \t\n\r"
+            + "\u0085\u2028\u2029\u00e9\u0661\uff11\ud83d\ude00\ud800\udc00";
+
+    private static void assertSameAsRegex(String s) {
+        assertEquals("Login password: " + s, LOGIN_PASSWORD.matcher(s).matches(),
+                CredentialValidator.isComplexPassword(s));
+        assertEquals("Login cell: " + s, LOGIN_CELL.matcher(s).matches(),
+                CredentialValidator.isSouthAfricanCell(s));
+        boolean loginClassPassword = s.length() >= 8 && UPPER.matcher(s).matches()
+                && SYMBOL.matcher(s).matches() && DIGIT.matcher(s).matches();
+        assertEquals("LoginClass password: " + s, loginClassPassword,
+                CredentialValidator.hasUpperSymbolAndDigit(s));
+        assertEquals("LoginClass cell: " + s, LOGINCLASS_CELL.matcher(s).matches(),
+                CredentialValidator.isPlusElevenDigits(s));
+    }
+
+    @Test
+    public void testEdgeCasesMatchRegex() {
+        String[] cases = {
+            "", "Ch&&sec@ke99!", "password", "Passw0rd", "Passw0rd!", "P4ssw0rd!\n", "P4ss\nw0rd!",
+            "Pa1!\ud83d\ude00\ud83d\ude00\ud83d\ude00\ud83d\ude00", "Pa1!\ud83d\ude00\ud83d\ude00\ud83d\ude00",
+            "Pa1!abc\ud800", "Pa1\u00e9abcd", "Pa\u0661!abcd", "PA1`abcd", "Pa1 abcd", "Pa1\tabcd",
+            "+27838968976", "+2783896897", "+278389689761", "+27838968976\n", "+2783896897\u0661",
+            "+12345678901", "+1234567890a", "027838968976", "+27-38968976",
+        };
+        for (String s : cases) {
+            assertSameAsRegex(s);
+        }
+    }
+
+    @Test
+    public void testRandomStringsMatchRegex() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int length = random.nextInt(16);
+            StringBuilder sb = new StringBuilder(length);
+            // bias half the inputs towards phone-number shapes
+            if (random.nextBoolean()) {
+                sb.append(random.nextBoolean() ? "+27" : "+");
+            }
+            for (int j = 0; j < length; j++) {
+                sb.append(random.nextInt(3) == 0
+                        ? (char) ('0' + random.nextInt(10))
+                        : ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertSameAsRegex(sb.toString());
+        }
+    }
+
+    @Test
+    public void testLoginDelegatesToValidator() {
+        Login login = new Login();
+        assertTrue(login.checkPasswordComplexity("Ch&&sec@ke99!"));
+        assertFalse(login.checkPasswordComplexity("Chsecke99"));
+        assertTrue(login.checkCellPhoneNumber("+27838968976"));
+        assertFalse(login.checkCellPhoneNumber(null));
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-call checks every send and registration goes through, called the way
+ * the menus call them: building a {@link Message} (which hashes it) and the
+ * {@link Login} password and cell number checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    private final Login login = new Login();
+    private final String[] contents = new String[1024];
+    private int counter;
+
+    public HotPathBenchmark() {
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = "Hi Mike, can you join us for dinner tonight? " + i;
+        }
+    }
+
+    // The constructor runs createMessageHash
+    @Benchmark
+    public String createMessageHash() {
+        return new Message("+27838968976", contents[counter++ & (contents.length - 1)]).getMessageHash();
+    }
+
+    @Benchmark
+    public boolean checkPasswordComplexity_valid() {
+        return login.checkPasswordComplexity("Ch&&sec@ke99!");
+    }
+
+    @Benchmark
+    public boolean checkPasswordComplexity_invalid() {
+        return login.checkPasswordComplexity("password");
+    }
+
+    @Benchmark
+    public boolean checkCellPhoneNumber() {
+        return login.checkCellPhoneNumber("+27838968976");
+    }
+}
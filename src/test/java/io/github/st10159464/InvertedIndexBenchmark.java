@@ -0,0 +1,82 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Keyword search through the {@link InvertedIndex} kept by {@link MessageStore}
+ * against a linear {@code contains} scan over every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class InvertedIndexBenchmark {
+
+    private static final String[] WORDS = {"dinner", "lunch", "meeting", "tonight", "tomorrow", "call",
+        "report", "invoice", "weekend", "project", "deadline", "coffee"};
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private final MessageStore store = new MessageStore();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < size; i++) {
+            String content = WORDS[i % WORDS.length] + " " + WORDS[(i / 7) % WORDS.length]
+                    + " note " + i + " " + WORDS[(i / 131) % WORDS.length];
+            store.add(new Message(String.format("+27%09d", i % 10_000), content));
+        }
+    }
+
+    @Benchmark
+    public List<Message> andQuery_index() {
+        return store.searchContent("invoice deadline note");
+    }
+
+    @Benchmark
+    public List<Message> andQuery_scan() {
+        List<Message> found = new ArrayList<>();
+        for (Message m : store.all()) {
+            String content = m.getMessageContent().toLowerCase(Locale.ROOT);
+            if (content.contains("invoice") && content.contains("deadline") && content.contains("note")) {
+                found.add(m);
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<Message> rareTerm_index() {
+        return store.searchContent("4242");
+    }
+
+    @Benchmark
+    public List<Message> rareTerm_scan() {
+        List<Message> found = new ArrayList<>();
+        for (Message m : store.all()) {
+            if (m.getMessageContent().contains(" 4242 ")) {
+                found.add(m);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.st10159464;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link InvertedIndex}. Queries are checked against a linear scan
+ * over the same words.
+ */
+public class InvertedIndexTest {
+
+    private InvertedIndex<Message> index;
+    private Message dinner;
+    private Message lunch;
+    private Message meeting;
+
+    @Before
+    public void setUp() {
+        index = new InvertedIndex<>(Message::getMessageContent);
+        dinner = new Message("+27838968976", "Can you join us for Dinner tonight?");
+        lunch = new Message("+27838968976", "Lunch\ttomorrow, then dinner");
+        meeting = new Message("+27838968977", "Meeting moved to tomorrow");
+        index.add(dinner);
+        index.add(lunch);
+        index.add(meeting);
+    }
+
+    @Test
+    public void testAndOrQueries() {
+        assertEquals(Arrays.asList(dinner, lunch), index.searchAny(Arrays.asList("DINNER")));
+        assertEquals(Arrays.asList(lunch), index.searchAll(Arrays.asList("dinner", "lunch")));
+        assertEquals(Arrays.asList(lunch, meeting), index.searchAny(Arrays.asList("lunch", "meeting")));
+        assertEquals(Arrays.asList(lunch), index.search("dinner lunch"));
+        assertEquals(Arrays.asList(dinner, meeting), index.search("us OR moved"));
+        assertTrue(index.search("dinner nothing").isEmpty());
+    }
+
+    @Test
+    public void testPrefixQueries() {
+        // punctuation is part of the word, as in the hash's word split
+        assertTrue(index.search("tonight").isEmpty());
+        assertEquals(Arrays.asList(dinner), index.search("tonight*"));
+        assertEquals(Arrays.asList(lunch, meeting), index.searchPrefix("tom"));
+        assertEquals(Arrays.asList(lunch), index.search("tom* din*"));
+    }
+
+    @Test
+    public void testRemoveDropsEmptyTerms() {
+        int terms = index.termCount();
+        assertTrue(index.remove(meeting));
+        assertFalse(index.remove(meeting));
+        assertTrue(index.search("tomorrow").isEmpty());
+        assertEquals(Arrays.asList(lunch), index.search("tomorrow*"));
+        // "meeting", "moved", "to" and "tomorrow" were only in the removed message
+        assertEquals(terms - 4, index.termCount());
+        assertTrue(index.search("moved").isEmpty());
+    }
+
+    @Test
+    public void testStoreIndexMatchesScan() {
+        MessageStore store = new MessageStore();
+        String[] words = {"alpha", "beta", "gamma", "delta", "alphabet", "BETA"};
+        Random random = new Random(7);
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int w = 0; w < 1 + random.nextInt(4); w++) {
+                content.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            Message m = new Message("+27838968976", content.toString() + i);
+            store.add(m);
+            if (i % 5 == 0) {
+                store.removeByHash(m.getMessageHash());
+            }
+        }
+        List<Message> expected = store.snapshot().stream()
+                .filter(m -> InvertedIndex.terms(m.getMessageContent()).contains("beta")
+                        && InvertedIndex.terms(m.getMessageContent()).stream().anyMatch(t -> t.startsWith("alpha")))
+                .collect(Collectors.toList());
+        assertEquals(expected, store.searchContent("beta alpha*"));
+    }
+}
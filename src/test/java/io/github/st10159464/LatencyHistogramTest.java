@@ -0,0 +1,82 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void testBucketsCoverEveryValueOnce() {
+        // each bucket starts right after the one before it ends
+        for (int b = 1; b < LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE); b++) {
+            long first = LatencyHistogram.highestValueIn(b - 1) + 1;
+            assertEquals(b, LatencyHistogram.bucketOf(first));
+            assertEquals(b, LatencyHistogram.bucketOf(LatencyHistogram.highestValueIn(b)));
+        }
+    }
+
+    @Test
+    public void testPercentilesWithinThreePercent() {
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean(), 1);
+        assertClose(50_000_000, histogram.percentile(50));
+        assertClose(99_000_000, histogram.percentile(99));
+        assertClose(99_900_000, histogram.percentile(99.9));
+        assertEquals(100_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    public void testSmallAndOutOfRangeValues() {
+        histogram.record(-5);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.percentile(1));
+        assertEquals(7, histogram.percentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecordingLosesNothing() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.getCount());
+        assertEquals(49_999, histogram.getMax());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected * 0.03);
+    }
+}
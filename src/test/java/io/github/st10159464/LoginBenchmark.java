@@ -0,0 +1,59 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Login latency of {@link UserDirectory} with one million registered users.
+ * <p>
+ * The bulk users are registered with one hashing iteration so setup stays quick;
+ * the user being logged in is stored with {@code iterations}, which is what bounds
+ * login latency. The lookup itself does not grow with the user count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class LoginBenchmark {
+
+    private static final int USERS = 1_000_000;
+
+    @Param({"1", "10000"})
+    public int iterations;
+
+    private UserDirectory directory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        directory = new UserDirectory(1);
+        for (int i = 0; i < USERS; i++) {
+            directory.register("u_" + i, "P4ss!word" + i, "+27838968976");
+        }
+        directory.setIterations(iterations);
+        directory.register("kyl_1", "Ch&&sec@ke99!", "+27838968976");
+    }
+
+    @Benchmark
+    public boolean loginSuccess() {
+        return directory.authenticate("kyl_1", "Ch&&sec@ke99!");
+    }
+
+    @Benchmark
+    public boolean loginUnknownUser() {
+        return directory.authenticate("nobody", "Ch&&sec@ke99!");
+    }
+}
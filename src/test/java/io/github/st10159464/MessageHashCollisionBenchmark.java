@@ -0,0 +1,81 @@
+package io.github.st10159464;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hashes {@code count} distinct synthetic messages with each strategy, then sorts
+ * the hashes and prints how many collide. The reported time is for the whole run.
+ * <p>
+ * The original scheme is checked on its full 32 bits; Murmur3 on the first 64 of
+ * its 128 bits, which is already a stricter test than the full hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class MessageHashCollisionBenchmark {
+
+    @Param({"20000000"})
+    public int count;
+
+    @Benchmark
+    public long collisions_stringHashCode() {
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = (recipient(i) + content(i)).hashCode();
+        }
+        Arrays.sort(hashes);
+        long collisions = 0;
+        for (int i = 1; i < count; i++) {
+            if (hashes[i] == hashes[i - 1]) {
+                collisions++;
+            }
+        }
+        return report("String.hashCode", collisions);
+    }
+
+    @Benchmark
+    public long collisions_murmur3() {
+        Murmur3MessageHasher hasher = new Murmur3MessageHasher();
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hasher.hash64(recipient(i), content(i));
+        }
+        Arrays.sort(hashes);
+        long collisions = 0;
+        for (int i = 1; i < count; i++) {
+            if (hashes[i] == hashes[i - 1]) {
+                collisions++;
+            }
+        }
+        return report("Murmur3 (64 of 128 bits)", collisions);
+    }
+
+    private long report(String name, long collisions) {
+        System.out.printf("%n%s: %,d colliding hashes among %,d messages%n", name, collisions, count);
+        return collisions;
+    }
+
+    // 10,000 recipients sending short, mostly similar messages: the worst case for a weak hash
+    private static String recipient(int i) {
+        return "+2771" + (1_000_000 + i % 10_000);
+    }
+
+    private static String content(int i) {
+        return "Reminder " + i + ": meeting at " + (i % 24) + ":00";
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one message hash: the original concatenate-and-hashCode scheme against
+ * {@link Murmur3MessageHasher}, for short and maximum-length (250 char) messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageHasherBenchmark {
+
+    @Param({"20", "250"})
+    public int contentLength;
+
+    private final MessageHasher murmur3 = new Murmur3MessageHasher();
+    private String recipient;
+    private String content;
+
+    @Setup
+    public void setUp() {
+        recipient = "+27718693002";
+        content = "Hi Mike, can you join us for dinner tonight? ".repeat(6).substring(0, contentLength);
+    }
+
+    @Benchmark
+    public String hash_stringHashCode() {
+        return MessageHasher.STRING_HASH_CODE.hash(recipient, content);
+    }
+
+    @Benchmark
+    public String hash_murmur3() {
+        return murmur3.hash(recipient, content);
+    }
+}
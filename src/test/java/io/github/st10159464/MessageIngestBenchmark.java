@@ -0,0 +1,81 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to send {@code size} records through {@link MessageIngest} at several pool
+ * sizes, against validating and sending them one at a time. Each invocation starts
+ * from an empty store. Scaling needs at least {@code parallelism} cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageIngestBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private final List<MessageIngest.Record> records = new ArrayList<>();
+    private ForkJoinPool pool;
+    private MessageStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < size; i++) {
+            String recipient = i % 20 == 0 ? "0838968976" : String.format("+27%09d", i % 10_000);
+            records.add(new MessageIngest.Record(recipient, "Bulk message number " + i + " for the import test"));
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @Setup(Level.Invocation)
+    public void newStore() {
+        store = new MessageStore();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long ingest() {
+        return new MessageIngest(store, pool, MessageIngest.DEFAULT_BATCH_SIZE).ingest(records).getAccepted();
+    }
+
+    @Benchmark
+    public long oneAtATime() {
+        long accepted = 0;
+        for (MessageIngest.Record r : records) {
+            Message m = new Message(r.getRecipientCell(), r.getMessageContent());
+            if (m.checkRecipientCell() == 1 && m.checkMessageID()) {
+                store.add(m);
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.st10159464;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MessageIngest}.
+ */
+public class MessageIngestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MessageStore store;
+
+    @Before
+    public void setUp() {
+        store = new MessageStore();
+    }
+
+    @Test
+    public void testRejectsInvalidRecordsWithReasons() {
+        List<MessageIngest.Record> records = Arrays.asList(
+                new MessageIngest.Record("+27838968976", "Valid"),
+                new MessageIngest.Record("0838968976", "Bad number"),
+                new MessageIngest.Record("+27838968976", "x".repeat(251)),
+                new MessageIngest.Record(null, "No recipient"),
+                new MessageIngest.Record("+27838968977", "Also valid"));
+        MessageIngest.Result result = new MessageIngest(store).ingest(records);
+        assertEquals(2, result.getAccepted());
+        assertEquals(5, result.getTotal());
+        List<MessageIngest.Rejection> rejected = result.getRejected();
+        assertEquals(3, rejected.size());
+        assertEquals(2, rejected.get(0).getNumber());
+        assertTrue(rejected.get(0).getReason().contains("+27"));
+        assertEquals(3, rejected.get(1).getNumber());
+        assertTrue(rejected.get(1).getReason().contains("250"));
+        assertEquals("Missing recipient", rejected.get(2).getReason());
+        assertEquals("Valid", store.snapshot().get(0).getMessageContent());
+        assertEquals("Also valid", store.snapshot().get(1).getMessageContent());
+    }
+
+    @Test
+    public void testParallelBatchesKeepInputOrder() {
+        List<MessageIngest.Record> records = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            records.add(new MessageIngest.Record(String.format("+27%09d", i % 97), "Bulk " + i));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MessageIngest.Result result = new MessageIngest(store, pool, 1_000).ingest(records);
+            assertEquals(10_000, result.getAccepted());
+        } finally {
+            pool.shutdown();
+        }
+        List<Message> all = store.snapshot();
+        assertEquals(10_000, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals("Bulk " + i, all.get(i).getMessageContent());
+        }
+        assertEquals(10_000, store.getStatistics().count());
+        assertEquals(1, store.searchContent("9999").size());
+        assertEquals(Math.ceil(10_000 / 97.0), store.findByRecipient("+27000000000").size(), 0);
+    }
+
+    @Test
+    public void testIngestFileReportsLineNumbers() throws Exception {
+        File file = folder.newFile("messages.csv");
+        Files.write(file.toPath(), Arrays.asList(
+                "+27838968976,Hello, with a comma",
+                "",
+                "no comma here",
+                "+27838968977,Bye"), StandardCharsets.UTF_8);
+        MessageIngest.Result result = new MessageIngest(store, ForkJoinPool.commonPool(), 2)
+                .ingestFile(file.toPath());
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getRejected().size());
+        assertEquals(3, result.getRejected().get(0).getNumber());
+        assertEquals("Missing message content", result.getRejected().get(0).getReason());
+        assertEquals("Hello, with a comma", store.snapshot().get(0).getMessageContent());
+    }
+}
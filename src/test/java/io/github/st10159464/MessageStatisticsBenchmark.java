@@ -0,0 +1,70 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Longest-message query by full scan against {@link MessageStatistics}, and the
+ * cost the statistics add to each send and delete.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageStatisticsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private final MessageStore store = new MessageStore();
+    private Message churn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < size; i++) {
+            store.add(new Message(String.format("+27%09d", i % 10_000), "Message number " + i + " x".repeat(i % 100)));
+        }
+        churn = new Message("+27000000001", "Sent and deleted again");
+    }
+
+    @Benchmark
+    public Message longest_scan() {
+        Message longest = null;
+        for (Message m : store.all()) {
+            if (longest == null || m.getMessageContent().length() > longest.getMessageContent().length()) {
+                longest = m;
+            }
+        }
+        return longest;
+    }
+
+    @Benchmark
+    public Message longest_statistics() {
+        return store.getStatistics().longest();
+    }
+
+    @Benchmark
+    public long recipientCount_statistics() {
+        return store.getStatistics().recipientCount("+27000004242");
+    }
+
+    @Benchmark
+    public boolean sendAndDelete() {
+        store.add(churn);
+        return store.removeByHash(churn.getMessageHash());
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MessageStatistics}, including the statistics kept by
+ * {@link MessageStore}.
+ */
+public class MessageStatisticsTest {
+
+    private MessageStatistics<Message> stats;
+
+    @Before
+    public void setUp() {
+        stats = new MessageStatistics<>(Message::getRecipientCell, Message::getMessageContent);
+    }
+
+    @Test
+    public void testDeletingLongestPromotesNext() {
+        Message shortest = new Message("+27838968976", "Hi");
+        Message middle = new Message("+27838968976", "Hello there");
+        Message longest = new Message("+27838968977", "Hello there, how are you?");
+        stats.add(shortest);
+        stats.add(longest);
+        stats.add(middle);
+        assertSame(longest, stats.longest());
+        assertTrue(stats.remove(longest));
+        assertSame(middle, stats.longest());
+        assertTrue(stats.remove(middle));
+        assertTrue(stats.remove(shortest));
+        assertNull(stats.longest());
+        assertFalse(stats.remove(shortest));
+    }
+
+    @Test
+    public void testTiesGoToFirstAdded() {
+        Message first = new Message("+27838968976", "same");
+        Message second = new Message("+27838968977", "SAME");
+        stats.add(first);
+        stats.add(second);
+        assertSame(first, stats.longest());
+        assertFalse(stats.add(first));
+        assertEquals(2, stats.count());
+    }
+
+    @Test
+    public void testCountsAndHistogram() {
+        stats.add(new Message("+27838968976", "12345"));
+        stats.add(new Message("+27838968976", "1234567890ab"));
+        Message removed = new Message("+27838968977", "x".repeat(250));
+        stats.add(removed);
+        assertEquals(3, stats.count());
+        assertEquals(267, stats.totalChars());
+        assertEquals(2, stats.recipientCount("+27838968976"));
+        assertEquals(1, stats.recipientCount("+27838968977"));
+        long[] histogram = stats.lengthHistogram();
+        assertEquals(1, histogram[0]);
+        assertEquals(1, histogram[1]);
+        assertEquals(1, histogram[MessageStatistics.BUCKETS - 1]);
+
+        stats.remove(removed);
+        assertEquals(17, stats.totalChars());
+        assertEquals(0, stats.recipientCount("+27838968977"));
+        assertFalse(stats.recipientCounts().containsKey("+27838968977"));
+        assertEquals(0, stats.lengthHistogram()[MessageStatistics.BUCKETS - 1]);
+    }
+
+    @Test
+    public void testStoreStatisticsMatchScanAfterRandomDeletes() {
+        MessageStore store = new MessageStore();
+        Random random = new Random(42);
+        List<Message> live = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Message m = new Message("+2783896897" + random.nextInt(10), "x".repeat(random.nextInt(250)) + i);
+            store.add(m);
+            live.add(m);
+            if (random.nextInt(3) == 0) {
+                Message victim = live.remove(random.nextInt(live.size()));
+                store.removeByHash(victim.getMessageHash());
+            }
+        }
+        MessageStatistics<Message> storeStats = store.getStatistics();
+        Message expected = live.stream()
+                .max(Comparator.comparingInt(m -> m.getMessageContent().length()))
+                .orElse(null);
+        assertEquals(expected.getMessageContent().length(), storeStats.longest().getMessageContent().length());
+        assertEquals(live.size(), storeStats.count());
+        assertEquals(live.stream().mapToLong(m -> m.getMessageContent().length()).sum(), storeStats.totalChars());
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the indexed {@link MessageStore} with the linear list scans it replaced.
+ * <p>
+ * Run with {@code BenchmarkSuite MessageStoreBenchmark}; each benchmark looks up
+ * or deletes a message in the middle of a store holding {@code size} messages.
+ * Ten million messages needs more heap than the default fork gets, so that size
+ * is opt-in: {@code -p size=10000000 -jvmArgsAppend -Xmx12g}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageStoreBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private final List<Message> list = new ArrayList<>();
+    private final MessageStore store = new MessageStore();
+    private Message target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < size; i++) {
+            Message m = new Message(String.format("+27%09d", i % 10_000), "Message number " + i);
+            list.add(m);
+            store.add(m);
+        }
+        target = list.get(size / 2);
+    }
+
+    @Benchmark
+    public Message searchByHash_listScan() {
+        for (Message m : list) {
+            if (m.getMessageHash().equals(target.getMessageHash())) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Message searchByHash_store() {
+        return store.findByHash(target.getMessageHash());
+    }
+
+    @Benchmark
+    public List<Message> searchByRecipient_listScan() {
+        List<Message> result = new ArrayList<>();
+        for (Message m : list) {
+            if (m.getRecipientCell().equals(target.getRecipientCell())) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Message> searchByRecipient_store() {
+        return store.findByRecipient(target.getRecipientCell());
+    }
+
+    // Deletes and re-adds the target so the state stays the same between invocations
+    @Benchmark
+    public boolean deleteByHash_listScan() {
+        boolean removed = list.removeIf(m -> m.getMessageHash().equals(target.getMessageHash()));
+        list.add(target);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean deleteByHash_store() {
+        boolean removed = store.removeByHash(target.getMessageHash());
+        store.add(target);
+        return removed;
+    }
+}
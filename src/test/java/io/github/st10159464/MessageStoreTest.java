@@ -0,0 +1,344 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit and stress tests for {@link MessageStore}.
+ * <p>
+ * The stress tests run many sender threads against one store while another
+ * thread keeps iterating it, the way {@code displayReport()} does.
+ */
+public class MessageStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 5_000;
+
+    private MessageStore store;
+
+    @Before
+    public void setUp() {
+        store = new MessageStore();
+    }
+
+    @Test
+    public void testSnapshotKeepsSendOrder() {
+        Message m1 = new Message("+27838968976", "First");
+        Message m2 = new Message("+27838968977", "Second");
+        store.add(m1);
+        store.add(m2);
+        List<Message> all = store.snapshot();
+        assertEquals(2, all.size());
+        assertEquals("First", all.get(0).getMessageContent());
+        assertEquals("Second", all.get(1).getMessageContent());
+    }
+
+    @Test
+    public void testPageAfterCursorWalksEveryMessageOnce() {
+        for (int i = 0; i < 25; i++) {
+            store.add(new Message("+27838968976", "Page " + i));
+        }
+        List<String> seen = new ArrayList<>();
+        long cursor = 0;
+        MessagePage page;
+        do {
+            page = store.pageAfter(cursor, 10);
+            for (Message m : page.getMessages()) {
+                seen.add(m.getMessageContent());
+            }
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+        assertEquals(25, seen.size());
+        assertEquals("Page 0", seen.get(0));
+        assertEquals("Page 24", seen.get(24));
+        assertTrue(store.pageAfter(cursor, 10).isEmpty());
+    }
+
+    @Test
+    public void testPageAfterRejectsEmptyLimit() {
+        try (MessageStore tiered = new MessageStore(null, 10, 5, null)) {
+            for (MessageStore s : new MessageStore[] {store, tiered}) {
+                try {
+                    s.pageAfter(0, 0);
+                    fail("limit 0 accepted");
+                } catch (IllegalArgumentException e) {
+                    assertEquals("limit must be >= 1", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPageByOffset() {
+        for (int i = 0; i < 25; i++) {
+            store.add(new Message("+27838968976", "Page " + i));
+        }
+        MessagePage page = store.page(20, 10);
+        assertEquals(5, page.getMessages().size());
+        assertEquals("Page 20", page.getMessages().get(0).getMessageContent());
+        assertFalse(page.hasMore());
+        assertTrue(store.page(10, 10).hasMore());
+        // the offset page hands back a cursor that continues from where it stopped
+        MessagePage next = store.pageAfter(store.page(0, 10).getNextCursor(), 1);
+        assertEquals("Page 10", next.getMessages().get(0).getMessageContent());
+    }
+
+    @Test
+    public void testCursorSurvivesDeletes() {
+        Message m1 = new Message("+27838968976", "Keep 1");
+        Message m2 = new Message("+27838968976", "Drop");
+        Message m3 = new Message("+27838968976", "Keep 2");
+        store.add(m1);
+        store.add(m2);
+        store.add(m3);
+        MessagePage first = store.pageAfter(0, 2);
+        store.removeByHash(m2.getMessageHash());
+        MessagePage second = store.pageAfter(first.getNextCursor(), 2);
+        assertEquals(1, second.getMessages().size());
+        assertEquals("Keep 2", second.getMessages().get(0).getMessageContent());
+    }
+
+    @Test
+    public void testAddingSameMessageTwiceIsIgnored() {
+        Message m1 = new Message("+27838968976", "Once");
+        store.add(m1);
+        store.add(m1);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testRemovedMessageCanBeSentAgain() {
+        Message m1 = new Message("+27838968976", "Again");
+        store.add(m1);
+        assertTrue(store.removeByHash(m1.getMessageHash()));
+        assertNull(store.findByHash(m1.getMessageHash()));
+        store.add(m1);
+        assertNotNull(store.findByHash(m1.getMessageHash()));
+        assertEquals(1, store.findByRecipient("+27838968976").size());
+    }
+
+    // Concurrent senders must not lose messages, and a reader iterating at the
+    // same time must never see a ConcurrentModificationException
+    @Test
+    public void testConcurrentSendsWhileIterating() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean sending = new AtomicBoolean(true);
+        try {
+            Future<Integer> reader = pool.submit(() -> {
+                start.await();
+                int passes = 0;
+                while (sending.get()) {
+                    for (Message m : store.all()) {
+                        assertNotNull(m.getMessageHash());
+                    }
+                    passes++;
+                }
+                return passes;
+            });
+            List<Future<?>> senders = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                senders.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        store.add(new Message("+2783896897" + thread, "Thread " + thread + " message " + i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : senders) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+            sending.set(false);
+            assertTrue(reader.get(30, TimeUnit.SECONDS) > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(THREADS * PER_THREAD, store.size());
+        assertEquals(THREADS * PER_THREAD, store.snapshot().size());
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(PER_THREAD, store.findByRecipient("+2783896897" + t).size());
+        }
+    }
+
+    // Concurrent deletes of half the messages leave every index consistent
+    @Test
+    public void testConcurrentSendAndDelete() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> work = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                work.add(pool.submit(() -> {
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        Message m = new Message("+2783896897" + thread, "Thread " + thread + " message " + i);
+                        store.add(m);
+                        if (i % 2 == 0) {
+                            assertTrue(store.removeByHash(m.getMessageHash()));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : work) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int expected = THREADS * (PER_THREAD / 2);
+        assertEquals(expected, store.size());
+        int byRecipient = 0;
+        for (int t = 0; t < THREADS; t++) {
+            byRecipient += store.findByRecipient("+2783896897" + t).size();
+        }
+        assertEquals(expected, byRecipient);
+        for (Message m : store.all()) {
+            assertFalse(m.getMessageContent().endsWith("message 0"));
+        }
+    }
+
+    // A bounded store spills its oldest messages but still answers every query over them
+    @Test
+    public void testTieredStoreQueriesSpilledMessages() {
+        try (MessageStore tiered = new MessageStore(null, 10, 5, null)) {
+            List<Message> sent = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                Message m = new Message("+2783896897" + (i % 3), "Tiered " + i + (i == 2 ? " the longest message" : ""));
+                sent.add(m);
+                tiered.add(m);
+            }
+            assertTrue(tiered.getMemoryCount() <= 10);
+            assertEquals(32, tiered.size());
+            assertEquals(32, tiered.getStatistics().count());
+            assertEquals(sent.get(0).getMessageHash(), tiered.findByHash(sent.get(0).getMessageHash()).getMessageHash());
+            assertEquals(11, tiered.findByRecipient("+27838968970").size());
+            assertEquals("Tiered 0", tiered.findByRecipient("+27838968970").get(0).getMessageContent());
+            assertEquals(1, tiered.searchContent("longest").size());
+            assertTrue(tiered.getStatistics().longest().getMessageContent().endsWith("the longest message"));
+
+            List<String> seen = new ArrayList<>();
+            for (Message m : tiered.all()) {
+                seen.add(m.getMessageContent());
+            }
+            assertEquals(32, seen.size());
+            assertEquals("Tiered 0", seen.get(0));
+            assertEquals("Tiered 31", seen.get(31));
+            assertEquals("Tiered 20", tiered.page(20, 3).getMessages().get(0).getMessageContent());
+        }
+    }
+
+    // Spilled segments answer through their indexes: a search reads only segments that match
+    // and no segment is decoded whole, with the same results as a store that keeps everything
+    @Test
+    public void testTieredSearchReadsOnlyMatchingSegments() {
+        try (MessageStore tiered = new MessageStore(null, 100, 100, null)) {
+            MessageStore unbounded = new MessageStore();
+            for (int i = 0; i < 2_000; i++) {
+                Message m = new Message("+2783896897" + (i % 2),
+                        "Batch " + (i / 100) + " message" + (i == 1_234 ? " Needle" : "") + (i % 7 == 0 ? " weekly" : ""));
+                tiered.add(m);
+                unbounded.add(m);
+            }
+            Metrics.reset();
+            Metrics.setEnabled(true);
+            try {
+                assertEquals(1, tiered.searchContent("needle").size());
+                assertTrue(Metrics.timer("store.index").getCount() <= 2);
+                assertEquals(1_000, tiered.findByRecipient("+27838968971").size());
+                for (String query : new String[] {"batch 3", "week*", "needle OR 7 weekly", "mess* 12", "OR 5", "absent"}) {
+                    assertEquals(query, contents(unbounded.searchContent(query)), contents(tiered.searchContent(query)));
+                }
+                assertEquals(0, Metrics.timer("store.fault").getCount());
+            } finally {
+                Metrics.setEnabled(false);
+                Metrics.reset();
+            }
+        }
+    }
+
+    private static List<String> contents(List<Message> messages) {
+        List<String> contents = new ArrayList<>();
+        for (Message m : messages) {
+            contents.add(m.getMessageContent());
+        }
+        return contents;
+    }
+
+    @Test
+    public void testTieredStoreDeletesSpilledMessages() {
+        try (MessageStore tiered = new MessageStore(null, 10, 5, null)) {
+            List<Message> sent = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                Message m = new Message("+27838968976", (i == 1 ? "The longest of them all " : "Short ") + i);
+                sent.add(m);
+                tiered.add(m);
+            }
+            assertTrue(tiered.removeByHash(sent.get(1).getMessageHash()));
+            assertNull(tiered.findByHash(sent.get(1).getMessageHash()));
+            assertEquals(29, tiered.size());
+            assertEquals(29, tiered.getStatistics().count());
+            assertEquals(29, tiered.snapshot().size());
+            // the next longest spilled message takes over
+            assertEquals("Short 10", tiered.getStatistics().longest().getMessageContent());
+            for (int i = 0; i < 5; i++) {
+                tiered.removeByHash(sent.get(i).getMessageHash());
+            }
+            assertEquals("Short 5", tiered.snapshot().get(0).getMessageContent());
+            assertFalse(tiered.removeByHash(sent.get(0).getMessageHash()));
+        }
+    }
+
+    // Senders and deleters racing the spills must leave every surviving message in exactly one tier
+    @Test
+    public void testConcurrentSendAndDeleteWhileSpilling() throws Exception {
+        try (MessageStore tiered = new MessageStore(null, 500, 100, null)) {
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> work = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    final int thread = t;
+                    work.add(pool.submit(() -> {
+                        for (int i = 0; i < 1_000; i++) {
+                            Message m = new Message("+2783896897" + thread, "Thread " + thread + " message " + i);
+                            tiered.add(m);
+                            if (i % 2 == 0) {
+                                assertTrue(tiered.removeByHash(m.getMessageHash()));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> f : work) {
+                    f.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            int expected = THREADS * 500;
+            assertEquals(expected, tiered.size());
+            assertEquals(expected, tiered.snapshot().size());
+            assertEquals(expected, tiered.getStatistics().count());
+            assertEquals(500, tiered.findByRecipient("+27838968973").size());
+        }
+    }
+}
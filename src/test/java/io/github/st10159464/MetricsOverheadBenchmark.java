@@ -0,0 +1,65 @@
+package io.github.st10159464;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the {@link Metrics} timers add to the cheapest timed operation, a lookup
+ * by hash: the bare store call against {@link ChatService} with metrics off and on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private MessageStore store;
+    private ChatService service;
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new MessageStore();
+        service = new ChatService(new UserDirectory(1_000), store);
+        for (int i = 0; i < 10_000; i++) {
+            Message m = service.send(String.format("+27%09d", i % 100), "Message number " + i);
+            if (i == 5_000) {
+                hash = m.getMessageHash();
+            }
+        }
+        Metrics.setEnabled(enabled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(false);
+    }
+
+    @Benchmark
+    public Message findByHash_store() {
+        return store.findByHash(hash);
+    }
+
+    @Benchmark
+    public Message findByHash_service() {
+        return service.findByHash(hash);
+    }
+}
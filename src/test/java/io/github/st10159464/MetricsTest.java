@@ -0,0 +1,99 @@
+package io.github.st10159464;
+
+import java.lang.management.ManagementFactory;
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Metrics} and the timers around {@link ChatService}.
+ */
+public class MetricsTest {
+
+    private ChatService service;
+
+    @Before
+    public void setUp() {
+        service = new ChatService(new UserDirectory(1_000), new MessageStore());
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        Metrics.setEnabled(false);
+        service.send("+27838968976", "Hi Mike, can you join us for dinner tonight?");
+        assertEquals(0, Metrics.timer("chat.send").getCount());
+    }
+
+    @Test
+    public void testEnabledTimesOperations() {
+        Metrics.setEnabled(true);
+        Message m = service.send("+27838968976", "Hi Mike, can you join us for dinner tonight?");
+        try {
+            service.send("0838968976", "Hi");
+        } catch (IllegalArgumentException expected) {
+            // counted as a rejection, and still timed
+        }
+        service.findByHash(m.getMessageHash());
+        service.findByRecipient("+27838968976");
+        service.search("dinner");
+        service.deleteByHash(m.getMessageHash());
+
+        assertEquals(2, Metrics.timer("chat.send").getCount());
+        assertEquals(1, Metrics.counter("chat.send.rejected").get());
+        assertEquals(1, Metrics.timer("chat.findByHash").getCount());
+        assertEquals(1, Metrics.timer("chat.findByRecipient").getCount());
+        assertEquals(1, Metrics.timer("chat.search").getCount());
+        assertEquals(1, Metrics.timer("chat.deleteByHash").getCount());
+        assertTrue(Metrics.timer("chat.send").getMaxMicros() > 0);
+
+        String dump = Metrics.dump();
+        assertTrue(dump.startsWith("metrics enabled"));
+        assertTrue(dump.contains("chat.send "));
+        assertTrue(dump.contains("chat.send.rejected"));
+    }
+
+    // The dialog's Message.send() goes through the shared service, so it is timed too
+    @Test
+    public void testMessageSendIsTimed() {
+        Metrics.setEnabled(true);
+        Message m = new Message("+27838968976", "Did you get the cake?");
+        try {
+            m.send();
+            assertEquals(1, Metrics.timer("chat.send").getCount());
+        } finally {
+            ChatService.shared().deleteByHash(m.getMessageHash());
+        }
+    }
+
+    @Test
+    public void testExposedThroughJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName control = new ObjectName("io.github.st10159464:type=Metrics");
+        server.setAttribute(control, new Attribute("Enabled", true));
+        assertTrue(Metrics.isEnabled());
+
+        service.send("+27838968976", "Where are you? You are late!");
+        ObjectName send = new ObjectName("io.github.st10159464:type=Latency,name=" + ObjectName.quote("chat.send"));
+        assertEquals(1L, server.getAttribute(send, "Count"));
+        assertTrue((Double) server.getAttribute(send, "P99Micros") > 0);
+
+        server.invoke(control, "reset", null, null);
+        assertEquals(0L, server.getAttribute(send, "Count"));
+        server.setAttribute(control, new Attribute("Enabled", false));
+        assertFalse(Metrics.isEnabled());
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.st10159464;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Murmur3MessageHasher}, checked against a plain byte-array
+ * MurmurHash3 x64 128 implementation.
+ */
+public class Murmur3MessageHasherTest {
+
+    private final Murmur3MessageHasher hasher = new Murmur3MessageHasher();
+
+    @Test
+    public void testReferenceMatchesPublishedVector() {
+        long[] h = reference("The quick brown fox jumps over the lazy dog".getBytes(), 0);
+        assertEquals(0xe34bbc7bbc071b6cL, h[0]);
+        assertEquals(0x7a433ca9c49a9347L, h[1]);
+    }
+
+    @Test
+    public void testStreamingMatchesReference() {
+        String[] recipients = {"+27718693002", "", "+27", "+2771869300212345"};
+        String[] contents = {"", "a", "Hi Mike, can you join us for dinner tonight?", "exactly8", "seven77",
+            "x".repeat(250), "caf\u00e9 \ud83d\ude00"};
+        for (String r : recipients) {
+            for (String c : contents) {
+                long[] expected = reference(utf16(r, c), 0);
+                String hash = hasher.hash(r, c);
+                assertEquals(String.format("MSG:%016X%016X", expected[0], expected[1]), hash);
+                assertEquals(expected[0], hasher.hash64(r, c));
+            }
+        }
+    }
+
+    @Test
+    public void testFixedWidthFormat() {
+        String hash = hasher.hash("+27718693002", "Hi");
+        assertEquals(36, hash.length());
+        assertTrue(hash.matches("MSG:[0-9A-F]{32}"));
+    }
+
+    @Test
+    public void testRecipientBoundaryMatters() {
+        assertNotEquals(hasher.hash("+27a", "b"), hasher.hash("+27", "ab"));
+        assertNotEquals(hasher.hash(null, "x"), hasher.hash("null", "x"));
+        assertNotEquals(hasher.hash("+27", "x"), new Murmur3MessageHasher(1).hash("+27", "x"));
+    }
+
+    @Test
+    public void testMessageUsesPluggableHasher() {
+        MessageHasher previous = Message.getHasher();
+        try {
+            Message.setHasher(MessageHasher.STRING_HASH_CODE);
+            Message m = new Message("+27718693002", "Hi");
+            assertEquals("MSG:" + Integer.toHexString("+27718693002Hi".hashCode()).toUpperCase(),
+                    m.getMessageHash());
+        } finally {
+            Message.setHasher(previous);
+        }
+        assertEquals(hasher.hash("+27718693002", "Hi"), new Message("+27718693002", "Hi").getMessageHash());
+    }
+
+    // Length prefix (two little-endian chars) followed by both strings as UTF-16LE
+    private static byte[] utf16(String recipient, String content) {
+        int length = recipient.length();
+        ByteBuffer buf = ByteBuffer.allocate(4 + 2 * (length + content.length())).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putChar((char) length).putChar((char) (length >>> 16));
+        for (char c : (recipient + content).toCharArray()) {
+            buf.putChar(c);
+        }
+        return buf.array();
+    }
+
+    private static long[] reference(byte[] data, long seed) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        long h1 = seed;
+        long h2 = seed;
+        ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = buf.getLong(i * 16);
+            long k2 = buf.getLong(i * 16 + 8);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        for (int i = data.length - 1; i >= tail; i--) {
+            int shift = 8 * ((i - tail) % 8);
+            if (i - tail >= 8) {
+                k2 |= (long) (data[i] & 0xFF) << shift;
+            } else {
+                k1 |= (long) (data[i] & 0xFF) << shift;
+            }
+        }
+        if (data.length - tail > 8) {
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+        }
+        if (data.length - tail > 0) {
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[] {h1, h2};
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
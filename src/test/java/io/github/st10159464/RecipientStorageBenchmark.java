@@ -0,0 +1,104 @@
+package io.github.st10159464;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recipient lookup through {@link RecipientTable} and {@link DenseIntMap} against
+ * the String-keyed map it replaced. Each query is a new String, as when it arrives
+ * over HTTP or from the menu, so the map has to hash it.
+ * <p>
+ * Setup also prints the heap per message for a million messages to 1,000
+ * recipients, each built from its own recipient String as parsed input would be,
+ * with the number kept as a table id and as a String field.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipientStorageBenchmark {
+
+    private static final int RECIPIENTS = 1_000;
+    private static final int MESSAGES = 1_000_000;
+
+    private final Map<String, Integer> byString = new ConcurrentHashMap<>();
+    private final DenseIntMap<Integer> byId = new DenseIntMap<>();
+    private final char[][] queries = new char[RECIPIENTS][];
+    private int next;
+
+    // The fields Message had before recipients were interned
+    static final class StringRecipientMessage {
+        final String recipientCell;
+        final String messageContent;
+        final String messageHash;
+        long sequence;
+
+        StringRecipientMessage(String recipientCell, String messageContent, String messageHash) {
+            this.recipientCell = recipientCell;
+            this.messageContent = messageContent;
+            this.messageHash = messageHash;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < RECIPIENTS; i++) {
+            String cell = String.format("+27%09d", i * 7919L);
+            byString.put(cell, i);
+            byId.computeIfAbsent(RecipientTable.shared().intern(cell), k -> k);
+            queries[i] = cell.toCharArray();
+        }
+        String content = "Hi Mike, can you join us for dinner tonight?";
+        long before = usedHeap();
+        List<Object> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            String cell = String.format("+27%09d", (i % RECIPIENTS) * 7919L);
+            messages.add(new StringRecipientMessage(cell, content, Message.getHasher().hash(cell, content)));
+        }
+        long stringBytes = usedHeap() - before;
+        messages.clear();
+        before = usedHeap();
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(new Message(String.format("+27%09d", (i % RECIPIENTS) * 7919L), content));
+        }
+        long idBytes = usedHeap() - before;
+        System.out.printf("%nHeap per message: %d bytes with a String recipient, %d bytes with a table id%n",
+                stringBytes / MESSAGES, idBytes / MESSAGES);
+        messages.clear();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public Integer findByRecipient_stringMap() {
+        return byString.get(new String(queries[next++ % RECIPIENTS]));
+    }
+
+    @Benchmark
+    public Integer findByRecipient_table() {
+        return byId.get(RecipientTable.shared().find(new String(queries[next++ % RECIPIENTS])));
+    }
+}
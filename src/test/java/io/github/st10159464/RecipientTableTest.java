@@ -0,0 +1,114 @@
+package io.github.st10159464;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RecipientTable} and the recipient storage of {@link Message}.
+ */
+public class RecipientTableTest {
+
+    private RecipientTable table;
+
+    @Before
+    public void setUp() {
+        table = new RecipientTable();
+    }
+
+    @Test
+    public void testInternAssignsOneIdPerNumber() {
+        int id = table.intern("+27838968976");
+        assertEquals(id, table.intern(new String("+27838968976")));
+        assertEquals(id, table.find("+27838968976"));
+        assertEquals("+27838968976", table.cellOf(id));
+        assertEquals(1, table.size());
+        assertEquals(id + 1, table.intern("+27000000000"));
+    }
+
+    @Test
+    public void testNonCellsAreNotInterned() {
+        assertEquals(RecipientTable.NOT_A_CELL, table.intern("08575975889"));
+        assertEquals(RecipientTable.NOT_A_CELL, table.intern(null));
+        assertEquals(RecipientTable.NOT_A_CELL, table.intern("+2783896897a"));
+        assertEquals(RecipientTable.NOT_A_CELL, table.find("+27838968976"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testSurvivesResize() {
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, table.intern(String.format("+27%09d", i * 7919L)));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            String cell = String.format("+27%09d", i * 7919L);
+            assertEquals(i, table.find(cell));
+            assertEquals(cell, table.cellOf(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentInternGivesUniqueIds() throws InterruptedException {
+        int cells = 5_000;
+        AtomicIntegerArray ids = new AtomicIntegerArray(cells);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < cells; i++) {
+                    int id = table.intern(String.format("+27%09d", i));
+                    // every thread must see the same id for the same number
+                    if (!ids.compareAndSet(i, 0, id + 1)) {
+                        assertEquals(ids.get(i), id + 1);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(cells, table.size());
+        boolean[] seen = new boolean[cells];
+        for (int i = 0; i < cells; i++) {
+            int id = ids.get(i) - 1;
+            assertTrue(!seen[id]);
+            seen[id] = true;
+            assertEquals(String.format("+27%09d", i), table.cellOf(id));
+        }
+    }
+
+    @Test
+    public void testMessagesShareOneRecipientString() {
+        Message a = new Message(new String("+27838968976"), "Hi Mike");
+        Message b = new Message(new String("+27838968976"), "Where are you?");
+        assertSame(a.getRecipientCell(), b.getRecipientCell());
+        assertEquals("+27838968976", a.getRecipientCell());
+        // other recipients are kept as given, so they still hash and report unchanged
+        assertEquals("08575975889", new Message("08575975889", "Hi").getRecipientCell());
+        assertNull(new Message(null, "Hi").getRecipientCell());
+    }
+
+    @Test
+    public void testStoreFindsBothKindsOfRecipient() {
+        MessageStore store = new MessageStore();
+        Message cell = new Message("+27838968976", "Hi Mike");
+        Message other = new Message("08575975889", "Hi Keegan");
+        store.add(cell);
+        store.add(other);
+        assertEquals(1, store.findByRecipient("+27838968976").size());
+        assertEquals(1, store.findByRecipient("08575975889").size());
+        assertEquals(0, store.findByRecipient("+27000000001").size());
+        store.removeByHash(cell.getMessageHash());
+        store.removeByHash(other.getMessageHash());
+        assertEquals(0, store.findByRecipient("+27838968976").size());
+        assertEquals(0, store.findByRecipient("08575975889").size());
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.st10159464;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sustained messages per second through {@link SendPipeline} against a stub
+ * {@link DeliveryChannel} that takes a fixed time per call, however many messages it is
+ * handed, as a gateway round trip would. The baseline delivers each message on the sending
+ * thread and then stores it. Once the queues fill, backpressure holds submitters to the rate
+ * the workers drain, so the pipeline's score is its delivery rate. Eight sending threads and
+ * eight workers; batches only grow when a drain finds several messages to one recipient, so
+ * the gain depends on how many recipients the traffic is spread over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class SendPipelineBenchmark {
+
+    // Workers, one per sending thread in @Threads
+    private static final int WORKERS = 8;
+
+    // Time the stub channel takes per call
+    @Param({"0", "100"})
+    public int channelMicros;
+
+    @Param({"10", "1000"})
+    public int recipients;
+
+    private MessageStore store;
+    private DeliveryChannel channel;
+    private SendPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new MessageStore();
+        long nanos = TimeUnit.MICROSECONDS.toNanos(channelMicros);
+        channel = (cell, batch) -> {
+            if (nanos > 0) {
+                LockSupport.parkNanos(nanos);
+            }
+        };
+        pipeline = new SendPipeline(store, channel, WORKERS, SendPipeline.DEFAULT_CAPACITY, SendPipeline.DEFAULT_MAX_BATCH);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        store.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.close();
+    }
+
+    private String randomCell() {
+        return "+27" + (710_000_000 + ThreadLocalRandom.current().nextInt(recipients));
+    }
+
+    @Benchmark
+    public CompletableFuture<Message> pipelined() {
+        return pipeline.submit(randomCell(), "Dinner at " + ThreadLocalRandom.current().nextInt());
+    }
+
+    @Benchmark
+    public Message synchronous() throws Exception {
+        String cell = randomCell();
+        Message m = new Message(cell, "Dinner at " + ThreadLocalRandom.current().nextInt());
+        channel.deliver(cell, List.of(m));
+        store.add(m);
+        return m;
+    }
+}
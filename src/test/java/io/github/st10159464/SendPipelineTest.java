@@ -0,0 +1,245 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Delivery, batching, backpressure and shutdown of {@link SendPipeline}.
+ */
+public class SendPipelineTest {
+
+    private static final String ALICE = "+27718693002";
+    private static final String BOB = "+27838968976";
+
+    private MessageStore store;
+    // recipient + ":" + batch size, in delivery order
+    private List<String> calls;
+    private List<Message> delivered;
+    private CountDownLatch gate;
+    // channel calls started, including those waiting on gate
+    private final AtomicInteger entered = new AtomicInteger();
+    private SendPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        store = new MessageStore();
+        calls = Collections.synchronizedList(new ArrayList<>());
+        delivered = Collections.synchronizedList(new ArrayList<>());
+        gate = new CountDownLatch(0);
+    }
+
+    @After
+    public void tearDown() {
+        gate = new CountDownLatch(0);
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    private SendPipeline start(int workers, int capacity, DeliveryChannel channel) {
+        pipeline = new SendPipeline(store, channel, workers, capacity, 64);
+        return pipeline;
+    }
+
+    // Records each call; waits on gate first so tests can let the queues fill up
+    private final DeliveryChannel recording = (cell, batch) -> {
+        entered.incrementAndGet();
+        try {
+            gate.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        calls.add(cell + ":" + batch.size());
+        delivered.addAll(batch);
+    };
+
+    @Test
+    public void testDeliversThenStoresAndCompletes() throws Exception {
+        start(2, 64, recording);
+        CompletableFuture<Message> sent = pipeline.submit(ALICE, "Did you get the cake?");
+        Message m = sent.get(10, TimeUnit.SECONDS);
+        assertEquals("Did you get the cake?", m.getMessageContent());
+        assertSame(m, store.findByHash(m.getMessageHash()));
+        assertEquals(Collections.singletonList(m), delivered);
+    }
+
+    @Test
+    public void testBatchesPerRecipientInSubmitOrder() throws Exception {
+        gate = new CountDownLatch(1);
+        start(1, 256, recording);
+        // the first call holds the worker, so the rest queue up and are drained as one batch
+        CompletableFuture<Message> first = pipeline.submit(BOB, "first");
+        awaitWorkerHeld();
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            futures.add(pipeline.submit(i % 2 == 0 ? ALICE : BOB, "message " + i));
+        }
+        gate.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<Message> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(BOB + ":1", ALICE + ":30", BOB + ":30"), calls);
+        List<Message> toAlice = store.findByRecipient(ALICE);
+        for (int i = 0; i < 30; i++) {
+            assertEquals("message " + (2 * i), toAlice.get(i).getMessageContent());
+        }
+        assertEquals(61, store.size());
+    }
+
+    @Test
+    public void testBackpressureWhenFull() throws Exception {
+        gate = new CountDownLatch(1);
+        start(1, 4, recording);
+        List<CompletableFuture<Message>> accepted = new ArrayList<>();
+        // one in the worker's hands, four in the queue
+        accepted.add(pipeline.submit(ALICE, "held"));
+        awaitWorkerHeld();
+        for (int i = 0; i < 4; i++) {
+            accepted.add(pipeline.submit(ALICE, "queued " + i));
+        }
+        CompletableFuture<Message> overflow = pipeline.trySubmit(ALICE, "overflow", 20, TimeUnit.MILLISECONDS);
+        try {
+            overflow.get(1, TimeUnit.SECONDS);
+            fail("full queue accepted a message");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        gate.countDown();
+        for (CompletableFuture<Message> f : accepted) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(5, store.size());
+    }
+
+    @Test
+    public void testFailedDeliveryFailsOnlyThatRecipient() throws Exception {
+        gate = new CountDownLatch(1);
+        start(1, 64, (cell, batch) -> {
+            recording.deliver(cell, batch);
+            if (cell.equals(BOB)) {
+                throw new IOException("gateway down");
+            }
+        });
+        CompletableFuture<Message> held = pipeline.submit(ALICE, "held");
+        CompletableFuture<Message> toBob = pipeline.submit(BOB, "lost");
+        CompletableFuture<Message> toAlice = pipeline.submit(ALICE, "kept");
+        gate.countDown();
+        held.get(10, TimeUnit.SECONDS);
+        toAlice.get(10, TimeUnit.SECONDS);
+        try {
+            toBob.get(10, TimeUnit.SECONDS);
+            fail("failed delivery completed");
+        } catch (ExecutionException e) {
+            assertEquals("gateway down", e.getCause().getMessage());
+        }
+        assertEquals(2, store.size());
+        assertTrue(store.findByRecipient(BOB).isEmpty());
+    }
+
+    // A store that throws fails that group's futures and leaves the worker running
+    @Test
+    public void testStoreFailureFailsGroupAndWorkerSurvives() throws Exception {
+        AtomicInteger storeCalls = new AtomicInteger();
+        store = new MessageStore() {
+            @Override
+            public void addAll(List<Message> batch) {
+                if (storeCalls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("store unavailable");
+                }
+                super.addAll(batch);
+            }
+        };
+        start(1, 64, recording);
+        try {
+            pipeline.submit(ALICE, "not recorded").get(10, TimeUnit.SECONDS);
+            fail("unrecorded message completed");
+        } catch (ExecutionException e) {
+            assertEquals("store unavailable", e.getCause().getMessage());
+        }
+        Message kept = pipeline.submit(ALICE, "recorded").get(10, TimeUnit.SECONDS);
+        assertSame(kept, store.findByHash(kept.getMessageHash()));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testCloseDeliversQueuedAndRejectsLater() throws Exception {
+        gate = new CountDownLatch(1);
+        start(2, 64, recording);
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(pipeline.submit(i % 2 == 0 ? ALICE : BOB, "before close " + i));
+        }
+        gate.countDown();
+        pipeline.close();
+        for (CompletableFuture<Message> f : futures) {
+            assertTrue(f.isDone() && !f.isCompletedExceptionally());
+        }
+        try {
+            pipeline.submit(ALICE, "too late").get(1, TimeUnit.SECONDS);
+            fail("closed pipeline accepted a message");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(20, store.size());
+    }
+
+    // Racing close() calls must all return, with the queued messages delivered once
+    @Test
+    public void testConcurrentCloseReturns() throws Exception {
+        gate = new CountDownLatch(1);
+        start(1, 4, recording);
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(pipeline.submit(ALICE, "queued " + i));
+        }
+        CountDownLatch ready = new CountDownLatch(2);
+        List<Thread> closers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            Thread closer = new Thread(() -> {
+                ready.countDown();
+                pipeline.close();
+            });
+            closer.start();
+            closers.add(closer);
+        }
+        ready.await();
+        gate.countDown();
+        for (Thread closer : closers) {
+            closer.join(10_000);
+            assertTrue("close() did not return", !closer.isAlive());
+        }
+        for (CompletableFuture<Message> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(4, store.size());
+    }
+
+    // Waits until the worker is inside the channel with the first message
+    private void awaitWorkerHeld() throws InterruptedException {
+        while (entered.get() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMessageRejectedOnSubmit() {
+        start(1, 4, recording).submit("0712345678", "Hi");
+    }
+}
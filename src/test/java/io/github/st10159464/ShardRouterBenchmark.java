@@ -0,0 +1,91 @@
+package io.github.st10159464;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of going through {@link ShardRouter}: sends and per-recipient lookups on one
+ * {@link ChatService}, routed over three in-process shards, and routed over three shards
+ * behind {@link ChatHttpServer} on loopback. Eight client threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ShardRouterBenchmark {
+
+    private static final int RECIPIENTS = 10_000;
+
+    @Param({"direct", "local", "loopback"})
+    public String shards;
+
+    private final List<ChatHttpServer> servers = new ArrayList<>();
+    private ChatService direct;
+    private ShardRouter router;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (shards.equals("direct")) {
+            direct = new ChatService(new UserDirectory(1_000), new MessageStore());
+            return;
+        }
+        List<MessageShard> list = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            if (shards.equals("local")) {
+                list.add(new LocalShard("shard-" + i));
+            } else {
+                ChatHttpServer server = ChatHttpServer.start(new ChatService(new UserDirectory(1_000), new MessageStore()), 0);
+                servers.add(server);
+                list.add(RemoteShard.loopback(server.getPort()));
+            }
+        }
+        router = new ShardRouter(list);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+        for (ChatHttpServer server : servers) {
+            server.close();
+        }
+    }
+
+    private static String randomCell() {
+        return "+27" + (710_000_000 + ThreadLocalRandom.current().nextInt(RECIPIENTS));
+    }
+
+    @Benchmark
+    public Message send() {
+        String content = "Dinner at " + ThreadLocalRandom.current().nextInt();
+        return direct != null ? direct.send(randomCell(), content) : router.send(randomCell(), content);
+    }
+
+    @Benchmark
+    public List<Message> findByRecipient() {
+        String cell = randomCell();
+        return direct != null ? direct.findByRecipient(cell) : router.findByRecipient(cell);
+    }
+}
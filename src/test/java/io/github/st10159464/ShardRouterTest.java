@@ -0,0 +1,225 @@
+package io.github.st10159464;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Routing, scatter/gather and rebalancing through {@link ShardRouter}, with shards in
+ * this JVM, behind {@link ChatHttpServer} over loopback, and in a separate JVM.
+ */
+public class ShardRouterTest {
+
+    private static final int RECIPIENTS = 40;
+    private static final int MESSAGES = 400;
+
+    private final List<ChatHttpServer> servers = new ArrayList<>();
+    private ShardRouter router;
+
+    @After
+    public void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+        for (ChatHttpServer server : servers) {
+            server.close();
+        }
+    }
+
+    private static String cell(int recipient) {
+        return String.format("+27%09d", 710_000_000 + recipient);
+    }
+
+    private static String content(int i) {
+        return "Message " + i + " about " + (i % 5 == 0 ? "dinner" : "lunch");
+    }
+
+    // Sends MESSAGES messages round-robin over RECIPIENTS recipients; returns recipient -> count
+    private Map<String, Integer> fill() {
+        Map<String, Integer> perRecipient = new HashMap<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            String cell = cell(i % RECIPIENTS);
+            router.send(cell, content(i));
+            perRecipient.merge(cell, 1, Integer::sum);
+        }
+        return perRecipient;
+    }
+
+    private RemoteShard loopbackShard() throws IOException {
+        ChatHttpServer server = ChatHttpServer.start(new ChatService(new UserDirectory(1_000), new MessageStore()), 0);
+        servers.add(server);
+        return RemoteShard.loopback(server.getPort());
+    }
+
+    private void assertEveryRecipientOnItsOwner(Map<String, Integer> perRecipient) {
+        for (Map.Entry<String, Integer> e : perRecipient.entrySet()) {
+            MessageShard owner = router.ownerOf(e.getKey());
+            assertEquals(e.getKey(), (int) e.getValue(), owner.findByRecipient(e.getKey()).size());
+            assertEquals((int) e.getValue(), router.findByRecipient(e.getKey()).size());
+            for (MessageShard shard : router.getShards()) {
+                if (shard != owner) {
+                    assertTrue(shard.findByRecipient(e.getKey()).isEmpty());
+                }
+            }
+        }
+    }
+
+    private List<Message> walkReport(int pageSize) {
+        List<Message> all = new ArrayList<>();
+        long cursor = 0;
+        MessagePage page;
+        do {
+            page = router.reportPage(cursor, pageSize);
+            all.addAll(page.getMessages());
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+        return all;
+    }
+
+    @Test
+    public void testRoutesByRecipientAndGathersAcrossShards() throws IOException {
+        router = new ShardRouter(Arrays.asList(new LocalShard("a"), new LocalShard("b"), new LocalShard("c")));
+        Map<String, Integer> perRecipient = fill();
+        assertEveryRecipientOnItsOwner(perRecipient);
+        for (MessageShard shard : router.getShards()) {
+            assertTrue(shard.getName(), shard.messageCount() > 0);
+        }
+
+        assertEquals(MESSAGES, router.messageCount());
+        assertEquals(MESSAGES / 5, router.search("dinner").size());
+        List<Message> report = walkReport(37);
+        assertEquals(MESSAGES, report.size());
+        Set<String> hashes = new HashSet<>();
+        for (Message m : report) {
+            assertTrue(hashes.add(m.getMessageHash()));
+        }
+        StringWriter out = new StringWriter();
+        router.writeReport(out);
+        assertTrue(out.toString().startsWith("Total messages sent: " + MESSAGES + "\n"));
+        assertEquals(MESSAGES + 1, out.toString().split("\n").length);
+
+        Message first = report.get(0);
+        assertNotNull(router.findByHash(first.getMessageHash()));
+        assertTrue(router.deleteByHash(first.getMessageHash()));
+        assertFalse(router.deleteByHash(first.getMessageHash()));
+        assertNull(router.findByHash(first.getMessageHash()));
+        Message second = report.get(1);
+        assertTrue(router.deleteByHash(second.getRecipientCell(), second.getMessageHash()));
+        assertEquals(MESSAGES - 2, router.messageCount());
+    }
+
+    @Test
+    public void testAddingAShardMovesOnlyItsRecipients() {
+        router = new ShardRouter(Arrays.asList(new LocalShard("a"), new LocalShard("b"), new LocalShard("c")));
+        Map<String, Integer> perRecipient = fill();
+        Map<String, MessageShard> before = new HashMap<>();
+        for (String cell : perRecipient.keySet()) {
+            before.put(cell, router.ownerOf(cell));
+        }
+
+        LocalShard added = new LocalShard("d");
+        int moved = router.addShard(added);
+        int expected = 0;
+        for (String cell : perRecipient.keySet()) {
+            MessageShard after = router.ownerOf(cell);
+            if (after != before.get(cell)) {
+                assertSame(added, after);
+                expected += perRecipient.get(cell);
+            }
+        }
+        assertTrue("nothing moved", expected > 0);
+        assertEquals(expected, moved);
+        assertEquals(expected, added.messageCount());
+        assertEquals(MESSAGES, router.messageCount());
+        assertEveryRecipientOnItsOwner(perRecipient);
+        assertEquals(MESSAGES, walkReport(100).size());
+
+        try {
+            router.addShard(new LocalShard("d"));
+            fail("duplicate shard name accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals(4, router.getShards().size());
+        }
+    }
+
+    @Test
+    public void testLoopbackShardsIncludingRebalance() throws IOException {
+        router = new ShardRouter(Arrays.asList(loopbackShard(), loopbackShard()));
+        Map<String, Integer> perRecipient = fill();
+        assertEveryRecipientOnItsOwner(perRecipient);
+        assertEquals(MESSAGES / 5, router.search("dinner").size());
+        assertEquals(MESSAGES, walkReport(150).size());
+        try {
+            router.send("0712345678", "Not a +27 number");
+            fail("invalid recipient accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().length() > 0);
+        }
+
+        int moved = router.addShard(loopbackShard());
+        assertTrue(moved > 0);
+        assertEquals(MESSAGES, router.messageCount());
+        assertEveryRecipientOnItsOwner(perRecipient);
+    }
+
+    // Messages hashed before the hasher was swapped must still be deleted from the shard they left
+    @Test
+    public void testRebalanceAfterHasherChangeMovesRemoteMessages() throws IOException {
+        router = new ShardRouter(Arrays.asList(loopbackShard(), loopbackShard()));
+        Map<String, Integer> perRecipient = fill();
+        MessageHasher original = Message.getHasher();
+        Message.setHasher((recipient, content) -> "ALT:" + recipient + ":" + content);
+        try {
+            int moved = router.addShard(loopbackShard());
+            assertTrue(moved > 0);
+            assertEquals(MESSAGES, router.messageCount());
+            assertEveryRecipientOnItsOwner(perRecipient);
+        } finally {
+            Message.setHasher(original);
+        }
+    }
+
+    @Test
+    public void testShardInSeparateJvm() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "io.github.st10159464.MainApp", "--http", "0").redirectErrorStream(true).start();
+        try {
+            BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String line = out.readLine();
+            assertNotNull("shard JVM exited", line);
+            assertTrue(line, line.startsWith("Listening on http://localhost:"));
+            int port = Integer.parseInt(line.replaceAll("\\D+", ""));
+
+            router = new ShardRouter(Arrays.asList(new LocalShard("local"), RemoteShard.loopback(port)));
+            Map<String, Integer> perRecipient = fill();
+            assertEveryRecipientOnItsOwner(perRecipient);
+            assertEquals(MESSAGES, router.messageCount());
+            assertEquals(MESSAGES, walkReport(250).size());
+        } finally {
+            process.destroy();
+            process.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.st10159464;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link UserDirectory}.
+ */
+public class UserDirectoryTest {
+
+    private UserDirectory directory;
+
+    @Before
+    public void setUp() {
+        directory = new UserDirectory(1_000);
+        assertTrue(directory.register("kyl_1", "Ch&&sec@ke99!", "+27838968976"));
+    }
+
+    @Test
+    public void testAuthenticate() {
+        assertTrue(directory.authenticate("kyl_1", "Ch&&sec@ke99!"));
+        assertFalse(directory.authenticate("kyl_1", "ch&&sec@ke99!"));
+        assertFalse(directory.authenticate("kyl_1", ""));
+        assertFalse(directory.authenticate("nobody", "Ch&&sec@ke99!"));
+        assertFalse(directory.authenticate(null, null));
+    }
+
+    @Test
+    public void testDuplicateUsernameRejected() {
+        assertFalse(directory.register("kyl_1", "Other1!pass", "+27838968977"));
+        assertEquals(1, directory.size());
+        assertEquals("+27838968976", directory.getCellNumber("kyl_1"));
+        assertTrue(directory.authenticate("kyl_1", "Ch&&sec@ke99!"));
+    }
+
+    @Test
+    public void testSamePasswordDifferentUsers() {
+        assertTrue(directory.register("ann_1", "Ch&&sec@ke99!", "+27838968977"));
+        assertTrue(directory.authenticate("ann_1", "Ch&&sec@ke99!"));
+        assertNull(directory.getCellNumber("bob_1"));
+    }
+
+    // Users keep the cost they were stored with, so raising it later does not lock them out
+    @Test
+    public void testIterationsAreTunable() {
+        directory.setIterations(2_000);
+        assertEquals(2_000, directory.getIterations());
+        assertTrue(directory.register("u_1", "P4ss!word", "+27838968976"));
+        assertTrue(directory.authenticate("u_1", "P4ss!word"));
+        assertTrue(directory.authenticate("kyl_1", "Ch&&sec@ke99!"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroIterationsRejected() {
+        new UserDirectory(0);
+    }
+}